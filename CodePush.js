@@ -46,7 +46,8 @@ async function checkForUpdate(deploymentKey = null, handleBinaryVersionMismatchC
     queryPackage = localPackage;
   } else {
     queryPackage = { appVersion: config.appVersion };
-    if (Platform.OS === "ios" && config.packageHash) {
+    // On Android, diffs against the binary can only be applied when its contents can be read back.
+    if ((Platform.OS === "ios" || config.isBinaryPackageAvailable) && config.packageHash) {
       queryPackage.packageHash = config.packageHash;
     }
   }
@@ -67,9 +68,9 @@ async function checkForUpdate(deploymentKey = null, handleBinaryVersionMismatchC
    *    client app is resilient to a potential issue with the update check.
    * 4) The server said there is an update, but the update's hash is the same as that
    *    of the binary's currently running version. This should only happen in Android -
-   *    unlike iOS, we don't attach the binary's hash to the updateCheck request
-   *    because we want to avoid having to install diff updates against the binary's
-   *    version, which we can't do yet on Android.
+   *    unlike iOS, we only attach the binary's hash to the updateCheck request when
+   *    the native side reports that diff updates can be applied against the binary's
+   *    contents (see "isBinaryPackageAvailable").
    */
   if (!update || update.updateAppVersion ||
       localPackage && (update.packageHash === localPackage.packageHash) ||
@@ -118,6 +119,42 @@ async function getUpdateMetadata(updateState) {
   return updateMetadata;
 }
 
+// Only available on Android, resolves to null elsewhere.
+async function getLastReloadInfo() {
+  if (!NativeCodePush.getLastReloadInfo) {
+    return null;
+  }
+
+  return await NativeCodePush.getLastReloadInfo();
+}
+
+// Only available on Android, resolves to null elsewhere.
+async function getStorageStats() {
+  if (!NativeCodePush.getStorageStats) {
+    return null;
+  }
+
+  return await NativeCodePush.getStorageStats();
+}
+
+// Only available on Android, resolves to an empty list elsewhere.
+async function getRetainedPackages() {
+  if (!NativeCodePush.getRetainedPackages) {
+    return [];
+  }
+
+  const retainedPackages = await NativeCodePush.getRetainedPackages();
+  return retainedPackages.map((retainedPackage) => ({...PackageMixins.local, ...retainedPackage}));
+}
+
+async function rollbackTo(packageHash) {
+  if (!NativeCodePush.rollbackTo) {
+    throw new Error("rollbackTo is only supported on Android.");
+  }
+
+  await NativeCodePush.rollbackTo(packageHash);
+}
+
 function getPromisifiedSdk(requestFetchAdapter, config) {
   // Use dynamically overridden AcquisitionSdk during tests.
   const sdk = new module.exports.AcquisitionSdk(requestFetchAdapter, config);
@@ -175,36 +212,47 @@ const notifyApplicationReady = (() => {
 
 async function notifyApplicationReadyInternal() {
   await NativeCodePush.notifyApplicationReady();
+  if (NativeCodePush.getNewStatusReports) {
+    // Deliver the report for this launch together with any reports queued for retry, which come first.
+    const statusReports = await NativeCodePush.getNewStatusReports();
+    statusReports.length && tryReportStatuses(statusReports); // Don't wait for this to complete.
+
+    return statusReports[statusReports.length - 1] || "";
+  }
+
   const statusReport = await NativeCodePush.getNewStatusReport();
   statusReport && tryReportStatus(statusReport); // Don't wait for this to complete.
 
   return statusReport;
 }
 
-async function tryReportStatus(statusReport, resumeListener) {
+async function reportStatus(statusReport) {
   const config = await getConfiguration();
   const previousLabelOrAppVersion = statusReport.previousLabelOrAppVersion;
   const previousDeploymentKey = statusReport.previousDeploymentKey || config.deploymentKey;
-  try {
-    if (statusReport.appVersion) {
-      log(`Reporting binary update (${statusReport.appVersion})`);
+  if (statusReport.appVersion) {
+    log(`Reporting binary update (${statusReport.appVersion})`);
 
-      const sdk = getPromisifiedSdk(requestFetchAdapter, config);
-      await sdk.reportStatusDeploy(/* deployedPackage */ null, /* status */ null, previousLabelOrAppVersion, previousDeploymentKey);
+    const sdk = getPromisifiedSdk(requestFetchAdapter, config);
+    await sdk.reportStatusDeploy(/* deployedPackage */ null, /* status */ null, previousLabelOrAppVersion, previousDeploymentKey);
+  } else {
+    const label = statusReport.package.label;
+    if (statusReport.status === "DeploymentSucceeded") {
+      log(`Reporting CodePush update success (${label})`);
     } else {
-      const label = statusReport.package.label;
-      if (statusReport.status === "DeploymentSucceeded") {
-        log(`Reporting CodePush update success (${label})`);
-      } else {
-        log(`Reporting CodePush update rollback (${label})`);
-        await NativeCodePush.setLatestRollbackInfo(statusReport.package.packageHash);
-      }
-
-      config.deploymentKey = statusReport.package.deploymentKey;
-      const sdk = getPromisifiedSdk(requestFetchAdapter, config);
-      await sdk.reportStatusDeploy(statusReport.package, statusReport.status, previousLabelOrAppVersion, previousDeploymentKey);
+      log(`Reporting CodePush update rollback (${label})`);
+      await NativeCodePush.setLatestRollbackInfo(statusReport.package.packageHash);
     }
 
+    config.deploymentKey = statusReport.package.deploymentKey;
+    const sdk = getPromisifiedSdk(requestFetchAdapter, config);
+    await sdk.reportStatusDeploy(statusReport.package, statusReport.status, previousLabelOrAppVersion, previousDeploymentKey);
+  }
+}
+
+async function tryReportStatus(statusReport, resumeListener) {
+  try {
+    await reportStatus(statusReport);
     NativeCodePush.recordStatusReported(statusReport);
     resumeListener && AppState.removeEventListener("change", resumeListener);
   } catch (e) {
@@ -226,6 +274,42 @@ async function tryReportStatus(statusReport, resumeListener) {
   }
 }
 
+// Reports are sent in order, and the delivered ones are recorded with a single native call.
+// On the first failure the remaining reports are handed back to the native queue in one go,
+// since the server is most likely unreachable for all of them.
+async function tryReportStatuses(statusReports, resumeListener) {
+  let reportedCount = 0;
+  try {
+    for (const statusReport of statusReports) {
+      await reportStatus(statusReport);
+      reportedCount++;
+    }
+  } catch (e) {
+    log(`Report status failed: ${JSON.stringify(statusReports[reportedCount])}`);
+  }
+
+  reportedCount && NativeCodePush.recordStatusesReported(statusReports.slice(0, reportedCount));
+  if (reportedCount === statusReports.length) {
+    resumeListener && AppState.removeEventListener("change", resumeListener);
+    return;
+  }
+
+  NativeCodePush.saveStatusReportsForRetry(statusReports.slice(reportedCount));
+  // Try again when the app resumes
+  if (!resumeListener) {
+    resumeListener = async (newState) => {
+      if (newState !== "active") return;
+      const refreshedStatusReports = await NativeCodePush.getNewStatusReports();
+      if (refreshedStatusReports.length) {
+        tryReportStatuses(refreshedStatusReports, resumeListener);
+      } else {
+        AppState.removeEventListener("change", resumeListener);
+      }
+    };
+    AppState.addEventListener("change", resumeListener);
+  }
+}
+
 async function shouldUpdateBeIgnored(remotePackage, syncOptions) {
   let { rollbackRetryOptions } = syncOptions;
 
@@ -398,6 +482,8 @@ async function syncInternal(options = {}, syncStatusChangeCallback, downloadProg
               } else {
                 log("Update is installed and will be run when the app next resumes.");
               }
+            } else if (resolvedInstallMode == CodePush.InstallMode.ON_NEXT_IDLE) {
+              log("Update is installed and will be run once the app is idle, or else when it next resumes.");
             }
             break;
           case CodePush.SyncStatus.UNKNOWN_ERROR:
@@ -601,11 +687,15 @@ if (NativeCodePush) {
     checkForUpdate,
     getConfiguration,
     getCurrentPackage,
+    getLastReloadInfo,
+    getRetainedPackages,
+    getStorageStats,
     getUpdateMetadata,
     log,
     notifyAppReady: notifyApplicationReady,
     notifyApplicationReady,
     restartApp: RestartManager.restartApp,
+    rollbackTo,
     setUpTestDependencies,
     sync,
     disallowRestart: RestartManager.disallow,
@@ -615,9 +705,12 @@ if (NativeCodePush) {
       IMMEDIATE: NativeCodePush.codePushInstallModeImmediate, // Restart the app immediately
       ON_NEXT_RESTART: NativeCodePush.codePushInstallModeOnNextRestart, // Don't artificially restart the app. Allow the update to be "picked up" on the next app restart
       ON_NEXT_RESUME: NativeCodePush.codePushInstallModeOnNextResume, // Restart the app the next time it is resumed from the background
-      ON_NEXT_SUSPEND: NativeCodePush.codePushInstallModeOnNextSuspend // Restart the app _while_ it is in the background,
+      ON_NEXT_SUSPEND: NativeCodePush.codePushInstallModeOnNextSuspend, // Restart the app _while_ it is in the background,
       // but only after it has been in the background for "minimumBackgroundDuration" seconds (0 by default),
       // so that user context isn't lost unless the app suspension is long enough to not matter
+      ON_NEXT_IDLE: NativeCodePush.codePushInstallModeOnNextIdle !== undefined // Restart the app once it has been idle for a while,
+        ? NativeCodePush.codePushInstallModeOnNextIdle                        // or else on the next resume. Only Android supports it,
+        : NativeCodePush.codePushInstallModeOnNextResume                      // other platforms restart on the next resume
     },
     SyncStatus: {
       UP_TO_DATE: 0, // The running app is up-to-date
@@ -1,9 +1,12 @@
 package com.microsoft.codepush.react;
 
+import android.app.ActivityManager;
 import android.content.Context;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.content.res.Resources;
+import android.os.AsyncTask;
+import android.os.Process;
 
 import com.facebook.react.ReactInstanceManager;
 import com.facebook.react.ReactPackage;
@@ -19,52 +22,115 @@ import org.json.JSONObject;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class CodePush implements ReactPackage {
 
-    private static boolean sIsRunningBinaryVersion = false;
-    private static boolean sNeedToReportRollback = false;
-    private static boolean sTestConfigurationFlag = false;
+    private static final String DEFAULT_SERVER_URL = "https://codepush.appcenter.ms/";
+    private static final long DEFAULT_IDLE_INSTALL_WINDOW_MILLIS = 2000;
+    private static final long DEFAULT_IDLE_INSTALL_DEADLINE_MILLIS = 5 * 60 * 1000;
+
     private static String sAppVersion = null;
 
+    // Instances created for a bundle name, for apps hosting several React Native bundles.
+    private static final Map<String, CodePush> sInstances = new HashMap<>();
+    private static ReactInstanceHolder sReactInstanceHolder;
+    private static volatile CodePush sCurrentInstance;
+    // Kept by bundle name rather than on the instance, which a restart may replace.
+    private static final Map<String, JSONObject> sLastReloadInfos = new HashMap<>();
+
+    private boolean mIsRunningBinaryVersion = false;
+    private boolean mNeedToReportRollback = false;
     private boolean mDidUpdate = false;
 
+    private final String mBundleName;
     private String mAssetsBundleFileName;
+    private final String mPreferencesName;
 
     // Helper classes.
     private CodePushUpdateManager mUpdateManager;
     private CodePushTelemetryManager mTelemetryManager;
     private SettingsManager mSettingsManager;
+    private CodePushRetryManager mRetryManager;
+    private CodePushUpdateCheckClient mUpdateCheckClient;
+    private CodePushUpdateCheckScheduler mUpdateCheckScheduler;
+    private CodePushIntegrityScrubber mIntegrityScrubber;
+    private CodePushStorageManager mStorageManager;
+    private CodePushBinaryPackage mBinaryPackage;
+    private CodePushProcessStateObserver mProcessStateObserver;
+    private boolean mIsBundleFingerprintCheckEnabled = false;
+    private boolean mIsDoubleBufferedReloadEnabled = false;
+    private long mIdleInstallWindowMillis = DEFAULT_IDLE_INSTALL_WINDOW_MILLIS;
+    private long mIdleInstallDeadlineMillis = DEFAULT_IDLE_INSTALL_DEADLINE_MILLIS;
 
     // Config properties.
     private String mDeploymentKey;
-    private static String mServerUrl = "https://codepush.appcenter.ms/";
+    private String mServerUrl;
 
     private Context mContext;
     private final boolean mIsDebugMode;
+    private final boolean mIsMainProcess;
 
-    private static String mPublicKey;
+    private String mPublicKey;
+    private CodePushSignatureVerifier mSignatureVerifier;
 
-    private static ReactInstanceHolder mReactInstanceHolder;
-    private static CodePush mCurrentInstance;
+    private ReactInstanceHolder mReactInstanceHolder;
 
     public CodePush(String deploymentKey, Context context) {
         this(deploymentKey, context, false);
     }
 
     public static String getServiceUrl() {
-        return mServerUrl;
+        CodePush currentInstance = sCurrentInstance;
+        return currentInstance == null ? DEFAULT_SERVER_URL : currentInstance.getServerUrl();
     }
 
     public CodePush(String deploymentKey, Context context, boolean isDebugMode) {
+        this(deploymentKey, context, isDebugMode, getServiceUrl(), null, null);
+    }
+
+    // An instance with a bundle name keeps its packages and settings apart from the other instances,
+    // so that several React Native bundles can be updated independently. Without one, the instance
+    // uses the same storage as earlier versions.
+    CodePush(String deploymentKey, Context context, boolean isDebugMode, String serverUrl,
+             Integer publicKeyResourceDescriptor, String bundleName) {
         mContext = context.getApplicationContext();
+        CodePushAndroidPlatform.install();
+
+        mBundleName = bundleName;
+        mAssetsBundleFileName = bundleName;
+        String processName = getProcessName(mContext);
+        mIsMainProcess = processName == null || processName.equals(mContext.getPackageName());
+        // SharedPreferences don't see the changes other processes make, so each process keeps its own
+        // settings and retry queue. The packages are shared, guarded by CodePushProcessLock.
+        String processSuffix = mIsMainProcess ? "" : "." + getStorageName(processName);
+        File storageFolder = mContext.getFilesDir();
+        if (bundleName == null) {
+            mPreferencesName = CodePushConstants.CODE_PUSH_PREFERENCES + processSuffix;
+        } else {
+            String storageName = getStorageName(bundleName);
+            mPreferencesName = CodePushConstants.CODE_PUSH_PREFERENCES + "." + storageName + processSuffix;
+            storageFolder = new File(new File(storageFolder, CodePushConstants.INSTANCES_FOLDER_NAME), storageName);
+            storageFolder.mkdirs();
+        }
 
-        mUpdateManager = new CodePushUpdateManager(context.getFilesDir().getAbsolutePath());
-        mTelemetryManager = new CodePushTelemetryManager(mContext);
+        mBinaryPackage = new CodePushBinaryPackage(mContext, CodePushConstants.CODE_PUSH_PREFERENCES + processSuffix);
+        mUpdateManager = new CodePushUpdateManager(storageFolder.getAbsolutePath(), mBinaryPackage);
+        mRetryManager = new CodePushRetryManager(mContext, CodePushRetryPolicy.getDefault(), mPreferencesName);
+        mTelemetryManager = new CodePushTelemetryManager(mContext, mRetryManager, mPreferencesName,
+                new File(storageFolder, CodePushConstants.TELEMETRY_QUEUE_FILE_NAME + processSuffix));
         mDeploymentKey = deploymentKey;
         mIsDebugMode = isDebugMode;
-        mSettingsManager = new SettingsManager(mContext);
+        mServerUrl = serverUrl;
+        if (publicKeyResourceDescriptor != null) {
+            mPublicKey = getPublicKeyByResourceDescriptor(publicKeyResourceDescriptor);
+        }
+
+        mSettingsManager = new SettingsManager(new CodePushSharedPreferencesStore(mContext, mPreferencesName));
+        mUpdateCheckClient = new CodePushUpdateCheckClient(mContext, mPreferencesName);
+        mStorageManager = new CodePushStorageManager(mUpdateManager);
 
         if (sAppVersion == null) {
             try {
@@ -75,31 +141,45 @@ public class CodePush implements ReactPackage {
             }
         }
 
-        mCurrentInstance = this;
+        synchronized (CodePush.class) {
+            if (bundleName != null) {
+                sInstances.put(bundleName, this);
+            }
+
+            if (bundleName == null || sCurrentInstance == null) {
+                sCurrentInstance = this;
+            }
+        }
+
+        checkBinaryPackageInBackground();
+
+        // The pending update and the failed updates of the main process aren't seen by the other
+        // processes. They can only download updates, which the main process adopts.
+        if (!mIsMainProcess) {
+            CodePushUtils.log("Not running in the main process, updates are only downloaded.");
+            return;
+        }
 
         clearDebugCacheIfNeeded(null);
         initializeUpdateAfterRestart();
+        collectGarbageInBackground();
     }
 
     public CodePush(String deploymentKey, Context context, boolean isDebugMode, String serverUrl) {
-        this(deploymentKey, context, isDebugMode);
-        mServerUrl = serverUrl;
+        this(deploymentKey, context, isDebugMode, serverUrl, null, null);
     }
 
     public CodePush(String deploymentKey, Context context, boolean isDebugMode, int publicKeyResourceDescriptor) {
-        this(deploymentKey, context, isDebugMode);
-
-        mPublicKey = getPublicKeyByResourceDescriptor(publicKeyResourceDescriptor);
+        this(deploymentKey, context, isDebugMode, getServiceUrl(), publicKeyResourceDescriptor, null);
     }
 
     public CodePush(String deploymentKey, Context context, boolean isDebugMode, String serverUrl, Integer publicKeyResourceDescriptor) {
-        this(deploymentKey, context, isDebugMode);
-
-        if (publicKeyResourceDescriptor != null) {
-            mPublicKey = getPublicKeyByResourceDescriptor(publicKeyResourceDescriptor);
-        }
+        this(deploymentKey, context, isDebugMode, serverUrl, publicKeyResourceDescriptor, null);
+    }
 
-        mServerUrl = serverUrl;
+    // The instance created for the given bundle name, null if there is none.
+    public static synchronized CodePush getInstance(String bundleName) {
+        return sInstances.get(bundleName);
     }
 
     private String getPublicKeyByResourceDescriptor(int publicKeyResourceDescriptor){
@@ -154,10 +234,174 @@ public class CodePush implements ReactPackage {
         return mAssetsBundleFileName;
     }
 
+    public String getBundleName() {
+        return mBundleName;
+    }
+
     public String getPublicKey() {
         return mPublicKey;
     }
 
+    // Shared by all downloads, so that the public key is only parsed once.
+    synchronized CodePushSignatureVerifier getSignatureVerifier() {
+        if (mPublicKey == null) {
+            return null;
+        }
+
+        if (mSignatureVerifier == null || !mPublicKey.equals(mSignatureVerifier.getStringPublicKey())) {
+            mSignatureVerifier = new CodePushSignatureVerifier(mPublicKey);
+        }
+
+        return mSignatureVerifier;
+    }
+
+    public CodePushRetryPolicy getRetryPolicy() {
+        return mRetryManager.getRetryPolicy();
+    }
+
+    public void setRetryPolicy(CodePushRetryPolicy retryPolicy) {
+        mRetryManager.setRetryPolicy(retryPolicy);
+    }
+
+    // Starts checking for updates every intervalMillis while the app is running, optionally downloading
+    // them ahead of time. Pass an interval of 0 to stop.
+    public void setBackgroundUpdateCheck(long intervalMillis, boolean prefetchUpdates) {
+        if (mUpdateCheckScheduler != null) {
+            mUpdateCheckScheduler.stop();
+            mUpdateCheckScheduler = null;
+        }
+
+        if (intervalMillis > 0) {
+            mUpdateCheckScheduler = new CodePushUpdateCheckScheduler(mContext, this, mUpdateManager,
+                    mUpdateCheckClient, mSettingsManager, mBinaryPackage, intervalMillis, prefetchUpdates);
+            mUpdateCheckScheduler.start();
+        }
+    }
+
+    // Tells the listener when another process of the app, e.g. one running the background update check,
+    // changes the CodePush storage. Null stops listening.
+    public void setProcessStateListener(CodePushProcessStateListener listener) {
+        if (mProcessStateObserver != null) {
+            mProcessStateObserver.stopWatching();
+            mProcessStateObserver = null;
+        }
+
+        if (listener != null) {
+            mProcessStateObserver = new CodePushProcessStateObserver(mUpdateManager.getProcessLock(), listener);
+            mProcessStateObserver.startWatching();
+        }
+    }
+
+    // Re-verifies the installed packages in the background at low priority. A corrupted current package
+    // is skipped on the next launch, a corrupted previous package is discarded.
+    public void setIntegrityScrubberEnabled(boolean isIntegrityScrubberEnabled) {
+        if (mIntegrityScrubber != null) {
+            mIntegrityScrubber.stop();
+            mIntegrityScrubber = null;
+        }
+
+        if (isIntegrityScrubberEnabled) {
+            mIntegrityScrubber = new CodePushIntegrityScrubber(mContext, mUpdateManager, mSettingsManager, mPreferencesName);
+            mIntegrityScrubber.start();
+        }
+    }
+
+    public boolean isSignaturePreCheckEnabled() {
+        return mUpdateManager.isSignaturePreCheckEnabled();
+    }
+
+    // Rejects wrongly signed updates before downloading them. Only has an effect with code signing set up.
+    public void setSignaturePreCheckEnabled(boolean isSignaturePreCheckEnabled) {
+        mUpdateManager.setSignaturePreCheckEnabled(isSignaturePreCheckEnabled);
+    }
+
+    public long getStorageQuota() {
+        return mStorageManager.getQuotaBytes();
+    }
+
+    // Limits the space taken up by downloaded packages, 0 for no limit.
+    public void setStorageQuota(long quotaBytes) {
+        mStorageManager.setQuotaBytes(quotaBytes);
+        collectGarbageInBackground();
+    }
+
+    public int getRetainedPackageCount() {
+        return mUpdateManager.getRetainedPackageCount();
+    }
+
+    // Number of installed updates, the running one included, kept on the device for rollbackTo.
+    public void setRetainedPackageCount(int retainedPackageCount) {
+        mUpdateManager.setRetainedPackageCount(retainedPackageCount);
+    }
+
+    // Switches to a retained update on the next restart, without downloading or copying anything.
+    // It is treated like a freshly installed update, so it is rolled back if it fails to load.
+    public void rollbackTo(String packageHash) {
+        if (mSettingsManager.isFailedHash(packageHash)) {
+            throw new CodePushInvalidUpdateException("Unable to roll back to package " + packageHash + ", it failed to load before.");
+        }
+
+        mUpdateManager.rollbackTo(packageHash);
+        mSettingsManager.savePendingUpdate(packageHash, /* isLoading */false);
+    }
+
+    CodePushStorageManager getStorageManager() {
+        return mStorageManager;
+    }
+
+    // Null if it can't be found, in which case the process is taken to be the main one, the only one
+    // most apps have.
+    private static String getProcessName(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        List<ActivityManager.RunningAppProcessInfo> processes = activityManager == null ? null : activityManager.getRunningAppProcesses();
+        if (processes != null) {
+            for (ActivityManager.RunningAppProcessInfo process : processes) {
+                if (process.pid == Process.myPid()) {
+                    return process.processName;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private static String getStorageName(String name) {
+        return name.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    private void collectGarbageInBackground() {
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mStorageManager.collectGarbage();
+                } catch (CodePushUnknownException e) {
+                    CodePushUtils.log(e);
+                }
+            }
+        });
+    }
+
+    // Hashing the binary's files takes a while the first time, so it is done ahead of getConfiguration.
+    private void checkBinaryPackageInBackground() {
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (CodePushBinaryPackage.getHashForBinaryContents(mContext, mIsDebugMode) != null) {
+                        mBinaryPackage.isAvailable();
+                    }
+                } catch (CodePushUnknownException e) {
+                    CodePushUtils.log(e);
+                }
+            }
+        });
+    }
+
+    CodePushBinaryPackage getBinaryPackage() {
+        return mBinaryPackage;
+    }
+
     long getBinaryResourcesModifiedTime() {
         try {
             String packageName = this.mContext.getPackageName();
@@ -201,12 +445,21 @@ public class CodePush implements ReactPackage {
         return CodePush.getJSBundleFile(CodePushConstants.DEFAULT_JS_BUNDLE_NAME);
     }
 
+    // Served by the instance created for this bundle name if there is one, by the current instance otherwise.
     public static String getJSBundleFile(String assetsBundleFileName) {
-        if (mCurrentInstance == null) {
+        CodePush instance;
+        synchronized (CodePush.class) {
+            instance = sInstances.get(assetsBundleFileName);
+            if (instance == null) {
+                instance = sCurrentInstance;
+            }
+        }
+
+        if (instance == null) {
             throw new CodePushNotInitializedException("A CodePush instance has not been created yet. Have you added it to your app's list of ReactPackages?");
         }
 
-        return mCurrentInstance.getJSBundleFileInternal(assetsBundleFileName);
+        return instance.getJSBundleFileInternal(assetsBundleFileName);
     }
 
     public String getJSBundleFileInternal(String assetsBundleFileName) {
@@ -225,14 +478,30 @@ public class CodePush implements ReactPackage {
         if (packageFilePath == null) {
             // There has not been any downloaded updates.
             CodePushUtils.logBundleUrl(binaryJsBundleUrl);
-            sIsRunningBinaryVersion = true;
+            mIsRunningBinaryVersion = true;
             return binaryJsBundleUrl;
         }
 
         JSONObject packageMetadata = this.mUpdateManager.getCurrentPackage();
         if (isPackageBundleLatest(packageMetadata)) {
+            String currentPackageHash = mUpdateManager.getCurrentPackageHash();
+            if (mSettingsManager.isCorruptedPackage(currentPackageHash)) {
+                // Found damaged by the integrity scrubber during the last session.
+                CodePushUtils.log("The current package is corrupted, falling back to the previous version.");
+                dropCurrentPackage();
+                mSettingsManager.removeCorruptedPackage(currentPackageHash);
+                return getJSBundleFileInternal(assetsBundleFileName);
+            }
+
+            if (mIsBundleFingerprintCheckEnabled && !isPackageBundleIntact(packageFilePath, packageMetadata)) {
+                // Don't wait for React Native to crash on it, fall back to the previous package (or the binary) right away.
+                CodePushUtils.log("The bundle of the current package is corrupted, falling back to the previous version.");
+                dropCurrentPackage();
+                return getJSBundleFileInternal(assetsBundleFileName);
+            }
+
             CodePushUtils.logBundleUrl(packageFilePath);
-            sIsRunningBinaryVersion = false;
+            mIsRunningBinaryVersion = false;
             return packageFilePath;
         } else {
             // The binary version is newer.
@@ -242,11 +511,78 @@ public class CodePush implements ReactPackage {
             }
 
             CodePushUtils.logBundleUrl(binaryJsBundleUrl);
-            sIsRunningBinaryVersion = true;
+            mIsRunningBinaryVersion = true;
             return binaryJsBundleUrl;
         }
     }
 
+    public boolean isBundleFingerprintCheckEnabled() {
+        return mIsBundleFingerprintCheckEnabled;
+    }
+
+    // Checks the bundle of the current package against the fingerprint taken when it was installed,
+    // before handing it to React Native.
+    public void setBundleFingerprintCheckEnabled(boolean isBundleFingerprintCheckEnabled) {
+        mIsBundleFingerprintCheckEnabled = isBundleFingerprintCheckEnabled;
+    }
+
+    public boolean isDoubleBufferedReloadEnabled() {
+        return mIsDoubleBufferedReloadEnabled;
+    }
+
+    // Reloads into a second React instance built next to the running one, see CodePushDoubleBufferedReload.
+    public void setDoubleBufferedReloadEnabled(boolean isDoubleBufferedReloadEnabled) {
+        mIsDoubleBufferedReloadEnabled = isDoubleBufferedReloadEnabled;
+    }
+
+    public long getIdleInstallWindowMillis() {
+        return mIdleInstallWindowMillis;
+    }
+
+    public long getIdleInstallDeadlineMillis() {
+        return mIdleInstallDeadlineMillis;
+    }
+
+    // ON_NEXT_IDLE installs restart the app after idleWindowMillis without input or dropped frames. If
+    // that doesn't happen within deadlineMillis, the update is applied on the next resume instead.
+    public void setIdleInstallWindow(long idleWindowMillis, long deadlineMillis) {
+        mIdleInstallWindowMillis = idleWindowMillis;
+        mIdleInstallDeadlineMillis = deadlineMillis;
+    }
+
+    // How the last restart done by CodePush in this process went, null if there wasn't one.
+    public JSONObject getLastReloadInfo() {
+        synchronized (sLastReloadInfos) {
+            return sLastReloadInfos.get(mBundleName);
+        }
+    }
+
+    void setLastReloadInfo(JSONObject lastReloadInfo) {
+        synchronized (sLastReloadInfos) {
+            sLastReloadInfos.put(mBundleName, lastReloadInfo);
+        }
+    }
+
+    private boolean isPackageBundleIntact(String packageFilePath, JSONObject packageMetadata) {
+        JSONObject bundleFingerprint = packageMetadata.optJSONObject(CodePushConstants.BUNDLE_FINGERPRINT_KEY);
+        // Packages installed by earlier versions have no fingerprint.
+        return bundleFingerprint == null || CodePushUpdateUtils.isBundleFingerprintMatching(packageFilePath, bundleFingerprint);
+    }
+
+    // Unlike a rollback, the package is not recorded as failed: its contents were damaged on this
+    // device, so downloading it again is fine.
+    private void dropCurrentPackage() {
+        String currentPackageHash = mUpdateManager.getCurrentPackageHash();
+        JSONObject pendingUpdate = mSettingsManager.getPendingUpdate();
+        if (pendingUpdate != null && currentPackageHash != null &&
+                currentPackageHash.equals(pendingUpdate.optString(CodePushConstants.PENDING_UPDATE_HASH_KEY, null))) {
+            mSettingsManager.removePendingUpdate();
+            mDidUpdate = false;
+        }
+
+        mUpdateManager.rollbackPackage();
+    }
+
     public String getServerUrl() {
         return mServerUrl;
     }
@@ -270,7 +606,7 @@ public class CodePush implements ReactPackage {
                     // Pending update was initialized, but notifyApplicationReady was not called.
                     // Therefore, deduce that it is a broken update and rollback.
                     CodePushUtils.log("Update did not finish loading the last time, rolling back to a previous version.");
-                    sNeedToReportRollback = true;
+                    mNeedToReportRollback = true;
                     rollbackPackage();
                 } else {
                     // There is in fact a new update running for the first
@@ -289,8 +625,23 @@ public class CodePush implements ReactPackage {
         }
     }
 
+    // Whether getJSBundleFile is served by this instance.
+    boolean isCurrentInstance() {
+        synchronized (CodePush.class) {
+            return mBundleName == null ? sCurrentInstance == this : sInstances.get(mBundleName) == this;
+        }
+    }
+
     void invalidateCurrentInstance() {
-        mCurrentInstance = null;
+        synchronized (CodePush.class) {
+            if (sCurrentInstance == this) {
+                sCurrentInstance = null;
+            }
+
+            if (mBundleName != null && sInstances.get(mBundleName) == this) {
+                sInstances.remove(mBundleName);
+            }
+        }
     }
 
     boolean isDebugMode() {
@@ -298,7 +649,7 @@ public class CodePush implements ReactPackage {
     }
 
     boolean isRunningBinaryVersion() {
-        return sIsRunningBinaryVersion;
+        return mIsRunningBinaryVersion;
     }
 
     private boolean isPackageBundleLatest(JSONObject packageMetadata) {
@@ -324,7 +675,7 @@ public class CodePush implements ReactPackage {
     }
 
     boolean needToReportRollback() {
-        return sNeedToReportRollback;
+        return mNeedToReportRollback;
     }
 
     public static void overrideAppVersion(String appVersionOverride) {
@@ -339,12 +690,12 @@ public class CodePush implements ReactPackage {
     }
 
     public void setNeedToReportRollback(boolean needToReportRollback) {
-        CodePush.sNeedToReportRollback = needToReportRollback;
+        mNeedToReportRollback = needToReportRollback;
     }
 
     /* The below 3 methods are used for running tests.*/
     public static boolean isUsingTestConfiguration() {
-        return sTestConfigurationFlag;
+        return CodePushUpdateManager.isUsingTestConfiguration();
     }
 
     public void setDeploymentKey(String deploymentKey) {
@@ -352,7 +703,7 @@ public class CodePush implements ReactPackage {
     }
 
     public static void setUsingTestConfiguration(boolean shouldUseTestConfiguration) {
-        sTestConfigurationFlag = shouldUseTestConfiguration;
+        CodePushUpdateManager.setUsingTestConfiguration(shouldUseTestConfiguration);
     }
 
     public void clearUpdates() {
@@ -361,20 +712,31 @@ public class CodePush implements ReactPackage {
         mSettingsManager.removeFailedUpdates();
     }
 
+    // Used by the instances which weren't given a holder of their own.
     public static void setReactInstanceHolder(ReactInstanceHolder reactInstanceHolder) {
+        sReactInstanceHolder = reactInstanceHolder;
+    }
+
+    // The holder of the React Native instance running this instance's bundle, when there are several.
+    public void attachReactInstanceHolder(ReactInstanceHolder reactInstanceHolder) {
         mReactInstanceHolder = reactInstanceHolder;
     }
 
-    static ReactInstanceManager getReactInstanceManager() {
-        if (mReactInstanceHolder == null) {
+    ReactInstanceHolder getReactInstanceHolder() {
+        return mReactInstanceHolder != null ? mReactInstanceHolder : sReactInstanceHolder;
+    }
+
+    ReactInstanceManager getReactInstanceManager() {
+        ReactInstanceHolder reactInstanceHolder = getReactInstanceHolder();
+        if (reactInstanceHolder == null) {
             return null;
         }
-        return mReactInstanceHolder.getReactInstanceManager();
+        return reactInstanceHolder.getReactInstanceManager();
     }
 
     @Override
     public List<NativeModule> createNativeModules(ReactApplicationContext reactApplicationContext) {
-        CodePushNativeModule codePushModule = new CodePushNativeModule(reactApplicationContext, this, mUpdateManager, mTelemetryManager, mSettingsManager);
+        CodePushNativeModule codePushModule = new CodePushNativeModule(reactApplicationContext, this, mUpdateManager, mTelemetryManager, mSettingsManager, mRetryManager, mUpdateCheckClient);
         CodePushDialog dialogModule = new CodePushDialog(reactApplicationContext);
 
         List<NativeModule> nativeModules = new ArrayList<>();
@@ -0,0 +1,59 @@
+package com.microsoft.codepush.react;
+
+import android.os.Build;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.util.Base64;
+import android.util.Log;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+// Android implementations of the platform services used by the update engine.
+public class CodePushAndroidPlatform {
+    private static boolean sIsInstalled = false;
+
+    public static synchronized void install() {
+        if (sIsInstalled) {
+            return;
+        }
+
+        CodePushPlatform.setLogger(new CodePushLogger() {
+            @Override
+            public void log(String message) {
+                Log.d(CodePushConstants.REACT_NATIVE_LOG_TAG, "[CodePush] " + message);
+            }
+
+            @Override
+            public void log(Throwable throwable) {
+                Log.e(CodePushConstants.REACT_NATIVE_LOG_TAG, "[CodePush] Exception", throwable);
+            }
+        });
+
+        CodePushPlatform.setBase64(new CodePushBase64() {
+            @Override
+            public byte[] decode(String encoded) {
+                return Base64.decode(encoded.getBytes(), Base64.DEFAULT);
+            }
+        });
+
+        CodePushPlatform.setFileAllocator(new CodePushFileAllocator() {
+            @Override
+            public boolean preallocate(FileOutputStream outputStream, long length) throws IOException {
+                if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+                    return true;
+                }
+
+                try {
+                    Os.posix_fallocate(outputStream.getFD(), 0, length);
+                    return true;
+                } catch (ErrnoException e) {
+                    return e.errno != OsConstants.ENOSPC;
+                }
+            }
+        });
+
+        sIsInstalled = true;
+    }
+}
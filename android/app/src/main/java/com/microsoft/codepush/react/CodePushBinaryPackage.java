@@ -0,0 +1,287 @@
+package com.microsoft.codepush.react;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.content.res.AssetManager;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The JS bundle and drawables embedded in the APK, exposed as the contents of a CodePush package so
+ * that diff updates can be applied on top of the binary version. The files are read through the
+ * AssetManager, based on the manifest "codepush.gradle" writes next to the binary hash, and each one
+ * is checked against its hash since the build tools are free to reprocess resources.
+ */
+public class CodePushBinaryPackage implements CodePushBinaryContents {
+    private static final String BINARY_PACKAGE_STATE_KEY = "CODE_PUSH_BINARY_PACKAGE_STATE";
+    private static final String IS_AVAILABLE_KEY = "isAvailable";
+    private static final String LAST_UPDATE_TIME_KEY = "lastUpdateTime";
+    private static final String RESOURCES_PREFIX = "res/";
+    // Older build tools add an implicit "-v4" qualifier to density specific resource folders.
+    private static final String IMPLICIT_QUALIFIER = "-v4";
+
+    private final AssetManager mAssetManager;
+    private final SharedPreferences mSettings;
+    private final long mLastUpdateTime;
+    private volatile Boolean mIsAvailable;
+    private long mSize = -1;
+
+    public CodePushBinaryPackage(Context applicationContext, String preferencesName) {
+        mAssetManager = applicationContext.getAssets();
+        mSettings = applicationContext.getSharedPreferences(preferencesName, 0);
+        long lastUpdateTime;
+        try {
+            lastUpdateTime = applicationContext.getPackageManager().getPackageInfo(applicationContext.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            // Should not happen.
+            throw new CodePushUnknownException("Unable to get package info for " + applicationContext.getPackageName(), e);
+        }
+
+        mLastUpdateTime = lastUpdateTime;
+    }
+
+    public static String getHashForBinaryContents(Context context, boolean isDebugMode) {
+        try {
+            return CodePushUtils.getStringFromInputStream(context.getAssets().open(CodePushConstants.CODE_PUSH_HASH_FILE_NAME));
+        } catch (IOException e) {
+            try {
+                return CodePushUtils.getStringFromInputStream(context.getAssets().open(CodePushConstants.CODE_PUSH_OLD_HASH_FILE_NAME));
+            } catch (IOException ex) {
+                if (!isDebugMode) {
+                    // Only print this message in "Release" mode. In "Debug", we may not have the
+                    // hash if the build skips bundling the files.
+                    CodePushUtils.log("Unable to get the hash of the binary's bundled resources - \"codepush.gradle\" may have not been added to the build definition.");
+                }
+            }
+            return null;
+        }
+    }
+
+    // Whether every file of the binary's manifest can be read back with the expected contents. This is
+    // computed once per installed binary, diff updates against the binary are only requested if it holds.
+    public synchronized boolean isAvailable() {
+        if (mIsAvailable != null) {
+            return mIsAvailable;
+        }
+
+        JSONObject savedState = getSavedState();
+        if (savedState != null && savedState.optLong(LAST_UPDATE_TIME_KEY) == mLastUpdateTime) {
+            mIsAvailable = savedState.optBoolean(IS_AVAILABLE_KEY);
+            return mIsAvailable;
+        }
+
+        boolean isAvailable;
+        try {
+            for (String manifestEntry : getManifest()) {
+                String relativePath = getRelativePath(manifestEntry);
+                if (!getHash(manifestEntry).equals(computeHash(openBinaryFile(relativePath), null))) {
+                    throw new CodePushInvalidUpdateException("The binary file " + relativePath + " does not match its manifest entry");
+                }
+            }
+
+            isAvailable = true;
+        } catch (IOException | CodePushInvalidUpdateException e) {
+            CodePushUtils.log("Diff updates against the binary are not available: " + e.getMessage());
+            isAvailable = false;
+        }
+
+        setAvailable(isAvailable);
+        return isAvailable;
+    }
+
+    // What isAvailable found, without waiting for it, false until it is done. See CodePush, which runs
+    // it in the background at startup.
+    public boolean isKnownAvailable() {
+        Boolean isAvailable = mIsAvailable;
+        return isAvailable != null && isAvailable;
+    }
+
+    // Writes the binary's files into the given package folder, laid out the way they are in an update.
+    // Returns the hashes of the copied files, keyed by their path relative to the package folder.
+    @Override
+    public Map<String, String> copyContents(String packageFolderPath) throws IOException {
+        Map<String, String> copiedFileHashes = new HashMap<>();
+        try {
+            for (String manifestEntry : getManifest()) {
+                String relativePath = getRelativePath(manifestEntry);
+                File destinationFile = new File(packageFolderPath, relativePath);
+                destinationFile.getParentFile().mkdirs();
+                OutputStream outputStream = new FileOutputStream(destinationFile);
+                try {
+                    if (!getHash(manifestEntry).equals(computeHash(openBinaryFile(relativePath), outputStream))) {
+                        throw new CodePushInvalidUpdateException("The binary file " + relativePath + " does not match its manifest entry");
+                    }
+                } finally {
+                    outputStream.close();
+                }
+
+                copiedFileHashes.put(relativePath, getHash(manifestEntry));
+            }
+
+            return copiedFileHashes;
+        } catch (IOException | CodePushInvalidUpdateException e) {
+            // Don't ask for diffs against the binary again, the next update check gets a full update.
+            setAvailable(false);
+            throw new CodePushUnknownException("Unable to use the binary contents as the base of a diff update", e);
+        }
+    }
+
+    // The binary doesn't change while the app runs, so this is computed once.
+    @Override
+    public synchronized long getSize() throws IOException {
+        if (mSize >= 0) {
+            return mSize;
+        }
+
+        try {
+            long size = 0;
+            for (String manifestEntry : getManifest()) {
+                size += getSize(openBinaryFile(getRelativePath(manifestEntry)));
+            }
+
+            mSize = size;
+            return size;
+        } catch (IOException | CodePushInvalidUpdateException e) {
+            setAvailable(false);
+            throw new CodePushUnknownException("Unable to use the binary contents as the base of a diff update", e);
+        }
+    }
+
+    private List<String> getManifest() throws IOException {
+        String manifestString = CodePushUtils.getStringFromInputStream(mAssetManager.open(CodePushConstants.CODE_PUSH_MANIFEST_FILE_NAME));
+        String binaryHash = CodePushUtils.getStringFromInputStream(mAssetManager.open(CodePushConstants.CODE_PUSH_HASH_FILE_NAME));
+        List<String> manifest = new ArrayList<>();
+        JSONArray manifestJSONArray;
+        try {
+            manifestJSONArray = new JSONArray(manifestString);
+            for (int i = 0; i < manifestJSONArray.length(); i++) {
+                manifest.add(manifestJSONArray.getString(i));
+            }
+        } catch (JSONException e) {
+            throw new CodePushInvalidUpdateException("Unable to parse the binary manifest");
+        }
+
+        // Make sure the manifest describes the same contents as the binary hash sent to the server.
+        String manifestHash = CodePushUpdateUtils.computeManifestHash(manifest);
+        if (!manifestHash.equals(binaryHash)) {
+            throw new CodePushInvalidUpdateException("The binary manifest does not match the binary hash");
+        }
+
+        return manifest;
+    }
+
+    private String getRelativePath(String manifestEntry) {
+        return manifestEntry.substring(0, manifestEntry.lastIndexOf(':'));
+    }
+
+    private String getHash(String manifestEntry) {
+        return manifestEntry.substring(manifestEntry.lastIndexOf(':') + 1);
+    }
+
+    // Manifest paths are "CodePush/<bundle file>" for assets and "CodePush/<resource folder>/<file>" for drawables.
+    private InputStream openBinaryFile(String relativePath) throws IOException {
+        String path = relativePath.substring(CodePushConstants.CODE_PUSH_FOLDER_PREFIX.length() + 1);
+        int separatorIndex = path.indexOf('/');
+        if (separatorIndex < 0) {
+            return mAssetManager.open(path);
+        }
+
+        String resourceFolder = path.substring(0, separatorIndex);
+        String fileName = path.substring(separatorIndex + 1);
+        try {
+            return mAssetManager.openNonAssetFd(RESOURCES_PREFIX + resourceFolder + "/" + fileName).createInputStream();
+        } catch (FileNotFoundException e) {
+            return mAssetManager.openNonAssetFd(RESOURCES_PREFIX + resourceFolder + IMPLICIT_QUALIFIER + "/" + fileName).createInputStream();
+        }
+    }
+
+    // Skips through the stream rather than reading it, which assets support without decompressing.
+    private long getSize(InputStream inputStream) throws IOException {
+        try {
+            long size = 0;
+            while (true) {
+                long numBytesSkipped = inputStream.skip(Long.MAX_VALUE);
+                if (numBytesSkipped > 0) {
+                    size += numBytesSkipped;
+                } else if (inputStream.read() >= 0) {
+                    size++;
+                } else {
+                    return size;
+                }
+            }
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    // Hashes the stream, copying it to outputStream along the way if one is given.
+    private String computeHash(InputStream inputStream, OutputStream outputStream) throws IOException {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Should not happen.
+            throw new CodePushUnknownException("Unable to compute hash of binary contents.", e);
+        }
+
+        DigestInputStream digestInputStream = new DigestInputStream(inputStream, messageDigest);
+        try {
+            byte[] buffer = new byte[CodePushConstants.DOWNLOAD_BUFFER_SIZE];
+            int numBytesRead;
+            while ((numBytesRead = digestInputStream.read(buffer)) != -1) {
+                if (outputStream != null) {
+                    outputStream.write(buffer, 0, numBytesRead);
+                }
+            }
+        } finally {
+            digestInputStream.close();
+        }
+
+        return String.format("%064x", new java.math.BigInteger(1, messageDigest.digest()));
+    }
+
+    private JSONObject getSavedState() {
+        String savedStateString = mSettings.getString(BINARY_PACKAGE_STATE_KEY, null);
+        if (savedStateString == null) {
+            return null;
+        }
+
+        try {
+            return new JSONObject(savedStateString);
+        } catch (JSONException e) {
+            // Unrecognized data format, the check is simply done again.
+            return null;
+        }
+    }
+
+    private synchronized void setAvailable(boolean isAvailable) {
+        mIsAvailable = isAvailable;
+        JSONObject state = new JSONObject();
+        try {
+            state.put(LAST_UPDATE_TIME_KEY, mLastUpdateTime);
+            state.put(IS_AVAILABLE_KEY, isAvailable);
+        } catch (JSONException e) {
+            // Should not happen.
+            throw new CodePushUnknownException("Unable to save binary package state", e);
+        }
+
+        mSettings.edit().putString(BINARY_PACKAGE_STATE_KEY, state.toString()).commit();
+    }
+}
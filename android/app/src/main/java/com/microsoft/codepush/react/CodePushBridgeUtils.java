@@ -1,7 +1,5 @@
 package com.microsoft.codepush.react;
 
-import android.util.Log;
-
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.NoSuchKeyException;
 import com.facebook.react.bridge.ReadableArray;
@@ -15,18 +13,10 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.Iterator;
 
-public class CodePushUtils {
-
-    public static String appendPathComponent(String basePath, String appendPathComponent) {
-        return new File(basePath, appendPathComponent).getAbsolutePath();
-    }
+// Conversions between the JSON used by the update engine and the React Native bridge types.
+public class CodePushBridgeUtils {
 
     public static WritableArray convertJsonArrayToWritable(JSONArray jsonArr) {
         WritableArray arr = Arguments.createArray();
@@ -172,53 +162,16 @@ public class CodePushUtils {
         return jsonObj;
     }
 
-    public static String getStringFromInputStream(InputStream inputStream) throws IOException {
-        BufferedReader bufferedReader = null;
-        try {
-            StringBuilder buffer = new StringBuilder();
-            bufferedReader = new BufferedReader(new InputStreamReader(inputStream));
-
-            String line;
-            while ((line = bufferedReader.readLine()) != null) {
-                buffer.append(line);
-                buffer.append("\n");
-            }
-
-            return buffer.toString().trim();
-        } finally {
-            if (bufferedReader != null) bufferedReader.close();
-            if (inputStream != null) inputStream.close();
-        }
-    }
-
-    public static JSONObject getJsonObjectFromFile(String filePath) throws IOException {
-        String content = FileUtils.readFileToString(filePath);
-        try {
-            return new JSONObject(content);
-        } catch (JSONException jsonException) {
-            // Should not happen
-            throw new CodePushMalformedDataException(filePath, jsonException);
-        }
-    }
-
-    public static void log(String message) {
-        Log.d(CodePushConstants.REACT_NATIVE_LOG_TAG, "[CodePush] " + message);
-    }
-
-    public static void log(Throwable tr) {
-        Log.e(CodePushConstants.REACT_NATIVE_LOG_TAG, "[CodePush] Exception", tr);
-    }
-
-    public static void logBundleUrl(String path) {
-        log("Loading JS bundle from \"" + path + "\"");
-    }
-
-    public static void setJSONValueForKey(JSONObject json, String key, Object value) {
-        try {
-            json.put(key, value);
-        } catch (JSONException e) {
-            throw new CodePushUnknownException("Unable to set value " + value + " for key " + key + " to JSONObject");
+    public static WritableMap convertDownloadProgressToWritable(DownloadProgress downloadProgress) {
+        WritableMap map = Arguments.createMap();
+        if (downloadProgress.getTotalBytes() < Integer.MAX_VALUE) {
+            map.putInt("totalBytes", (int) downloadProgress.getTotalBytes());
+            map.putInt("receivedBytes", (int) downloadProgress.getReceivedBytes());
+        } else {
+            map.putDouble("totalBytes", downloadProgress.getTotalBytes());
+            map.putDouble("receivedBytes", downloadProgress.getReceivedBytes());
         }
+        return map;
     }
 
     public static String tryGetString(ReadableMap map, String key) {
@@ -228,9 +181,4 @@ public class CodePushUtils {
             return null;
         }
     }
-
-    public static void writeJsonToFile(JSONObject json, String filePath) throws IOException {
-        String jsonString = json.toString();
-        FileUtils.writeStringToFile(jsonString, filePath);
-    }
 }
@@ -9,6 +9,20 @@ public class CodePushBuilder {
     private boolean mIsDebugMode;
     private String mServerUrl;
     private Integer mPublicKeyResourceDescriptor;
+    private CodePushRetryPolicy mRetryPolicy;
+    private long mBackgroundUpdateCheckIntervalMillis;
+    private boolean mPrefetchUpdates;
+    private boolean mIsBundleFingerprintCheckEnabled;
+    private boolean mIsIntegrityScrubberEnabled;
+    private long mStorageQuotaBytes;
+    private int mRetainedPackageCount;
+    private boolean mIsSignaturePreCheckEnabled;
+    private String mBundleName;
+    private ReactInstanceHolder mReactInstanceHolder;
+    private boolean mIsDoubleBufferedReloadEnabled;
+    private long mIdleInstallWindowMillis;
+    private long mIdleInstallDeadlineMillis;
+    private CodePushProcessStateListener mProcessStateListener;
 
     public CodePushBuilder(String deploymentKey, Context context) {
         this.mDeploymentKey = deploymentKey;
@@ -31,7 +45,106 @@ public class CodePushBuilder {
         return this;
     }
 
+    public CodePushBuilder setRetryPolicy(CodePushRetryPolicy retryPolicy) {
+        this.mRetryPolicy = retryPolicy;
+        return this;
+    }
+
+    public CodePushBuilder setBackgroundUpdateCheck(long intervalMillis, boolean prefetchUpdates) {
+        this.mBackgroundUpdateCheckIntervalMillis = intervalMillis;
+        this.mPrefetchUpdates = prefetchUpdates;
+        return this;
+    }
+
+    public CodePushBuilder setBundleFingerprintCheckEnabled(boolean isBundleFingerprintCheckEnabled) {
+        this.mIsBundleFingerprintCheckEnabled = isBundleFingerprintCheckEnabled;
+        return this;
+    }
+
+    public CodePushBuilder setIntegrityScrubberEnabled(boolean isIntegrityScrubberEnabled) {
+        this.mIsIntegrityScrubberEnabled = isIntegrityScrubberEnabled;
+        return this;
+    }
+
+    public CodePushBuilder setStorageQuota(long quotaBytes) {
+        this.mStorageQuotaBytes = quotaBytes;
+        return this;
+    }
+
+    public CodePushBuilder setRetainedPackageCount(int retainedPackageCount) {
+        this.mRetainedPackageCount = retainedPackageCount;
+        return this;
+    }
+
+    public CodePushBuilder setSignaturePreCheckEnabled(boolean isSignaturePreCheckEnabled) {
+        this.mIsSignaturePreCheckEnabled = isSignaturePreCheckEnabled;
+        return this;
+    }
+
+    public CodePushBuilder setBundleName(String bundleName) {
+        this.mBundleName = bundleName;
+        return this;
+    }
+
+    public CodePushBuilder setReactInstanceHolder(ReactInstanceHolder reactInstanceHolder) {
+        this.mReactInstanceHolder = reactInstanceHolder;
+        return this;
+    }
+
+    public CodePushBuilder setDoubleBufferedReloadEnabled(boolean isDoubleBufferedReloadEnabled) {
+        this.mIsDoubleBufferedReloadEnabled = isDoubleBufferedReloadEnabled;
+        return this;
+    }
+
+    public CodePushBuilder setIdleInstallWindow(long idleWindowMillis, long deadlineMillis) {
+        this.mIdleInstallWindowMillis = idleWindowMillis;
+        this.mIdleInstallDeadlineMillis = deadlineMillis;
+        return this;
+    }
+
+    public CodePushBuilder setProcessStateListener(CodePushProcessStateListener processStateListener) {
+        this.mProcessStateListener = processStateListener;
+        return this;
+    }
+
     public CodePush build() {
-        return new CodePush(this.mDeploymentKey, this.mContext, this.mIsDebugMode, this.mServerUrl, this.mPublicKeyResourceDescriptor);
+        CodePush codePush = new CodePush(this.mDeploymentKey, this.mContext, this.mIsDebugMode, this.mServerUrl, this.mPublicKeyResourceDescriptor, this.mBundleName);
+        if (this.mReactInstanceHolder != null) {
+            codePush.attachReactInstanceHolder(this.mReactInstanceHolder);
+        }
+
+        if (this.mRetryPolicy != null) {
+            codePush.setRetryPolicy(this.mRetryPolicy);
+        }
+
+        codePush.setBundleFingerprintCheckEnabled(this.mIsBundleFingerprintCheckEnabled);
+        codePush.setSignaturePreCheckEnabled(this.mIsSignaturePreCheckEnabled);
+        codePush.setDoubleBufferedReloadEnabled(this.mIsDoubleBufferedReloadEnabled);
+
+        if (this.mIdleInstallWindowMillis > 0 && this.mIdleInstallDeadlineMillis > 0) {
+            codePush.setIdleInstallWindow(this.mIdleInstallWindowMillis, this.mIdleInstallDeadlineMillis);
+        }
+
+        if (this.mRetainedPackageCount > 0) {
+            codePush.setRetainedPackageCount(this.mRetainedPackageCount);
+        }
+
+        if (this.mStorageQuotaBytes > 0) {
+            codePush.setStorageQuota(this.mStorageQuotaBytes);
+        }
+
+        if (this.mBackgroundUpdateCheckIntervalMillis > 0) {
+            codePush.setBackgroundUpdateCheck(this.mBackgroundUpdateCheckIntervalMillis, this.mPrefetchUpdates);
+        }
+
+        if (this.mIsIntegrityScrubberEnabled) {
+            codePush.setIntegrityScrubberEnabled(true);
+        }
+
+        if (this.mProcessStateListener != null) {
+            codePush.setProcessStateListener(this.mProcessStateListener);
+        }
+
+        return codePush;
     }
 }
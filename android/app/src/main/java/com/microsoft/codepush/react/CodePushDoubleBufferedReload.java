@@ -0,0 +1,130 @@
+package com.microsoft.codepush.react;
+
+import android.app.Activity;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.facebook.react.ReactInstanceManager;
+import com.facebook.react.ReactNativeHost;
+import com.facebook.react.ReactRootView;
+import com.facebook.react.common.LifecycleState;
+import com.facebook.react.modules.core.DefaultHardwareBackBtnHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reloads the app by creating a second React instance while the current one keeps running, and
+ * moving the root views over to it once its JS is initialized. The user keeps seeing the app until
+ * the new bundle is ready to render, instead of a blank screen during the teardown and the JS load.
+ *
+ * All the methods run on the UI thread. If anything goes wrong before the root views are moved, the
+ * new instance is destroyed and the fallback, reloading in place, runs instead.
+ */
+class CodePushDoubleBufferedReload {
+    private static final long POLL_INTERVAL_MILLIS = 16;
+    // Longer than loading any bundle should take, the instance is likely stuck on an error by then.
+    private static final long TIMEOUT_MILLIS = 30 * 1000;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final ReactNativeHost mReactNativeHost;
+    private final ReactInstanceManager mCurrentInstanceManager;
+    private final ReactInstanceManager mNextInstanceManager;
+    private final Activity mActivity;
+    private final Runnable mOnSwapped;
+    private final Runnable mFallback;
+    private long mStartTimeMillis;
+
+    private final Runnable mPollRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mNextInstanceManager.getCurrentReactContext() != null) {
+                swap();
+            } else if (SystemClock.uptimeMillis() - mStartTimeMillis > TIMEOUT_MILLIS) {
+                fail(new CodePushUnknownException("The new React context was not initialized within " + TIMEOUT_MILLIS + "ms."));
+            } else {
+                mHandler.postDelayed(this, POLL_INTERVAL_MILLIS);
+            }
+        }
+    };
+
+    CodePushDoubleBufferedReload(ReactNativeHost reactNativeHost, ReactInstanceManager currentInstanceManager,
+                                 ReactInstanceManager nextInstanceManager, Activity activity, Runnable onSwapped, Runnable fallback) {
+        mReactNativeHost = reactNativeHost;
+        mCurrentInstanceManager = currentInstanceManager;
+        mNextInstanceManager = nextInstanceManager;
+        mActivity = activity;
+        mOnSwapped = onSwapped;
+        mFallback = fallback;
+    }
+
+    void start() {
+        try {
+            mStartTimeMillis = SystemClock.uptimeMillis();
+            // Only the JS load and init happen in the background, the current instance is left alone.
+            mNextInstanceManager.createReactContextInBackground();
+            mHandler.post(mPollRunnable);
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    private void swap() {
+        List<ReactRootView> rootViews;
+        try {
+            rootViews = getAttachedRootViews(mCurrentInstanceManager);
+            CodePushReactReflection.setHostInstanceManager(mReactNativeHost, mNextInstanceManager);
+        } catch (Exception e) {
+            fail(e);
+            return;
+        }
+
+        if (mCurrentInstanceManager.getLifecycleState() == LifecycleState.RESUMED && !mActivity.isFinishing()) {
+            if (mActivity instanceof DefaultHardwareBackBtnHandler) {
+                mNextInstanceManager.onHostResume(mActivity, (DefaultHardwareBackBtnHandler) mActivity);
+            } else {
+                mNextInstanceManager.onHostResume(mActivity);
+            }
+        }
+
+        for (ReactRootView rootView : rootViews) {
+            String moduleName = rootView.getJSModuleName();
+            Bundle appProperties = rootView.getAppProperties();
+            rootView.unmountReactApplication();
+            rootView.startReactApplication(mNextInstanceManager, moduleName, appProperties);
+        }
+
+        CodePushUtils.log("Swapped to the new React context after " + (SystemClock.uptimeMillis() - mStartTimeMillis) + "ms.");
+        mCurrentInstanceManager.destroy();
+        mOnSwapped.run();
+    }
+
+    private void fail(Exception e) {
+        CodePushUtils.log("Unable to reload off-screen, reloading in place instead. " + e.getMessage());
+        mHandler.removeCallbacks(mPollRunnable);
+        try {
+            if (CodePushReactReflection.getHostInstanceManager(mReactNativeHost) == mNextInstanceManager) {
+                CodePushReactReflection.setHostInstanceManager(mReactNativeHost, mCurrentInstanceManager);
+            }
+
+            mNextInstanceManager.destroy();
+        } catch (Exception destroyException) {
+            CodePushUtils.log(destroyException);
+        }
+
+        mFallback.run();
+    }
+
+    private static List<ReactRootView> getAttachedRootViews(ReactInstanceManager instanceManager) throws IllegalAccessException {
+        List<ReactRootView> rootViews = new ArrayList<>();
+        for (Object rootView : CodePushReactReflection.getAttachedRootViews(instanceManager)) {
+            if (rootView instanceof ReactRootView) {
+                rootViews.add((ReactRootView) rootView);
+            }
+        }
+
+        return rootViews;
+    }
+}
@@ -0,0 +1,147 @@
+package com.microsoft.codepush.react;
+
+import android.app.Activity;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Window;
+
+import com.facebook.react.modules.core.ChoreographerCompat;
+import com.facebook.react.modules.core.ReactChoreographer;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Waits for the app to be idle, i.e. for a window of time without user input and without dropped
+ * frames, so that an update can be applied without interrupting a scroll or an animation. Frames are
+ * timed through {@link ReactChoreographer}, input is seen by wrapping the activity's window callback.
+ *
+ * Calls onIdle once the app has been idle for idleWindowMillis, or onDeadline if that hasn't happened
+ * after deadlineMillis. Both are called on the UI thread.
+ */
+class CodePushIdleWatcher {
+    // A frame taking longer than this many refresh intervals counts as dropped.
+    private static final double DROPPED_FRAME_FACTOR = 1.5;
+    private static final float DEFAULT_REFRESH_RATE = 60;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Activity mActivity;
+    private final long mIdleWindowNanos;
+    private final long mDeadlineNanos;
+    private final Runnable mOnIdle;
+    private final Runnable mOnDeadline;
+
+    private Window mWindow;
+    private Window.Callback mOriginalWindowCallback;
+    private Window.Callback mWindowCallback;
+    private long mMaxFrameIntervalNanos;
+    private long mStartTimeNanos;
+    private long mLastFrameTimeNanos;
+    private long mQuietSinceNanos;
+    private volatile long mLastInputTimeNanos;
+    private boolean mIsStopped = true;
+
+    private final ChoreographerCompat.FrameCallback mFrameCallback = new ChoreographerCompat.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            onFrame(frameTimeNanos);
+        }
+    };
+
+    CodePushIdleWatcher(Activity activity, long idleWindowMillis, long deadlineMillis, Runnable onIdle, Runnable onDeadline) {
+        mActivity = activity;
+        mIdleWindowNanos = idleWindowMillis * 1000000;
+        mDeadlineNanos = deadlineMillis * 1000000;
+        mOnIdle = onIdle;
+        mOnDeadline = onDeadline;
+    }
+
+    // Must run on the UI thread.
+    void start() {
+        float refreshRate = mActivity.getWindowManager().getDefaultDisplay().getRefreshRate();
+        mMaxFrameIntervalNanos = (long) (DROPPED_FRAME_FACTOR * 1000000000L / (refreshRate > 0 ? refreshRate : DEFAULT_REFRESH_RATE));
+        mStartTimeNanos = System.nanoTime();
+        mQuietSinceNanos = mStartTimeNanos;
+        mLastFrameTimeNanos = 0;
+        mIsStopped = false;
+        watchInput();
+        ReactChoreographer.getInstance().postFrameCallback(ReactChoreographer.CallbackType.IDLE_EVENT, mFrameCallback);
+    }
+
+    // Can be called from any thread.
+    void stop() {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    stop();
+                }
+            });
+            return;
+        }
+
+        if (mIsStopped) {
+            return;
+        }
+
+        mIsStopped = true;
+        ReactChoreographer.getInstance().removeFrameCallback(ReactChoreographer.CallbackType.IDLE_EVENT, mFrameCallback);
+        // Someone may have wrapped the callback since, it then keeps forwarding to ours, which only records input.
+        if (mWindow != null && mWindow.getCallback() == mWindowCallback) {
+            mWindow.setCallback(mOriginalWindowCallback);
+        }
+    }
+
+    private void onFrame(long frameTimeNanos) {
+        if (mIsStopped) {
+            return;
+        }
+
+        if (mLastFrameTimeNanos != 0 && frameTimeNanos - mLastFrameTimeNanos > mMaxFrameIntervalNanos) {
+            mQuietSinceNanos = frameTimeNanos;
+        }
+
+        mLastFrameTimeNanos = frameTimeNanos;
+        mQuietSinceNanos = Math.max(mQuietSinceNanos, mLastInputTimeNanos);
+        if (frameTimeNanos - mQuietSinceNanos >= mIdleWindowNanos) {
+            stop();
+            mOnIdle.run();
+        } else if (frameTimeNanos - mStartTimeNanos >= mDeadlineNanos) {
+            stop();
+            mOnDeadline.run();
+        } else {
+            ReactChoreographer.getInstance().postFrameCallback(ReactChoreographer.CallbackType.IDLE_EVENT, mFrameCallback);
+        }
+    }
+
+    // A proxy, so that callback methods added in later Android versions are forwarded as well.
+    private void watchInput() {
+        mWindow = mActivity.getWindow();
+        mOriginalWindowCallback = mWindow == null ? null : mWindow.getCallback();
+        if (mOriginalWindowCallback == null) {
+            return;
+        }
+
+        final Window.Callback originalWindowCallback = mOriginalWindowCallback;
+        mWindowCallback = (Window.Callback) Proxy.newProxyInstance(Window.Callback.class.getClassLoader(),
+                new Class<?>[]{Window.Callback.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        String methodName = method.getName();
+                        if (methodName.equals("dispatchTouchEvent") || methodName.equals("dispatchKeyEvent")
+                                || methodName.equals("dispatchGenericMotionEvent") || methodName.equals("dispatchTrackballEvent")) {
+                            mLastInputTimeNanos = System.nanoTime();
+                        }
+
+                        try {
+                            return method.invoke(originalWindowCallback, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    }
+                });
+        mWindow.setCallback(mWindowCallback);
+    }
+}
@@ -4,7 +4,8 @@ public enum CodePushInstallMode {
     IMMEDIATE(0),
     ON_NEXT_RESTART(1),
     ON_NEXT_RESUME(2),
-    ON_NEXT_SUSPEND(3);
+    ON_NEXT_SUSPEND(3),
+    ON_NEXT_IDLE(4);
 
     private final int value;
     CodePushInstallMode(int value) {
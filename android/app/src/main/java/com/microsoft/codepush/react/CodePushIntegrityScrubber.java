@@ -0,0 +1,312 @@
+package com.microsoft.codepush.react;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Process;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Re-verifies the current and previous packages in the background, with the same folder hash
+ * as {@link CodePushUpdateUtils#verifyFolderHash}. Reads are throttled and progress is saved, so
+ * a scrub interrupted by the process going away continues where it stopped in the next session.
+ * A damaged current package is flagged and skipped on the next launch, a damaged previous
+ * package is discarded so that a rollback can't land on it.
+ */
+public class CodePushIntegrityScrubber {
+    private static final String SCRUB_STATE_KEY = "CODE_PUSH_SCRUB_STATE";
+    private static final String FILE_HASHES_KEY = "fileHashes";
+    private static final String PACKAGE_FOLDER_TIME_KEY = "packageFolderTime";
+    private static final String PACKAGE_HASH_KEY = "packageHash";
+    private static final String VERIFIED_PACKAGES_KEY = "verifiedPackages";
+
+    // Give the app time to finish starting up before competing with it for I/O.
+    private static final long START_DELAY_MILLIS = 30 * 1000;
+    private static final long REVERIFY_INTERVAL_MILLIS = 24 * 60 * 60 * 1000;
+    private static final long MAX_BYTES_PER_SECOND = 512 * 1024;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int FILES_PER_PROGRESS_SAVE = 16;
+
+    private final CodePushUpdateManager mUpdateManager;
+    private final SettingsManager mSettingsManager;
+    private final SharedPreferences mSettings;
+    private ScheduledExecutorService mExecutor;
+
+    public CodePushIntegrityScrubber(Context applicationContext, CodePushUpdateManager updateManager, SettingsManager settingsManager,
+                                     String preferencesName) {
+        mUpdateManager = updateManager;
+        mSettingsManager = settingsManager;
+        mSettings = applicationContext.getSharedPreferences(preferencesName, 0);
+    }
+
+    public synchronized void start() {
+        if (mExecutor != null) {
+            return;
+        }
+
+        mExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "CodePushIntegrityScrubber");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        mExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                try {
+                    // Read under the lock, so they can't be caught halfway through an install in another
+                    // process. The scrub itself doesn't hold it, installs shouldn't wait for it.
+                    String currentPackageHash;
+                    String previousPackageHash;
+                    CodePushProcessLock processLock = mUpdateManager.getProcessLock();
+                    processLock.lockShared(CodePushProcessLock.STATE);
+                    try {
+                        currentPackageHash = mUpdateManager.getCurrentPackageHash();
+                        previousPackageHash = mUpdateManager.getPreviousPackageHash();
+                    } finally {
+                        processLock.unlockShared(CodePushProcessLock.STATE);
+                    }
+
+                    scrubPackage(currentPackageHash);
+                    scrubPackage(previousPackageHash);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception e) {
+                    CodePushUtils.log("Integrity scrub failed: " + e.getMessage());
+                }
+            }
+        }, START_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (mExecutor != null) {
+            mExecutor.shutdownNow();
+            mExecutor = null;
+        }
+    }
+
+    private void scrubPackage(String packageHash) throws InterruptedException {
+        if (packageHash == null) {
+            return;
+        }
+
+        JSONObject scrubState = getScrubState();
+        JSONObject verifiedPackages = scrubState.optJSONObject(VERIFIED_PACKAGES_KEY);
+        if (verifiedPackages != null && System.currentTimeMillis() - verifiedPackages.optLong(packageHash, 0) < REVERIFY_INTERVAL_MILLIS) {
+            return;
+        }
+
+        String packageFolderPath = mUpdateManager.getPackageFolderPath(packageHash);
+        File packageFolder = new File(packageFolderPath);
+        boolean isResumable = packageHash.equals(scrubState.optString(PACKAGE_HASH_KEY, null));
+        if (!packageFolder.isDirectory()) {
+            // Removed since it was installed, e.g. by a rollback in another process, there is nothing to verify.
+            CodePushUtils.log("Package " + packageHash + " is no longer installed, not scrubbing it.");
+            if (isResumable) {
+                clearProgress();
+            }
+
+            return;
+        }
+
+        // Resume from the files hashed in an earlier session, if that scrub was of the same package folder.
+        // A folder written again since, e.g. when the same update was installed again, is hashed from the start.
+        JSONObject fileHashes = null;
+        if (isResumable && scrubState.optLong(PACKAGE_FOLDER_TIME_KEY, -1) == packageFolder.lastModified()) {
+            fileHashes = scrubState.optJSONObject(FILE_HASHES_KEY);
+        }
+
+        if (fileHashes == null) {
+            fileHashes = new JSONObject();
+        }
+
+        Map<String, String> expectedFileHashes = CodePushUpdateUtils.getVerifiedFileHashes(packageFolderPath);
+        TreeSet<String> relativeFilePaths = new TreeSet<>();
+        CodePushUpdateUtils.addRelativeFilePaths(packageFolderPath, "", relativeFilePaths);
+        // Metadata written next to the package contents is not part of the package hash.
+        relativeFilePaths.remove(CodePushConstants.PACKAGE_FILE_NAME);
+        relativeFilePaths.remove(CodePushConstants.PACKAGE_MANIFEST_FILE_NAME);
+
+        CodePushUtils.log("Scrubbing package " + packageHash + " (" + fileHashes.length() + " of " + relativeFilePaths.size() + " files done)");
+        int filesSinceProgressSave = 0;
+        for (String relativeFilePath : relativeFilePaths) {
+            if (CodePushUpdateUtils.isHashIgnored(relativeFilePath) || fileHashes.has(relativeFilePath)) {
+                continue;
+            }
+
+            String fileHash;
+            try {
+                fileHash = computeThrottledHash(new File(packageFolderPath, relativeFilePath));
+            } catch (IOException e) {
+                onPackageCorrupted(packageHash, "unable to read " + relativeFilePath + ": " + e.getMessage());
+                return;
+            }
+
+            String expectedFileHash = expectedFileHashes.get(relativeFilePath);
+            if (expectedFileHash != null && !expectedFileHash.equals(fileHash)) {
+                // No need to hash the rest, the folder hash cannot match anymore.
+                onPackageCorrupted(packageHash, relativeFilePath + " does not match the package manifest");
+                return;
+            }
+
+            CodePushUtils.setJSONValueForKey(fileHashes, relativeFilePath, fileHash);
+            if (++filesSinceProgressSave == FILES_PER_PROGRESS_SAVE) {
+                saveProgress(scrubState, packageHash, packageFolder.lastModified(), fileHashes);
+                filesSinceProgressSave = 0;
+            }
+        }
+
+        ArrayList<String> manifest = new ArrayList<>();
+        Iterator<?> hashedFilePaths = fileHashes.keys();
+        while (hashedFilePaths.hasNext()) {
+            String hashedFilePath = (String) hashedFilePaths.next();
+            if (relativeFilePaths.contains(hashedFilePath)) {
+                manifest.add(hashedFilePath + ":" + fileHashes.optString(hashedFilePath));
+            }
+        }
+
+        if (manifest.size() != relativeFilePaths.size() - countIgnoredFiles(relativeFilePaths)) {
+            onPackageCorrupted(packageHash, "files were removed while it was being scrubbed");
+            return;
+        }
+
+        if (!packageHash.equals(CodePushUpdateUtils.computeManifestHash(manifest))) {
+            onPackageCorrupted(packageHash, "the folder hash does not match");
+            return;
+        }
+
+        CodePushUtils.log("Package " + packageHash + " passed the integrity scrub.");
+        saveVerified(packageHash);
+    }
+
+    private int countIgnoredFiles(TreeSet<String> relativeFilePaths) {
+        int ignoredFileCount = 0;
+        for (String relativeFilePath : relativeFilePaths) {
+            if (CodePushUpdateUtils.isHashIgnored(relativeFilePath)) {
+                ignoredFileCount++;
+            }
+        }
+
+        return ignoredFileCount;
+    }
+
+    private void onPackageCorrupted(String packageHash, String reason) {
+        clearProgress();
+        // The package may have been replaced while it was being scrubbed, which explains missing files.
+        // Checked under the lock, so that an install in another process can't replace it in between.
+        CodePushProcessLock processLock = mUpdateManager.getProcessLock();
+        processLock.lockShared(CodePushProcessLock.STATE);
+        try {
+            if (packageHash.equals(mUpdateManager.getCurrentPackageHash())) {
+                CodePushUtils.log("The current package is corrupted (" + reason + "), it will be skipped on the next launch.");
+                mSettingsManager.saveCorruptedPackage(packageHash);
+                return;
+            }
+        } finally {
+            processLock.unlockShared(CodePushProcessLock.STATE);
+        }
+
+        // Checks again under the exclusive lock that it is still the previous package.
+        if (mUpdateManager.discardPreviousPackage(packageHash)) {
+            CodePushUtils.log("The previous package is corrupted (" + reason + "), discarded it.");
+        }
+    }
+
+    // Hashes the file while keeping reads under MAX_BYTES_PER_SECOND.
+    private String computeThrottledHash(File file) throws IOException, InterruptedException {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Should not happen.
+            throw new CodePushUnknownException("Unable to compute hash of package contents.", e);
+        }
+
+        InputStream inputStream = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[READ_BUFFER_SIZE];
+            int numBytesRead;
+            while ((numBytesRead = inputStream.read(buffer)) != -1) {
+                messageDigest.update(buffer, 0, numBytesRead);
+                Thread.sleep(numBytesRead * 1000L / MAX_BYTES_PER_SECOND);
+            }
+        } finally {
+            inputStream.close();
+        }
+
+        return String.format("%064x", new java.math.BigInteger(1, messageDigest.digest()));
+    }
+
+    private JSONObject getScrubState() {
+        String scrubStateString = mSettings.getString(SCRUB_STATE_KEY, null);
+        if (scrubStateString == null) {
+            return new JSONObject();
+        }
+
+        try {
+            return new JSONObject(scrubStateString);
+        } catch (JSONException e) {
+            // Unrecognized data format, start over.
+            return new JSONObject();
+        }
+    }
+
+    private void saveProgress(JSONObject scrubState, String packageHash, long packageFolderTime, JSONObject fileHashes) {
+        CodePushUtils.setJSONValueForKey(scrubState, PACKAGE_HASH_KEY, packageHash);
+        CodePushUtils.setJSONValueForKey(scrubState, PACKAGE_FOLDER_TIME_KEY, packageFolderTime);
+        CodePushUtils.setJSONValueForKey(scrubState, FILE_HASHES_KEY, fileHashes);
+        mSettings.edit().putString(SCRUB_STATE_KEY, scrubState.toString()).commit();
+    }
+
+    private void clearProgress() {
+        JSONObject scrubState = getScrubState();
+        scrubState.remove(PACKAGE_HASH_KEY);
+        scrubState.remove(PACKAGE_FOLDER_TIME_KEY);
+        scrubState.remove(FILE_HASHES_KEY);
+        mSettings.edit().putString(SCRUB_STATE_KEY, scrubState.toString()).commit();
+    }
+
+    private void saveVerified(String packageHash) {
+        JSONObject scrubState = getScrubState();
+        scrubState.remove(PACKAGE_HASH_KEY);
+        scrubState.remove(PACKAGE_FOLDER_TIME_KEY);
+        scrubState.remove(FILE_HASHES_KEY);
+
+        // Only keep entries of packages which are still installed.
+        JSONObject verifiedPackages = new JSONObject();
+        JSONObject previouslyVerifiedPackages = scrubState.optJSONObject(VERIFIED_PACKAGES_KEY);
+        List<String> installedPackageHashes = new ArrayList<>();
+        Collections.addAll(installedPackageHashes, mUpdateManager.getCurrentPackageHash(), mUpdateManager.getPreviousPackageHash());
+        for (String installedPackageHash : installedPackageHashes) {
+            if (installedPackageHash != null && previouslyVerifiedPackages != null && previouslyVerifiedPackages.has(installedPackageHash)) {
+                CodePushUtils.setJSONValueForKey(verifiedPackages, installedPackageHash, previouslyVerifiedPackages.optLong(installedPackageHash));
+            }
+        }
+
+        CodePushUtils.setJSONValueForKey(verifiedPackages, packageHash, System.currentTimeMillis());
+        CodePushUtils.setJSONValueForKey(scrubState, VERIFIED_PACKAGES_KEY, verifiedPackages);
+        mSettings.edit().putString(SCRUB_STATE_KEY, scrubState.toString()).commit();
+    }
+}
@@ -4,20 +4,26 @@ import android.app.Activity;
 import android.os.AsyncTask;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.provider.Settings;
 import android.view.View;
 
 import com.facebook.react.ReactApplication;
 import com.facebook.react.ReactInstanceManager;
+import com.facebook.react.ReactNativeHost;
 import com.facebook.react.ReactRootView;
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.JSBundleLoader;
 import com.facebook.react.bridge.LifecycleEventListener;
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.modules.core.ChoreographerCompat;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
@@ -27,35 +33,54 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.lang.reflect.Field;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 public class CodePushNativeModule extends ReactContextBaseJavaModule {
+    // The ways loadBundle can restart the app, as reported by getLastReloadInfo.
+    private static final String RELOAD_PATH_RELOAD = "reload";
+    private static final String RELOAD_PATH_DOUBLE_BUFFERED_RELOAD = "doubleBufferedReload";
+    private static final String RELOAD_PATH_ACTIVITY_RECREATE = "activityRecreate";
+    private static final long RELOAD_POLL_INTERVAL_MILLIS = 16;
+    private static final long RELOAD_TIMEOUT_MILLIS = 30 * 1000;
+
     private String mBinaryContentsHash = null;
     private String mClientUniqueId = null;
     private LifecycleEventListener mLifecycleEventListener = null;
+    private CodePushIdleWatcher mIdleWatcher = null;
     private int mMinimumBackgroundDuration = 0;
 
     private CodePush mCodePush;
     private SettingsManager mSettingsManager;
     private CodePushTelemetryManager mTelemetryManager;
     private CodePushUpdateManager mUpdateManager;
+    private CodePushRetryManager mRetryManager;
+    private CodePushUpdateCheckClient mUpdateCheckClient;
+    private ReactNativeHost mReactNativeHost = null;
 
-    public CodePushNativeModule(ReactApplicationContext reactContext, CodePush codePush, CodePushUpdateManager codePushUpdateManager, CodePushTelemetryManager codePushTelemetryManager, SettingsManager settingsManager) {
+    public CodePushNativeModule(ReactApplicationContext reactContext, CodePush codePush, CodePushUpdateManager codePushUpdateManager, CodePushTelemetryManager codePushTelemetryManager, SettingsManager settingsManager, CodePushRetryManager codePushRetryManager, CodePushUpdateCheckClient codePushUpdateCheckClient) {
         super(reactContext);
 
         mCodePush = codePush;
         mSettingsManager = settingsManager;
         mTelemetryManager = codePushTelemetryManager;
         mUpdateManager = codePushUpdateManager;
+        mRetryManager = codePushRetryManager;
+        mUpdateCheckClient = codePushUpdateCheckClient;
 
         // Initialize module state while we have a reference to the current context.
-        mBinaryContentsHash = CodePushUpdateUtils.getHashForBinaryContents(reactContext, mCodePush.isDebugMode());
+        mBinaryContentsHash = CodePushBinaryPackage.getHashForBinaryContents(reactContext, mCodePush.isDebugMode());
         mClientUniqueId = Settings.Secure.getString(reactContext.getContentResolver(), Settings.Secure.ANDROID_ID);
+        if (reactContext.getApplicationContext() instanceof ReactApplication) {
+            mReactNativeHost = ((ReactApplication) reactContext.getApplicationContext()).getReactNativeHost();
+        }
+
+        // Done up front, so that a React Native upgrade breaking the fast reload shows up in the logs at startup.
+        CodePushReactReflection.resolve();
     }
 
     @Override
@@ -66,6 +91,7 @@ public class CodePushNativeModule extends ReactContextBaseJavaModule {
         constants.put("codePushInstallModeOnNextRestart", CodePushInstallMode.ON_NEXT_RESTART.getValue());
         constants.put("codePushInstallModeOnNextResume", CodePushInstallMode.ON_NEXT_RESUME.getValue());
         constants.put("codePushInstallModeOnNextSuspend", CodePushInstallMode.ON_NEXT_SUSPEND.getValue());
+        constants.put("codePushInstallModeOnNextIdle", CodePushInstallMode.ON_NEXT_IDLE.getValue());
 
         constants.put("codePushUpdateStateRunning", CodePushUpdateState.RUNNING.getValue());
         constants.put("codePushUpdateStatePending", CodePushUpdateState.PENDING.getValue());
@@ -79,7 +105,7 @@ public class CodePushNativeModule extends ReactContextBaseJavaModule {
         return "CodePush";
     }
 
-    private void loadBundleLegacy() {
+    private void loadBundleLegacy(long startTimeMillis, String fallbackReason) {
         final Activity currentActivity = getCurrentActivity();
         if (currentActivity == null) {
             // The currentActivity can be null if it is backgrounded / destroyed, so we simply
@@ -88,6 +114,13 @@ public class CodePushNativeModule extends ReactContextBaseJavaModule {
         }
         mCodePush.invalidateCurrentInstance();
 
+        reportReloadWhenDone(RELOAD_PATH_ACTIVITY_RECREATE, startTimeMillis, fallbackReason, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                Activity activity = getCurrentActivity();
+                return activity != null && activity != currentActivity;
+            }
+        });
         currentActivity.runOnUiThread(new Runnable() {
             @Override
             public void run() {
@@ -96,8 +129,7 @@ public class CodePushNativeModule extends ReactContextBaseJavaModule {
         });
     }
 
-    // Use reflection to find and set the appropriate fields on ReactInstanceManager. See #556 for a proposal for a less brittle way
-    // to approach this.
+    // Use reflection to find and set the appropriate fields on ReactInstanceManager, see CodePushReactReflection.
     private void setJSBundle(ReactInstanceManager instanceManager, String latestJSBundleFile) throws IllegalAccessException {
         try {
             JSBundleLoader latestJSBundleLoader;
@@ -107,17 +139,17 @@ public class CodePushNativeModule extends ReactContextBaseJavaModule {
                 latestJSBundleLoader = JSBundleLoader.createFileLoader(latestJSBundleFile);
             }
 
-            Field bundleLoaderField = instanceManager.getClass().getDeclaredField("mBundleLoader");
-            bundleLoaderField.setAccessible(true);
-            bundleLoaderField.set(instanceManager, latestJSBundleLoader);
+            CodePushReactReflection.setBundleLoader(instanceManager, latestJSBundleLoader);
         } catch (Exception e) {
             CodePushUtils.log("Unable to set JSBundle - CodePush may not support this version of React Native");
-            throw new IllegalAccessException("Could not setJSBundle");
+            throw new IllegalAccessException("Could not setJSBundle. " + e.getMessage());
         }
     }
 
     private void loadBundle() {
+        final long startTimeMillis = SystemClock.uptimeMillis();
         clearLifecycleEventListener();
+        clearIdleWatcher();
         try {
             mCodePush.clearDebugCacheIfNeeded(resolveInstanceManager());
         } catch(Exception e) {
@@ -138,23 +170,24 @@ public class CodePushNativeModule extends ReactContextBaseJavaModule {
             // #2) Update the locally stored JS bundle file path
             setJSBundle(instanceManager, latestJSBundleFile);
 
+            String doubleBufferedReloadFallbackReason = null;
+            if (mCodePush.isDoubleBufferedReloadEnabled()) {
+                doubleBufferedReloadFallbackReason = CodePushReactReflection.getDoubleBufferedReloadUnavailableReason();
+                if (doubleBufferedReloadFallbackReason == null) {
+                    if (loadBundleDoubleBuffered(instanceManager, latestJSBundleFile, startTimeMillis)) {
+                        return;
+                    }
+
+                    doubleBufferedReloadFallbackReason = "The React instance does not come from the app's ReactNativeHost.";
+                }
+            }
+
             // #3) Get the context creation method and fire it on the UI thread (which RN enforces)
+            final String fallbackReason = doubleBufferedReloadFallbackReason;
             new Handler(Looper.getMainLooper()).post(new Runnable() {
                 @Override
                 public void run() {
-                    try {
-                        // We don't need to resetReactRootViews anymore 
-                        // due the issue https://github.com/facebook/react-native/issues/14533
-                        // has been fixed in RN 0.46.0
-                        //resetReactRootViews(instanceManager);
-
-                        instanceManager.recreateReactContextInBackground();
-                        mCodePush.initializeUpdateAfterRestart();
-                    } catch (Exception e) {
-                        // The recreation method threw an unknown exception
-                        // so just simply fallback to restarting the Activity (if it exists)
-                        loadBundleLegacy();
-                    }
+                    reloadInPlace(instanceManager, true, startTimeMillis, fallbackReason);
                 }
             });
 
@@ -162,22 +195,166 @@ public class CodePushNativeModule extends ReactContextBaseJavaModule {
             // Our reflection logic failed somewhere
             // so fall back to restarting the Activity (if it exists)
             CodePushUtils.log("Failed to load the bundle, falling back to restarting the Activity (if it exists). " + e.getMessage());
-            loadBundleLegacy();
+            loadBundleLegacy(startTimeMillis, e.getMessage());
+        }
+    }
+
+    // Must run on the UI thread.
+    private void reloadInPlace(final ReactInstanceManager instanceManager, boolean shouldInitializeUpdate, long startTimeMillis, String fallbackReason) {
+        try {
+            // We don't need to resetReactRootViews anymore
+            // due the issue https://github.com/facebook/react-native/issues/14533
+            // has been fixed in RN 0.46.0
+            //resetReactRootViews(instanceManager);
+
+            final ReactContext previousReactContext = instanceManager.getCurrentReactContext();
+            reportReloadWhenDone(RELOAD_PATH_RELOAD, startTimeMillis, fallbackReason, new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    ReactContext reactContext = instanceManager.getCurrentReactContext();
+                    return reactContext != null && reactContext != previousReactContext;
+                }
+            });
+            instanceManager.recreateReactContextInBackground();
+            if (shouldInitializeUpdate) {
+                mCodePush.initializeUpdateAfterRestart();
+            }
+        } catch (Exception e) {
+            // The recreation method threw an unknown exception
+            // so just simply fallback to restarting the Activity (if it exists)
+            loadBundleLegacy(startTimeMillis, "Unable to recreate the React context. " + e.getMessage());
+        }
+    }
+
+    // Records the restart before the new bundle can run, then polls on the UI thread until isDone and
+    // records how long it took. Stops polling if the restart doesn't finish, e.g. because the new
+    // bundle crashed.
+    private void reportReloadWhenDone(final String path, final long startTimeMillis, final String fallbackReason, final Callable<Boolean> isDone) {
+        reportReload(path, null, fallbackReason);
+        final Handler handler = new Handler(Looper.getMainLooper());
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                boolean done;
+                try {
+                    done = isDone.call();
+                } catch (Exception e) {
+                    // Should not happen.
+                    throw new CodePushUnknownException("Unable to check whether the restart is done.", e);
+                }
+
+                long durationMillis = SystemClock.uptimeMillis() - startTimeMillis;
+                if (done) {
+                    reportReload(path, durationMillis, fallbackReason);
+                } else if (durationMillis > RELOAD_TIMEOUT_MILLIS) {
+                    CodePushUtils.log("The restart (" + path + ") did not finish within " + RELOAD_TIMEOUT_MILLIS + "ms.");
+                } else {
+                    handler.postDelayed(this, RELOAD_POLL_INTERVAL_MILLIS);
+                }
+            }
+        });
+    }
+
+    // The duration is null while the restart is in progress.
+    private void reportReload(String path, Long durationMillis, String fallbackReason) {
+        if (durationMillis != null) {
+            CodePushUtils.log("Restarted the app (" + path + ") in " + durationMillis + "ms."
+                    + (fallbackReason != null ? " Fell back to it because: " + fallbackReason : ""));
+        }
+
+        JSONObject lastReloadInfo = new JSONObject();
+        try {
+            lastReloadInfo.put("path", path);
+            lastReloadInfo.put("durationMs", durationMillis != null ? durationMillis : JSONObject.NULL);
+            lastReloadInfo.put("fallbackReason", fallbackReason);
+        } catch (JSONException e) {
+            // Should not happen.
+            throw new CodePushUnknownException("Unable to set key value pair in reload info.", e);
+        }
+
+        mCodePush.setLastReloadInfo(lastReloadInfo);
+    }
+
+    // Loads the bundle into a second React instance, see CodePushDoubleBufferedReload. Returns false
+    // if the app isn't set up for it, e.g. when its React instance doesn't come from a ReactNativeHost.
+    private boolean loadBundleDoubleBuffered(final ReactInstanceManager instanceManager, final String latestJSBundleFile, final long startTimeMillis) {
+        final Activity currentActivity = getCurrentActivity();
+        final ReactNativeHost reactNativeHost = resolveReactNativeHost();
+        if (currentActivity == null || reactNativeHost == null || !reactNativeHost.hasInstance()
+                || reactNativeHost.getReactInstanceManager() != instanceManager) {
+            return false;
+        }
+
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                ReactInstanceManager nextInstanceManager;
+                try {
+                    nextInstanceManager = CodePushReactReflection.createReactInstanceManager(reactNativeHost);
+                    setJSBundle(nextInstanceManager, latestJSBundleFile);
+                } catch (Exception e) {
+                    CodePushUtils.log("Unable to create a second React instance, reloading in place instead. " + e.getMessage());
+                    // The app's packages may have created a new CodePush instance before it failed.
+                    reloadInPlace(instanceManager, mCodePush.isCurrentInstance(), startTimeMillis,
+                            "Unable to create a second React instance. " + e.getMessage());
+                    return;
+                }
+
+                // Done before the new JS runs, so that a pending update is rolled back if it crashes. If the
+                // app's packages created a new CodePush instance for the new React instance, it has done it already.
+                if (mCodePush.isCurrentInstance()) {
+                    mCodePush.initializeUpdateAfterRestart();
+                }
+
+                // Recorded before the new JS runs, the duration follows once the new instance is swapped in.
+                reportReload(RELOAD_PATH_DOUBLE_BUFFERED_RELOAD, null, null);
+                Runnable onSwapped = new Runnable() {
+                    @Override
+                    public void run() {
+                        reportReload(RELOAD_PATH_DOUBLE_BUFFERED_RELOAD, SystemClock.uptimeMillis() - startTimeMillis, null);
+                    }
+                };
+                Runnable fallback = new Runnable() {
+                    @Override
+                    public void run() {
+                        reloadInPlace(instanceManager, false, startTimeMillis, "The second React instance could not be swapped in.");
+                    }
+                };
+                new CodePushDoubleBufferedReload(reactNativeHost, instanceManager, nextInstanceManager, currentActivity, onSwapped, fallback).start();
+            }
+        });
+
+        return true;
+    }
+
+    private ReactNativeHost resolveReactNativeHost() {
+        ReactInstanceHolder reactInstanceHolder = mCodePush.getReactInstanceHolder();
+        if (reactInstanceHolder != null) {
+            return reactInstanceHolder instanceof ReactNativeHost ? (ReactNativeHost) reactInstanceHolder : null;
+        }
+
+        if (mReactNativeHost != null) {
+            return mReactNativeHost;
+        }
+
+        Activity currentActivity = getCurrentActivity();
+        if (currentActivity == null || !(currentActivity.getApplication() instanceof ReactApplication)) {
+            return null;
         }
+
+        return ((ReactApplication) currentActivity.getApplication()).getReactNativeHost();
     }
 
     // This workaround has been implemented in order to fix https://github.com/facebook/react-native/issues/14533
     // resetReactRootViews allows to call recreateReactContextInBackground without any exceptions
     // This fix also relates to https://github.com/Microsoft/react-native-code-push/issues/878
-    private void resetReactRootViews(ReactInstanceManager instanceManager) throws NoSuchFieldException, IllegalAccessException {
-        Field mAttachedRootViewsField = instanceManager.getClass().getDeclaredField("mAttachedRootViews");
-        mAttachedRootViewsField.setAccessible(true);
-        List<ReactRootView> mAttachedRootViews = (List<ReactRootView>)mAttachedRootViewsField.get(instanceManager);
-        for (ReactRootView reactRootView : mAttachedRootViews) {
-            reactRootView.removeAllViews();
-            reactRootView.setId(View.NO_ID);
+    private void resetReactRootViews(ReactInstanceManager instanceManager) throws IllegalAccessException {
+        for (Object rootView : CodePushReactReflection.getAttachedRootViews(instanceManager)) {
+            if (rootView instanceof ReactRootView) {
+                ((ReactRootView) rootView).removeAllViews();
+                ((ReactRootView) rootView).setId(View.NO_ID);
+            }
         }
-        mAttachedRootViewsField.set(instanceManager, mAttachedRootViews);
     }
 
     private void clearLifecycleEventListener() {
@@ -188,13 +365,61 @@ public class CodePushNativeModule extends ReactContextBaseJavaModule {
         }
     }
 
-    // Use reflection to find the ReactInstanceManager. See #556 for a proposal for a less brittle way to approach this.
+    private synchronized void clearIdleWatcher() {
+        if (mIdleWatcher != null) {
+            mIdleWatcher.stop();
+            mIdleWatcher = null;
+        }
+    }
+
+    // Restarts the app once it has been idle for a while, see CodePushIdleWatcher. Until then, and after
+    // the deadline, the update is also applied on the next resume.
+    private synchronized void watchForIdle() {
+        clearIdleWatcher();
+        final Activity currentActivity = getCurrentActivity();
+        if (currentActivity == null) {
+            return;
+        }
+
+        final CodePushIdleWatcher idleWatcher = new CodePushIdleWatcher(currentActivity,
+                mCodePush.getIdleInstallWindowMillis(), mCodePush.getIdleInstallDeadlineMillis(), new Runnable() {
+                    @Override
+                    public void run() {
+                        CodePushUtils.log("Loading bundle on idle");
+                        loadBundle();
+                    }
+                }, new Runnable() {
+                    @Override
+                    public void run() {
+                        CodePushUtils.log("The app was not idle before the deadline, the update will be applied on the next resume");
+                        clearIdleWatcher();
+                    }
+                });
+        mIdleWatcher = idleWatcher;
+        currentActivity.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (CodePushNativeModule.this) {
+                    if (mIdleWatcher == idleWatcher) {
+                        idleWatcher.start();
+                    }
+                }
+            }
+        });
+    }
+
+    // The host is looked up once from the application, the current activity is only needed when the
+    // application context isn't the ReactApplication, e.g. when it is wrapped.
     private ReactInstanceManager resolveInstanceManager() throws NoSuchFieldException, IllegalAccessException {
-        ReactInstanceManager instanceManager = CodePush.getReactInstanceManager();
+        ReactInstanceManager instanceManager = mCodePush.getReactInstanceManager();
         if (instanceManager != null) {
             return instanceManager;
         }
 
+        if (mReactNativeHost != null) {
+            return mReactNativeHost.getReactInstanceManager();
+        }
+
         final Activity currentActivity = getCurrentActivity();
         if (currentActivity == null) {
             return null;
@@ -206,15 +431,51 @@ public class CodePushNativeModule extends ReactContextBaseJavaModule {
         return instanceManager;
     }
 
+    // Retries transient network failures natively, backing off with jitter between attempts.
+    // The attempt count is persisted, so a relaunch in the middle of the retries keeps waiting
+    // out the backoff. Once the attempts run out the schedule is reset for the next sync.
+    private void downloadPackageWithRetries(JSONObject updatePackage, DownloadProgressCallback progressCallback) throws IOException {
+        String operation = CodePushRetryManager.DOWNLOAD_OPERATION_PREFIX + updatePackage.optString(CodePushConstants.PACKAGE_HASH_KEY, null);
+        while (true) {
+            try {
+                long remainingDelay = mRetryManager.getRemainingDelay(operation);
+                if (remainingDelay > 0) {
+                    CodePushUtils.log("Waiting " + remainingDelay + " ms before downloading the update");
+                    Thread.sleep(remainingDelay);
+                }
+
+                mUpdateManager.downloadPackage(updatePackage, mCodePush.getAssetsBundleFileName(), progressCallback, mCodePush.getSignatureVerifier());
+                mRetryManager.reset(operation);
+                return;
+            } catch (FileNotFoundException e) {
+                // The server does not have the package, retrying will not help.
+                mRetryManager.reset(operation);
+                throw e;
+            } catch (IOException e) {
+                long delay = mRetryManager.recordFailure(operation);
+                if (!mRetryManager.hasAttemptsRemaining(operation)) {
+                    // Give up for now, the next sync starts over with a fresh schedule.
+                    mRetryManager.reset(operation);
+                    throw e;
+                }
+
+                CodePushUtils.log("Download failed (" + e.getMessage() + "), retrying in " + delay + " ms");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CodePushUnknownException("Interrupted while waiting to retry the download", e);
+            }
+        }
+    }
+
     @ReactMethod
     public void downloadUpdate(final ReadableMap updatePackage, final boolean notifyProgress, final Promise promise) {
         AsyncTask<Void, Void, Void> asyncTask = new AsyncTask<Void, Void, Void>() {
             @Override
             protected Void doInBackground(Void... params) {
                 try {
-                    JSONObject mutableUpdatePackage = CodePushUtils.convertReadableToJsonObject(updatePackage);
+                    JSONObject mutableUpdatePackage = CodePushBridgeUtils.convertReadableToJsonObject(updatePackage);
                     CodePushUtils.setJSONValueForKey(mutableUpdatePackage, CodePushConstants.BINARY_MODIFIED_TIME_KEY, "" + mCodePush.getBinaryResourcesModifiedTime());
-                    mUpdateManager.downloadPackage(mutableUpdatePackage, mCodePush.getAssetsBundleFileName(), new DownloadProgressCallback() {
+                    DownloadProgressCallback progressCallback = new DownloadProgressCallback() {
                         private boolean hasScheduledNextFrame = false;
                         private DownloadProgress latestDownloadProgress = null;
 
@@ -256,17 +517,54 @@ public class CodePushNativeModule extends ReactContextBaseJavaModule {
                         public void dispatchDownloadProgressEvent() {
                             getReactApplicationContext()
                                     .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
-                                    .emit(CodePushConstants.DOWNLOAD_PROGRESS_EVENT_NAME, latestDownloadProgress.createWritableMap());
+                                    .emit(CodePushConstants.DOWNLOAD_PROGRESS_EVENT_NAME, CodePushBridgeUtils.convertDownloadProgressToWritable(latestDownloadProgress));
                         }
-                    }, mCodePush.getPublicKey());
+                    };
+
+                    if (mUpdateManager.reuseDownloadedPackage(mutableUpdatePackage)) {
+                        CodePushUtils.log("Using the previously downloaded update package.");
+                    } else {
+                        downloadPackageWithRetries(mutableUpdatePackage, progressCallback);
+                    }
 
-                    JSONObject newPackage = mUpdateManager.getPackage(CodePushUtils.tryGetString(updatePackage, CodePushConstants.PACKAGE_HASH_KEY));
-                    promise.resolve(CodePushUtils.convertJsonObjectToWritable(newPackage));
+                    String packageHash = CodePushBridgeUtils.tryGetString(updatePackage, CodePushConstants.PACKAGE_HASH_KEY);
+                    // Make room for the new package, which is going to be installed next.
+                    mCodePush.getStorageManager().collectGarbage(packageHash);
+                    JSONObject newPackage = mUpdateManager.getPackage(packageHash);
+                    promise.resolve(CodePushBridgeUtils.convertJsonObjectToWritable(newPackage));
                 } catch (CodePushInvalidUpdateException e) {
                     CodePushUtils.log(e);
-                    mSettingsManager.saveFailedUpdate(CodePushUtils.convertReadableToJsonObject(updatePackage));
+                    mSettingsManager.saveFailedUpdate(CodePushBridgeUtils.convertReadableToJsonObject(updatePackage));
+                    promise.reject(e);
+                } catch (IOException | CodePushUnknownException | CodePushInsufficientStorageException e) {
+                    CodePushUtils.log(e);
                     promise.reject(e);
-                } catch (IOException | CodePushUnknownException e) {
+                }
+
+                return null;
+            }
+        };
+
+        asyncTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    // Performs the update check request built by the JS SDK, so that responses can be cached
+    // and revalidated natively instead of being fetched in full on every check.
+    @ReactMethod
+    public void getUpdateCheckResponse(final String updateCheckUrl, final ReadableMap requestHeaders, final Promise promise) {
+        AsyncTask<Void, Void, Void> asyncTask = new AsyncTask<Void, Void, Void>() {
+            @Override
+            protected Void doInBackground(Void... params) {
+                try {
+                    Map<String, String> headers = new HashMap<>();
+                    ReadableMapKeySetIterator headerNames = requestHeaders.keySetIterator();
+                    while (headerNames.hasNextKey()) {
+                        String headerName = headerNames.nextKey();
+                        headers.put(headerName, requestHeaders.getString(headerName));
+                    }
+
+                    promise.resolve(mUpdateCheckClient.checkForUpdate(updateCheckUrl, headers).createWritableMap());
+                } catch (IOException | CodePushUnknownException | CodePushMalformedDataException e) {
                     CodePushUtils.log(e);
                     promise.reject(e);
                 }
@@ -290,6 +588,9 @@ public class CodePushNativeModule extends ReactContextBaseJavaModule {
             // The binary hash may be null in debug builds
             if (mBinaryContentsHash != null) {
                 configMap.putString(CodePushConstants.PACKAGE_HASH_KEY, mBinaryContentsHash);
+                // Tells JS whether the binary hash can be sent to get diff updates against the APK contents.
+                // Until the check started at startup is done, full updates are asked for.
+                configMap.putBoolean("isBinaryPackageAvailable", mCodePush.getBinaryPackage().isKnownAvailable());
             }
 
             promise.resolve(configMap);
@@ -299,6 +600,35 @@ public class CodePushNativeModule extends ReactContextBaseJavaModule {
         }
     }
 
+    @ReactMethod
+    public void getRetainedPackages(Promise promise) {
+        try {
+            promise.resolve(CodePushBridgeUtils.convertJsonArrayToWritable(mUpdateManager.getRetainedPackages()));
+        } catch (CodePushUnknownException e) {
+            CodePushUtils.log(e);
+            promise.reject(e);
+        }
+    }
+
+    @ReactMethod
+    public void getStorageStats(final Promise promise) {
+        AsyncTask<Void, Void, Void> asyncTask = new AsyncTask<Void, Void, Void>() {
+            @Override
+            protected Void doInBackground(Void... params) {
+                try {
+                    promise.resolve(CodePushBridgeUtils.convertJsonObjectToWritable(mCodePush.getStorageManager().getStorageStats()));
+                } catch (CodePushUnknownException e) {
+                    CodePushUtils.log(e);
+                    promise.reject(e);
+                }
+
+                return null;
+            }
+        };
+
+        asyncTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
     @ReactMethod
     public void getUpdateMetadata(final int updateState, final Promise promise) {
         AsyncTask<Void, Void, Void> asyncTask = new AsyncTask<Void, Void, Void>() {
@@ -333,7 +663,7 @@ public class CodePushNativeModule extends ReactContextBaseJavaModule {
                             return null;
                         }
 
-                        promise.resolve(CodePushUtils.convertJsonObjectToWritable(previousPackage));
+                        promise.resolve(CodePushBridgeUtils.convertJsonObjectToWritable(previousPackage));
                     } else {
                         // The current package satisfies the request:
                         // 1) Caller wanted a pending, and there is a pending update
@@ -348,7 +678,7 @@ public class CodePushNativeModule extends ReactContextBaseJavaModule {
 
                         // Enable differentiating pending vs. non-pending updates
                         CodePushUtils.setJSONValueForKey(currentPackage, "isPending", currentUpdateIsPending);
-                        promise.resolve(CodePushUtils.convertJsonObjectToWritable(currentPackage));
+                        promise.resolve(CodePushBridgeUtils.convertJsonObjectToWritable(currentPackage));
                     }
                 } catch (CodePushMalformedDataException e) {
                     // We need to recover the app in case 'codepush.json' is corrupted
@@ -373,46 +703,48 @@ public class CodePushNativeModule extends ReactContextBaseJavaModule {
             @Override
             protected Void doInBackground(Void... params) {
                 try {
-                    if (mCodePush.needToReportRollback()) {
-                        mCodePush.setNeedToReportRollback(false);
-                        JSONArray failedUpdates = mSettingsManager.getFailedUpdates();
-                        if (failedUpdates != null && failedUpdates.length() > 0) {
-                            try {
-                                JSONObject lastFailedPackageJSON = failedUpdates.getJSONObject(failedUpdates.length() - 1);
-                                WritableMap lastFailedPackage = CodePushUtils.convertJsonObjectToWritable(lastFailedPackageJSON);
-                                WritableMap failedStatusReport = mTelemetryManager.getRollbackReport(lastFailedPackage);
-                                if (failedStatusReport != null) {
-                                    promise.resolve(failedStatusReport);
-                                    return null;
-                                }
-                            } catch (JSONException e) {
-                                throw new CodePushUnknownException("Unable to read failed updates information stored in SharedPreferences.", e);
-                            }
-                        }
-                    } else if (mCodePush.didUpdate()) {
-                        JSONObject currentPackage = mUpdateManager.getCurrentPackage();
-                        if (currentPackage != null) {
-                            WritableMap newPackageStatusReport = mTelemetryManager.getUpdateReport(CodePushUtils.convertJsonObjectToWritable(currentPackage));
-                            if (newPackageStatusReport != null) {
-                                promise.resolve(newPackageStatusReport);
-                                return null;
-                            }
-                        }
-                    } else if (mCodePush.isRunningBinaryVersion()) {
-                        WritableMap newAppVersionStatusReport = mTelemetryManager.getBinaryUpdateReport(mCodePush.getAppVersion());
-                        if (newAppVersionStatusReport != null) {
-                            promise.resolve(newAppVersionStatusReport);
-                            return null;
-                        }
+                    WritableMap newStatusReport = getNewStatusReportInternal();
+                    if (newStatusReport == null) {
+                        newStatusReport = mTelemetryManager.getRetryStatusReport();
+                    }
+
+                    if (newStatusReport != null) {
+                        promise.resolve(newStatusReport);
                     } else {
-                        WritableMap retryStatusReport = mTelemetryManager.getRetryStatusReport();
-                        if (retryStatusReport != null) {
-                            promise.resolve(retryStatusReport);
-                            return null;
-                        }
+                        promise.resolve("");
                     }
+                } catch(CodePushUnknownException e) {
+                    CodePushUtils.log(e);
+                    promise.reject(e);
+                }
+                return null;
+            }
+        };
 
-                    promise.resolve("");
+        asyncTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    // Returns the reports queued for retry followed by the report for the current launch, if any, so
+    // that they can all be delivered in a single pass instead of one per resume.
+    @ReactMethod
+    public void getNewStatusReports(final Promise promise) {
+        AsyncTask<Void, Void, Void> asyncTask = new AsyncTask<Void, Void, Void>() {
+            @Override
+            protected Void doInBackground(Void... params) {
+                try {
+                    WritableArray statusReports = Arguments.createArray();
+                    WritableMap newStatusReport = getNewStatusReportInternal();
+                    int retryBatchSize = CodePushConstants.STATUS_REPORT_BATCH_SIZE - (newStatusReport != null ? 1 : 0);
+                    // Oldest first, recordStatusesReported saves the identifier of the last report as the latest one.
+                    for (WritableMap retryStatusReport : mTelemetryManager.getRetryStatusReports(retryBatchSize)) {
+                        statusReports.pushMap(retryStatusReport);
+                    }
+
+                    if (newStatusReport != null) {
+                        statusReports.pushMap(newStatusReport);
+                    }
+
+                    promise.resolve(statusReports);
                 } catch(CodePushUnknownException e) {
                     CodePushUtils.log(e);
                     promise.reject(e);
@@ -424,22 +756,53 @@ public class CodePushNativeModule extends ReactContextBaseJavaModule {
         asyncTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
     }
 
+    private WritableMap getNewStatusReportInternal() {
+        if (mCodePush.needToReportRollback()) {
+            mCodePush.setNeedToReportRollback(false);
+            JSONArray failedUpdates = mSettingsManager.getFailedUpdates();
+            if (failedUpdates != null && failedUpdates.length() > 0) {
+                try {
+                    JSONObject lastFailedPackageJSON = failedUpdates.getJSONObject(failedUpdates.length() - 1);
+                    WritableMap lastFailedPackage = CodePushBridgeUtils.convertJsonObjectToWritable(lastFailedPackageJSON);
+                    return mTelemetryManager.getRollbackReport(lastFailedPackage);
+                } catch (JSONException e) {
+                    throw new CodePushUnknownException("Unable to read failed updates information stored in SharedPreferences.", e);
+                }
+            }
+        } else if (mCodePush.didUpdate()) {
+            JSONObject currentPackage = mUpdateManager.getCurrentPackage();
+            if (currentPackage != null) {
+                return mTelemetryManager.getUpdateReport(CodePushBridgeUtils.convertJsonObjectToWritable(currentPackage));
+            }
+        } else if (mCodePush.isRunningBinaryVersion()) {
+            return mTelemetryManager.getBinaryUpdateReport(mCodePush.getAppVersion());
+        }
+
+        return null;
+    }
+
     @ReactMethod
     public void installUpdate(final ReadableMap updatePackage, final int installMode, final int minimumBackgroundDuration, final Promise promise) {
         AsyncTask<Void, Void, Void> asyncTask = new AsyncTask<Void, Void, Void>() {
             @Override
             protected Void doInBackground(Void... params) {
                 try {
-                    mUpdateManager.installPackage(CodePushUtils.convertReadableToJsonObject(updatePackage), mSettingsManager.isPendingUpdate(null));
+                    mUpdateManager.installPackage(CodePushBridgeUtils.convertReadableToJsonObject(updatePackage), mSettingsManager.isPendingUpdate(null));
 
-                    String pendingHash = CodePushUtils.tryGetString(updatePackage, CodePushConstants.PACKAGE_HASH_KEY);
+                    String pendingHash = CodePushBridgeUtils.tryGetString(updatePackage, CodePushConstants.PACKAGE_HASH_KEY);
                     if (pendingHash == null) {
                         throw new CodePushUnknownException("Update package to be installed has no hash.");
                     } else {
                         mSettingsManager.savePendingUpdate(pendingHash, /* isLoading */false);
                     }
 
+                    if (installMode == CodePushInstallMode.ON_NEXT_IDLE.getValue()) {
+                        watchForIdle();
+                    }
+
                     if (installMode == CodePushInstallMode.ON_NEXT_RESUME.getValue() ||
+                        // Idle installs fall back to being applied on resume.
+                        installMode == CodePushInstallMode.ON_NEXT_IDLE.getValue() ||
                         // We also add the resume listener if the installMode is IMMEDIATE, because
                         // if the current activity is backgrounded, we want to reload the bundle when
                         // it comes back into the foreground.
@@ -527,7 +890,22 @@ public class CodePushNativeModule extends ReactContextBaseJavaModule {
         try {
             JSONObject latestRollbackInfo = mSettingsManager.getLatestRollbackInfo();
             if (latestRollbackInfo != null) {
-                promise.resolve(CodePushUtils.convertJsonObjectToWritable(latestRollbackInfo));
+                promise.resolve(CodePushBridgeUtils.convertJsonObjectToWritable(latestRollbackInfo));
+            } else {
+                promise.resolve(null);
+            }
+        } catch (CodePushUnknownException e) {
+            CodePushUtils.log(e);
+            promise.reject(e);
+        }
+    }
+
+    @ReactMethod
+    public void getLastReloadInfo(Promise promise) {
+        try {
+            JSONObject lastReloadInfo = mCodePush.getLastReloadInfo();
+            if (lastReloadInfo != null) {
+                promise.resolve(CodePushBridgeUtils.convertJsonObjectToWritable(lastReloadInfo));
             } else {
                 promise.resolve(null);
             }
@@ -582,6 +960,15 @@ public class CodePushNativeModule extends ReactContextBaseJavaModule {
         }
     }
 
+    @ReactMethod
+    public void recordStatusesReported(ReadableArray statusReports) {
+        try {
+            mTelemetryManager.recordStatusesReported(statusReports);
+        } catch(CodePushUnknownException e) {
+            CodePushUtils.log(e);
+        }
+    }
+
     @ReactMethod
     public void restartApp(boolean onlyIfUpdateIsPending, Promise promise) {
         try {
@@ -600,6 +987,26 @@ public class CodePushNativeModule extends ReactContextBaseJavaModule {
         }
     }
 
+    @ReactMethod
+    public void rollbackTo(final String packageHash, final Promise promise) {
+        AsyncTask<Void, Void, Void> asyncTask = new AsyncTask<Void, Void, Void>() {
+            @Override
+            protected Void doInBackground(Void... params) {
+                try {
+                    mCodePush.rollbackTo(packageHash);
+                    promise.resolve("");
+                } catch (CodePushInvalidUpdateException | CodePushUnknownException e) {
+                    CodePushUtils.log(e);
+                    promise.reject(e);
+                }
+
+                return null;
+            }
+        };
+
+        asyncTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
     @ReactMethod
     public void saveStatusReportForRetry(ReadableMap statusReport) {
         try {
@@ -609,6 +1016,15 @@ public class CodePushNativeModule extends ReactContextBaseJavaModule {
         }
     }
 
+    @ReactMethod
+    public void saveStatusReportsForRetry(ReadableArray statusReports) {
+        try {
+            mTelemetryManager.saveStatusReportsForRetry(statusReports);
+        } catch(CodePushUnknownException e) {
+            CodePushUtils.log(e);
+        }
+    }
+
     @ReactMethod
     // Replaces the current bundle with the one downloaded from removeBundleUrl.
     // It is only to be used during tests. No-ops if the test configuration flag is not set.
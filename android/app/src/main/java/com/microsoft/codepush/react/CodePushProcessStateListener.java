@@ -0,0 +1,12 @@
+package com.microsoft.codepush.react;
+
+// Told about what other processes of the app do with the CodePush storage, see
+// CodePushBuilder.setProcessStateListener. Called on a background thread.
+public interface CodePushProcessStateListener {
+    // Another process installed, rolled back or removed packages.
+    void onStateChanged();
+
+    // Another process is done with the staging area, e.g. it downloaded a package, which downloading
+    // the same update in this process then adopts without downloading it again.
+    void onStagingChanged();
+}
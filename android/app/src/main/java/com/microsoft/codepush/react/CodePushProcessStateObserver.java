@@ -0,0 +1,34 @@
+package com.microsoft.codepush.react;
+
+import android.os.FileObserver;
+
+/**
+ * Watches the lock file of the CodePush folder, whose change counts are written whenever a process
+ * releases an exclusive lock, and tells the listener about the changes made by other processes. See
+ * {@link CodePushProcessLock}.
+ */
+class CodePushProcessStateObserver extends FileObserver {
+    private final CodePushProcessLock mProcessLock;
+    private final CodePushProcessStateListener mListener;
+
+    CodePushProcessStateObserver(CodePushProcessLock processLock, CodePushProcessStateListener listener) {
+        super(processLock.getLockFilePath(), FileObserver.MODIFY);
+        mProcessLock = processLock;
+        mListener = listener;
+    }
+
+    @Override
+    public void onEvent(int event, String path) {
+        try {
+            if (mProcessLock.hasChangedElsewhere(CodePushProcessLock.STAGING)) {
+                mListener.onStagingChanged();
+            }
+
+            if (mProcessLock.hasChangedElsewhere(CodePushProcessLock.STATE)) {
+                mListener.onStateChanged();
+            }
+        } catch (CodePushUnknownException e) {
+            CodePushUtils.log(e);
+        }
+    }
+}
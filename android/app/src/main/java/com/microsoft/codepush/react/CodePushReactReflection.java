@@ -0,0 +1,144 @@
+package com.microsoft.codepush.react;
+
+import com.facebook.react.ReactInstanceManager;
+import com.facebook.react.ReactNativeHost;
+import com.facebook.react.bridge.JSBundleLoader;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Collection;
+
+/**
+ * The React Native internals used to reload the app, looked up once per process and cached. A lookup
+ * that fails keeps the reason, so that the slow activity recreate fallback can say why it was taken.
+ * See #556 for a proposal for a less brittle way to approach this.
+ */
+class CodePushReactReflection {
+    private static boolean sIsResolved = false;
+
+    private static Field sBundleLoaderField;
+    private static Field sAttachedRootViewsField;
+    private static Field sHostInstanceManagerField;
+    private static Method sCreateInstanceManagerMethod;
+
+    private static String sBundleLoaderError;
+    private static String sAttachedRootViewsError;
+    private static String sHostInstanceManagerError;
+    private static String sCreateInstanceManagerError;
+
+    // Cheap after the first call, so it can be called from each module instance.
+    static synchronized void resolve() {
+        if (sIsResolved) {
+            return;
+        }
+
+        try {
+            sBundleLoaderField = getAccessibleField(ReactInstanceManager.class, "mBundleLoader");
+        } catch (Exception e) {
+            sBundleLoaderError = "ReactInstanceManager.mBundleLoader is not available: " + e;
+        }
+
+        try {
+            sAttachedRootViewsField = getAccessibleField(ReactInstanceManager.class, "mAttachedRootViews");
+        } catch (Exception e) {
+            sAttachedRootViewsError = "ReactInstanceManager.mAttachedRootViews is not available: " + e;
+        }
+
+        try {
+            sHostInstanceManagerField = getAccessibleField(ReactNativeHost.class, "mReactInstanceManager");
+        } catch (Exception e) {
+            sHostInstanceManagerError = "ReactNativeHost.mReactInstanceManager is not available: " + e;
+        }
+
+        try {
+            sCreateInstanceManagerMethod = ReactNativeHost.class.getDeclaredMethod("createReactInstanceManager");
+            sCreateInstanceManagerMethod.setAccessible(true);
+        } catch (Exception e) {
+            sCreateInstanceManagerError = "ReactNativeHost.createReactInstanceManager is not available: " + e;
+        }
+
+        sIsResolved = true;
+        if (sBundleLoaderError != null) {
+            CodePushUtils.log("Updates will be applied by recreating the Activity, CodePush may not support this version of React Native. " + sBundleLoaderError);
+        }
+    }
+
+    // Null if the bundle can be swapped in place.
+    static String getReloadUnavailableReason() {
+        resolve();
+        return sBundleLoaderError;
+    }
+
+    // Null if a second React instance can be created and swapped in.
+    static String getDoubleBufferedReloadUnavailableReason() {
+        resolve();
+        if (sAttachedRootViewsError != null) {
+            return sAttachedRootViewsError;
+        }
+
+        return sHostInstanceManagerError != null ? sHostInstanceManagerError : sCreateInstanceManagerError;
+    }
+
+    static void setBundleLoader(ReactInstanceManager instanceManager, JSBundleLoader bundleLoader) throws IllegalAccessException {
+        resolve();
+        if (sBundleLoaderField == null) {
+            throw new IllegalAccessException(sBundleLoaderError);
+        }
+
+        sBundleLoaderField.set(instanceManager, bundleLoader);
+    }
+
+    // The field is a list in older React Native versions and a set in newer ones.
+    static Collection<?> getAttachedRootViews(ReactInstanceManager instanceManager) throws IllegalAccessException {
+        resolve();
+        if (sAttachedRootViewsField == null) {
+            throw new IllegalAccessException(sAttachedRootViewsError);
+        }
+
+        return (Collection<?>) sAttachedRootViewsField.get(instanceManager);
+    }
+
+    // The instance manager the host hands out, without creating one like getReactInstanceManager does.
+    static ReactInstanceManager getHostInstanceManager(ReactNativeHost reactNativeHost) throws IllegalAccessException {
+        resolve();
+        if (sHostInstanceManagerField == null) {
+            throw new IllegalAccessException(sHostInstanceManagerError);
+        }
+
+        return (ReactInstanceManager) sHostInstanceManagerField.get(reactNativeHost);
+    }
+
+    static void setHostInstanceManager(ReactNativeHost reactNativeHost, ReactInstanceManager instanceManager) throws IllegalAccessException {
+        resolve();
+        if (sHostInstanceManagerField == null) {
+            throw new IllegalAccessException(sHostInstanceManagerError);
+        }
+
+        sHostInstanceManagerField.set(reactNativeHost, instanceManager);
+    }
+
+    // Builds an instance manager the way the host built the current one, with the same packages.
+    static ReactInstanceManager createReactInstanceManager(ReactNativeHost reactNativeHost) throws Exception {
+        resolve();
+        if (sCreateInstanceManagerMethod == null) {
+            throw new IllegalAccessException(sCreateInstanceManagerError);
+        }
+
+        return (ReactInstanceManager) sCreateInstanceManagerMethod.invoke(reactNativeHost);
+    }
+
+    // Also looks in the superclasses, in case a field moves up the hierarchy in a React Native upgrade.
+    private static Field getAccessibleField(Class<?> type, String name) throws NoSuchFieldException {
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            try {
+                Field field = current.getDeclaredField(name);
+                field.setAccessible(true);
+                return field;
+            } catch (NoSuchFieldException e) {
+                // Look in the superclass.
+            }
+        }
+
+        throw new NoSuchFieldException(type.getName() + "." + name);
+    }
+}
@@ -0,0 +1,111 @@
+package com.microsoft.codepush.react;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Random;
+
+/**
+ * Keeps track of failed attempts per operation (e.g. a package download or the delivery
+ * of status reports) and tells callers how long to back off before trying again. The
+ * attempt count and the earliest time of the next attempt are persisted, so the backoff
+ * survives the app being killed in the middle of it. Callers reset an operation once it
+ * succeeds or once they give up on it, after which the schedule starts over.
+ */
+public class CodePushRetryManager {
+    private static final String RETRY_STATE_KEY = "CODE_PUSH_RETRY_STATE";
+    private static final String ATTEMPTS_KEY = "attempts";
+    private static final String NEXT_ATTEMPT_TIME_KEY = "nextAttemptTime";
+
+    public static final String DOWNLOAD_OPERATION_PREFIX = "download:";
+    public static final String STATUS_REPORT_OPERATION = "statusReport";
+
+    private final SharedPreferences mSettings;
+    private final Random mRandom = new Random();
+    private CodePushRetryPolicy mRetryPolicy;
+
+    public CodePushRetryManager(Context applicationContext, CodePushRetryPolicy retryPolicy, String preferencesName) {
+        mSettings = applicationContext.getSharedPreferences(preferencesName, 0);
+        mRetryPolicy = retryPolicy;
+    }
+
+    public synchronized CodePushRetryPolicy getRetryPolicy() {
+        return mRetryPolicy;
+    }
+
+    public synchronized void setRetryPolicy(CodePushRetryPolicy retryPolicy) {
+        mRetryPolicy = retryPolicy;
+    }
+
+    public synchronized int getAttemptCount(String operation) {
+        JSONObject operationState = getRetryState().optJSONObject(operation);
+        return operationState == null ? 0 : operationState.optInt(ATTEMPTS_KEY, 0);
+    }
+
+    // Returns how many milliseconds the caller should still wait before retrying the operation.
+    public synchronized long getRemainingDelay(String operation) {
+        JSONObject operationState = getRetryState().optJSONObject(operation);
+        if (operationState == null) {
+            return 0;
+        }
+
+        long remainingDelay = operationState.optLong(NEXT_ATTEMPT_TIME_KEY, 0) - System.currentTimeMillis();
+        // Guard against wall clock changes leaving us waiting for longer than the policy allows.
+        return Math.max(0, Math.min(remainingDelay, mRetryPolicy.getMaxDelayMillis()));
+    }
+
+    public synchronized boolean hasAttemptsRemaining(String operation) {
+        return getAttemptCount(operation) < mRetryPolicy.getMaxAttempts();
+    }
+
+    // Records a failed attempt and returns the jittered delay until the next one is allowed.
+    public synchronized long recordFailure(String operation) {
+        JSONObject retryState = getRetryState();
+        JSONObject operationState = retryState.optJSONObject(operation);
+        int attempts = operationState == null ? 0 : operationState.optInt(ATTEMPTS_KEY, 0);
+        long delay = mRetryPolicy.getDelayForAttempt(attempts, mRandom);
+
+        try {
+            operationState = new JSONObject();
+            operationState.put(ATTEMPTS_KEY, attempts + 1);
+            operationState.put(NEXT_ATTEMPT_TIME_KEY, System.currentTimeMillis() + delay);
+            retryState.put(operation, operationState);
+        } catch (JSONException e) {
+            // Should not happen.
+            throw new CodePushUnknownException("Unable to save retry state for " + operation, e);
+        }
+
+        saveRetryState(retryState);
+        return delay;
+    }
+
+    // Forgets recorded failures, either because the operation succeeded or because we gave up on it.
+    public synchronized void reset(String operation) {
+        JSONObject retryState = getRetryState();
+        if (retryState.remove(operation) != null) {
+            saveRetryState(retryState);
+        }
+    }
+
+    private JSONObject getRetryState() {
+        String retryStateString = mSettings.getString(RETRY_STATE_KEY, null);
+        if (retryStateString == null) {
+            return new JSONObject();
+        }
+
+        try {
+            return new JSONObject(retryStateString);
+        } catch (JSONException e) {
+            // Unrecognized data format, start over with no recorded failures.
+            CodePushUtils.log("Unable to parse retry state " + retryStateString + " stored in SharedPreferences");
+            return new JSONObject();
+        }
+    }
+
+    private void saveRetryState(JSONObject retryState) {
+        mSettings.edit().putString(RETRY_STATE_KEY, retryState.toString()).commit();
+    }
+}
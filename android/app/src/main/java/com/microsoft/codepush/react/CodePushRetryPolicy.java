@@ -0,0 +1,57 @@
+package com.microsoft.codepush.react;
+
+import java.util.Random;
+
+/**
+ * Describes how failed downloads and status reports are retried: exponential backoff
+ * capped at {@code maxDelayMillis}, with "full jitter" so that clients which failed at
+ * the same moment do not retry in lockstep.
+ */
+public class CodePushRetryPolicy {
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final long DEFAULT_BASE_DELAY_MILLIS = 1000;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 5 * 60 * 1000;
+
+    private final int mMaxAttempts;
+    private final long mBaseDelayMillis;
+    private final long mMaxDelayMillis;
+
+    public CodePushRetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        if (maxAttempts < 0 || baseDelayMillis < 0 || maxDelayMillis < baseDelayMillis) {
+            throw new IllegalArgumentException("Invalid retry policy: maxAttempts=" + maxAttempts +
+                    ", baseDelayMillis=" + baseDelayMillis + ", maxDelayMillis=" + maxDelayMillis);
+        }
+
+        mMaxAttempts = maxAttempts;
+        mBaseDelayMillis = baseDelayMillis;
+        mMaxDelayMillis = maxDelayMillis;
+    }
+
+    public static CodePushRetryPolicy getDefault() {
+        return new CodePushRetryPolicy(DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    public int getMaxAttempts() {
+        return mMaxAttempts;
+    }
+
+    public long getBaseDelayMillis() {
+        return mBaseDelayMillis;
+    }
+
+    public long getMaxDelayMillis() {
+        return mMaxDelayMillis;
+    }
+
+    // Returns a delay picked uniformly from [0, min(maxDelay, baseDelay * 2^attempt)].
+    public long getDelayForAttempt(int attempt, Random random) {
+        attempt = Math.max(attempt, 0);
+        long ceiling = mMaxDelayMillis;
+        // Only shift while the result stays below the cap, so large attempt counts cannot overflow.
+        if (attempt < 62 && mBaseDelayMillis <= (mMaxDelayMillis >> attempt)) {
+            ceiling = mBaseDelayMillis << attempt;
+        }
+
+        return (long) (random.nextDouble() * (ceiling + 1));
+    }
+}
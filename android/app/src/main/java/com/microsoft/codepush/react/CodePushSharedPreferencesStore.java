@@ -0,0 +1,27 @@
+package com.microsoft.codepush.react;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+public class CodePushSharedPreferencesStore implements CodePushKeyValueStore {
+    private final SharedPreferences mSettings;
+
+    public CodePushSharedPreferencesStore(Context applicationContext, String name) {
+        mSettings = applicationContext.getSharedPreferences(name, 0);
+    }
+
+    @Override
+    public String getString(String key) {
+        return mSettings.getString(key, null);
+    }
+
+    @Override
+    public void putString(String key, String value) {
+        mSettings.edit().putString(key, value).commit();
+    }
+
+    @Override
+    public void remove(String key) {
+        mSettings.edit().remove(key).commit();
+    }
+}
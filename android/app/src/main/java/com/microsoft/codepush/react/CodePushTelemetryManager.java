@@ -4,39 +4,55 @@ import android.content.Context;
 import android.content.SharedPreferences;
 
 import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.WritableMap;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
 public class CodePushTelemetryManager {
     private SharedPreferences mSettings;
+    private CodePushRetryManager mRetryManager;
+    private CodePushTelemetryQueue mRetryQueue;
     private final String APP_VERSION_KEY = "appVersion";
     private final String DEPLOYMENT_FAILED_STATUS = "DeploymentFailed";
     private final String DEPLOYMENT_KEY_KEY = "deploymentKey";
     private final String DEPLOYMENT_SUCCEEDED_STATUS = "DeploymentSucceeded";
     private final String LABEL_KEY = "label";
     private final String LAST_DEPLOYMENT_REPORT_KEY = "CODE_PUSH_LAST_DEPLOYMENT_REPORT";
+    private final String LAST_DEPLOYMENT_REPORT_SEQUENCE_KEY = "CODE_PUSH_LAST_DEPLOYMENT_REPORT_SEQUENCE";
     private final String PACKAGE_KEY = "package";
     private final String PREVIOUS_DEPLOYMENT_KEY_KEY = "previousDeploymentKey";
     private final String PREVIOUS_LABEL_OR_APP_VERSION_KEY = "previousLabelOrAppVersion";
     private final String RETRY_DEPLOYMENT_REPORT_KEY = "CODE_PUSH_RETRY_DEPLOYMENT_REPORT";
+    private final String SEQUENCE_KEY = "sequence";
+    private final String STATUS_REPORT_SEQUENCE_KEY = "CODE_PUSH_STATUS_REPORT_SEQUENCE";
     private final String STATUS_KEY = "status";
 
-    public CodePushTelemetryManager(Context applicationContext) {
-        mSettings = applicationContext.getSharedPreferences(CodePushConstants.CODE_PUSH_PREFERENCES, 0);
+    public CodePushTelemetryManager(Context applicationContext, CodePushRetryManager retryManager, String preferencesName, File retryQueueFile) {
+        mSettings = applicationContext.getSharedPreferences(preferencesName, 0);
+        mRetryManager = retryManager;
+        mRetryQueue = new CodePushTelemetryQueue(
+                retryQueueFile,
+                CodePushTelemetryQueue.DEFAULT_CAPACITY,
+                CodePushTelemetryQueue.DEFAULT_MAX_ENTRIES);
+        migrateRetryStatusReport();
     }
 
     public WritableMap getBinaryUpdateReport(String appVersion) {
         String previousStatusReportIdentifier = this.getPreviousStatusReportIdentifier();
         WritableMap reportMap = null;
         if (previousStatusReportIdentifier == null) {
-            this.clearRetryStatusReport();
             reportMap = Arguments.createMap();
             reportMap.putString(APP_VERSION_KEY, appVersion);
         } else if (!previousStatusReportIdentifier.equals(appVersion)) {
-            this.clearRetryStatusReport();
             reportMap = Arguments.createMap();
             if (this.isStatusReportIdentifierCodePushLabel(previousStatusReportIdentifier)) {
                 String previousDeploymentKey = this.getDeploymentKeyFromStatusReportIdentifier(previousStatusReportIdentifier);
@@ -51,22 +67,39 @@ public class CodePushTelemetryManager {
             }
         }
 
+        if (reportMap != null) {
+            onNewReport(reportMap, appVersion);
+        }
+
         return reportMap;
     }
 
     public WritableMap getRetryStatusReport() {
-        String retryStatusReportString = mSettings.getString(RETRY_DEPLOYMENT_REPORT_KEY, null);
-        if (retryStatusReportString != null) {
-            clearRetryStatusReport();
-            try {
-                JSONObject retryStatusReport = new JSONObject(retryStatusReportString);
-                return CodePushUtils.convertJsonObjectToWritable(retryStatusReport);
-            } catch (JSONException e) {
-                e.printStackTrace();
+        List<WritableMap> retryStatusReports = getRetryStatusReports(1);
+        return retryStatusReports.isEmpty() ? null : retryStatusReports.get(0);
+    }
+
+    // Removes and returns up to maxReports queued reports. Reports which fail to be delivered
+    // again are expected to be handed back through saveStatusReportsForRetry.
+    public List<WritableMap> getRetryStatusReports(int maxReports) {
+        List<WritableMap> retryStatusReports = new ArrayList<>();
+        long remainingDelay = mRetryManager.getRemainingDelay(CodePushRetryManager.STATUS_REPORT_OPERATION);
+        if (remainingDelay > 0) {
+            // Keep the reports until the backoff window has passed, so that clients which
+            // failed together don't all hit the server again on their next resume.
+            CodePushUtils.log("Delaying status report retries for another " + remainingDelay + " ms");
+            return retryStatusReports;
+        }
+
+        try {
+            for (JSONObject retryStatusReport : mRetryQueue.poll(maxReports)) {
+                retryStatusReports.add(CodePushBridgeUtils.convertJsonObjectToWritable(retryStatusReport));
             }
+        } catch (IOException e) {
+            throw new CodePushUnknownException("Unable to read status reports queued for retry", e);
         }
 
-        return null;
+        return retryStatusReports;
     }
 
     public WritableMap getRollbackReport(WritableMap lastFailedPackage) {
@@ -82,12 +115,10 @@ public class CodePushTelemetryManager {
         WritableMap reportMap = null;
         if (currentPackageIdentifier != null) {
             if (previousStatusReportIdentifier == null) {
-                this.clearRetryStatusReport();
                 reportMap = Arguments.createMap();
                 reportMap.putMap(PACKAGE_KEY, currentPackage);
                 reportMap.putString(STATUS_KEY, DEPLOYMENT_SUCCEEDED_STATUS);
             } else if (!previousStatusReportIdentifier.equals(currentPackageIdentifier)) {
-                this.clearRetryStatusReport();
                 reportMap = Arguments.createMap();
                 if (this.isStatusReportIdentifierCodePushLabel(previousStatusReportIdentifier)) {
                     String previousDeploymentKey = this.getDeploymentKeyFromStatusReportIdentifier(previousStatusReportIdentifier);
@@ -105,29 +136,89 @@ public class CodePushTelemetryManager {
             }
         }
 
+        if (reportMap != null) {
+            onNewReport(reportMap, currentPackageIdentifier);
+        }
+
         return reportMap;
     }
 
-    public void recordStatusReported(ReadableMap statusReport) {
-        // We don't need to record rollback reports, so exit early if that's what was specified.
-        if (statusReport.hasKey(STATUS_KEY) && DEPLOYMENT_FAILED_STATUS.equals(statusReport.getString(STATUS_KEY))) {
-            return;
+    public synchronized void recordStatusReported(ReadableMap statusReport) {
+        // The server accepted a report, so any backoff from earlier failures no longer applies.
+        mRetryManager.reset(CodePushRetryManager.STATUS_REPORT_OPERATION);
+
+        String reportedIdentifier = getReportedStatusIdentifier(statusReport);
+        if (reportedIdentifier != null) {
+            saveStatusReportedForIdentifier(reportedIdentifier, getSequence(statusReport));
         }
-        
-        if (statusReport.hasKey(APP_VERSION_KEY)) {
-            saveStatusReportedForIdentifier(statusReport.getString(APP_VERSION_KEY));
-        } else if (statusReport.hasKey(PACKAGE_KEY)) {
-            String packageIdentifier = getPackageStatusReportIdentifier(statusReport.getMap(PACKAGE_KEY));
-            saveStatusReportedForIdentifier(packageIdentifier);
+    }
+
+    // Equivalent to calling recordStatusReported for each report, with a single commit.
+    public synchronized void recordStatusesReported(ReadableArray statusReports) {
+        mRetryManager.reset(CodePushRetryManager.STATUS_REPORT_OPERATION);
+
+        String latestReportedIdentifier = null;
+        long latestSequence = -1;
+        for (int i = 0; i < statusReports.size(); i++) {
+            String reportedIdentifier = getReportedStatusIdentifier(statusReports.getMap(i));
+            long sequence = getSequence(statusReports.getMap(i));
+            if (reportedIdentifier != null && sequence >= latestSequence) {
+                latestReportedIdentifier = reportedIdentifier;
+                latestSequence = sequence;
+            }
+        }
+
+        if (latestReportedIdentifier != null) {
+            saveStatusReportedForIdentifier(latestReportedIdentifier, latestSequence);
         }
     }
 
     public void saveStatusReportForRetry(ReadableMap statusReport) {
-        JSONObject statusReportJSON = CodePushUtils.convertReadableToJsonObject(statusReport);
-        mSettings.edit().putString(RETRY_DEPLOYMENT_REPORT_KEY, statusReportJSON.toString()).commit();
+        List<JSONObject> statusReports = new ArrayList<>();
+        statusReports.add(CodePushBridgeUtils.convertReadableToJsonObject(statusReport));
+        saveStatusReportsForRetry(statusReports);
+    }
+
+    public void saveStatusReportsForRetry(ReadableArray statusReports) {
+        List<JSONObject> statusReportsJSON = new ArrayList<>();
+        for (int i = 0; i < statusReports.size(); i++) {
+            statusReportsJSON.add(CodePushBridgeUtils.convertReadableToJsonObject(statusReports.getMap(i)));
+        }
+
+        saveStatusReportsForRetry(statusReportsJSON);
+    }
+
+    private void saveStatusReportsForRetry(List<JSONObject> statusReports) {
+        LinkedHashMap<String, JSONObject> statusReportsByIdentifier = new LinkedHashMap<>();
+        for (JSONObject statusReport : statusReports) {
+            statusReportsByIdentifier.put(getStatusReportIdentifier(statusReport), statusReport);
+        }
+
+        try {
+            mRetryQueue.addAll(statusReportsByIdentifier);
+        } catch (IOException e) {
+            throw new CodePushUnknownException("Unable to save status reports for retry", e);
+        }
+
+        mRetryManager.recordFailure(CodePushRetryManager.STATUS_REPORT_OPERATION);
     }
 
-    private void clearRetryStatusReport() {
+    // Moves a report saved for retry by previous versions, which could only keep a single one, into the queue.
+    private void migrateRetryStatusReport() {
+        String retryStatusReportString = mSettings.getString(RETRY_DEPLOYMENT_REPORT_KEY, null);
+        if (retryStatusReportString == null) {
+            return;
+        }
+
+        try {
+            JSONObject retryStatusReport = new JSONObject(retryStatusReportString);
+            LinkedHashMap<String, JSONObject> statusReportsByIdentifier = new LinkedHashMap<>();
+            statusReportsByIdentifier.put(getStatusReportIdentifier(retryStatusReport), retryStatusReport);
+            mRetryQueue.addAll(statusReportsByIdentifier);
+        } catch (JSONException | IOException e) {
+            CodePushUtils.log("Unable to migrate status report saved for retry: " + e.getMessage());
+        }
+
         mSettings.edit().remove(RETRY_DEPLOYMENT_REPORT_KEY).commit();
     }
 
@@ -143,8 +234,8 @@ public class CodePushTelemetryManager {
     private String getPackageStatusReportIdentifier(ReadableMap updatePackage) {
         // Because deploymentKeys can be dynamically switched, we use a
         // combination of the deploymentKey and label as the packageIdentifier.
-        String deploymentKey = CodePushUtils.tryGetString(updatePackage, DEPLOYMENT_KEY_KEY);
-        String label = CodePushUtils.tryGetString(updatePackage, LABEL_KEY);
+        String deploymentKey = CodePushBridgeUtils.tryGetString(updatePackage, DEPLOYMENT_KEY_KEY);
+        String label = CodePushBridgeUtils.tryGetString(updatePackage, LABEL_KEY);
         if (deploymentKey != null && label != null) {
             return deploymentKey + ":" + label;
         } else {
@@ -152,6 +243,42 @@ public class CodePushTelemetryManager {
         }
     }
 
+    // Returns the identifier to record for a delivered report, or null if it doesn't need recording.
+    private String getReportedStatusIdentifier(ReadableMap statusReport) {
+        // We don't need to record rollback reports.
+        if (statusReport.hasKey(STATUS_KEY) && DEPLOYMENT_FAILED_STATUS.equals(statusReport.getString(STATUS_KEY))) {
+            return null;
+        }
+
+        if (statusReport.hasKey(APP_VERSION_KEY)) {
+            return statusReport.getString(APP_VERSION_KEY);
+        } else if (statusReport.hasKey(PACKAGE_KEY)) {
+            return getPackageStatusReportIdentifier(statusReport.getMap(PACKAGE_KEY));
+        }
+
+        return null;
+    }
+
+    // Queued reports are deduplicated by the binary version or package they are about.
+    private String getStatusReportIdentifier(JSONObject statusReport) {
+        String appVersion = statusReport.optString(APP_VERSION_KEY, null);
+        if (appVersion != null) {
+            return appVersion;
+        }
+
+        JSONObject updatePackage = statusReport.optJSONObject(PACKAGE_KEY);
+        if (updatePackage != null) {
+            String deploymentKey = updatePackage.optString(DEPLOYMENT_KEY_KEY, null);
+            String label = updatePackage.optString(LABEL_KEY, null);
+            if (deploymentKey != null && label != null) {
+                return deploymentKey + ":" + label;
+            }
+        }
+
+        // Reports we can't attribute are only deduplicated against identical ones.
+        return statusReport.toString();
+    }
+
     private String getPreviousStatusReportIdentifier() {
         return mSettings.getString(LAST_DEPLOYMENT_REPORT_KEY, null);
     }
@@ -169,7 +296,34 @@ public class CodePushTelemetryManager {
         return statusReportIdentifier != null && statusReportIdentifier.contains(":");
     }
 
-    private void saveStatusReportedForIdentifier(String appVersionOrPackageIdentifier) {
-        mSettings.edit().putString(LAST_DEPLOYMENT_REPORT_KEY, appVersionOrPackageIdentifier).commit();
+    // Reports get increasing sequence numbers when they are built, so that a report queued for retry
+    // which is delivered after a newer one can't take the recorded identifier back. A queued report
+    // about the same binary version or package is superseded by the new one.
+    private synchronized void onNewReport(WritableMap reportMap, String appVersionOrPackageIdentifier) {
+        long sequence = mSettings.getLong(STATUS_REPORT_SEQUENCE_KEY, 0) + 1;
+        mSettings.edit().putLong(STATUS_REPORT_SEQUENCE_KEY, sequence).commit();
+        reportMap.putDouble(SEQUENCE_KEY, sequence);
+        try {
+            mRetryQueue.remove(appVersionOrPackageIdentifier);
+        } catch (IOException e) {
+            throw new CodePushUnknownException("Unable to remove superseded status reports queued for retry", e);
+        }
+    }
+
+    // Reports built by earlier versions have no sequence number, like the identifier they recorded.
+    private long getSequence(ReadableMap statusReport) {
+        return statusReport.hasKey(SEQUENCE_KEY) ? (long) statusReport.getDouble(SEQUENCE_KEY) : 0;
+    }
+
+    private void saveStatusReportedForIdentifier(String appVersionOrPackageIdentifier, long sequence) {
+        if (sequence < mSettings.getLong(LAST_DEPLOYMENT_REPORT_SEQUENCE_KEY, 0)) {
+            CodePushUtils.log("Not recording the delivered status report for " + appVersionOrPackageIdentifier + ", a newer one was recorded already.");
+            return;
+        }
+
+        mSettings.edit()
+                .putString(LAST_DEPLOYMENT_REPORT_KEY, appVersionOrPackageIdentifier)
+                .putLong(LAST_DEPLOYMENT_REPORT_SEQUENCE_KEY, sequence)
+                .commit();
     }
 }
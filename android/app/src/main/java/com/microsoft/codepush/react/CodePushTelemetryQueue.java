@@ -0,0 +1,305 @@
+package com.microsoft.codepush.react;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded, persisted FIFO of status reports which have not been delivered yet.
+ *
+ * The file starts with a fixed-size header followed by a data region which is used as a ring
+ * buffer: records ([length][UTF-8 JSON]) are appended at the tail, wrapping around to the start
+ * of the region, and consumed from the head. Consuming reports only rewrites the header, and each
+ * batch of changes is synced to disk once. When the region or the entry limit is exhausted the
+ * oldest reports are dropped. Adding a report whose identifier is already queued replaces the
+ * queued one.
+ */
+public class CodePushTelemetryQueue {
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+    public static final int DEFAULT_MAX_ENTRIES = 50;
+
+    private static final int MAGIC = 0x43505451;
+    // Magic, capacity, head position, used bytes and entry count.
+    private static final int HEADER_LENGTH = 5 * 4;
+    private static final int RECORD_HEADER_LENGTH = 4;
+    private static final String IDENTIFIER_KEY = "identifier";
+    private static final String REPORT_KEY = "report";
+
+    private final File mFile;
+    private final int mMaxEntries;
+    private int mCapacity;
+    private int mHead;
+    private int mUsedBytes;
+    private int mCount;
+
+    public CodePushTelemetryQueue(File file, int capacity, int maxEntries) {
+        mFile = file;
+        mCapacity = capacity;
+        mMaxEntries = maxEntries;
+    }
+
+    // Appends the given reports, keyed by their identifier, in iteration order.
+    public synchronized void addAll(LinkedHashMap<String, JSONObject> reports) throws IOException {
+        if (reports.isEmpty()) {
+            return;
+        }
+
+        RandomAccessFile queueFile = new RandomAccessFile(mFile, "rw");
+        try {
+            readHeader(queueFile);
+            List<JSONObject> queuedEntries = readEntries(queueFile, mCount);
+            boolean hasSupersededEntries = false;
+            for (JSONObject entry : queuedEntries) {
+                if (reports.containsKey(entry.optString(IDENTIFIER_KEY))) {
+                    hasSupersededEntries = true;
+                    break;
+                }
+            }
+
+            if (hasSupersededEntries) {
+                // Rarely needed, so simply rewrite the queue without the entries being replaced.
+                resetPositions();
+                for (JSONObject entry : queuedEntries) {
+                    if (!reports.containsKey(entry.optString(IDENTIFIER_KEY))) {
+                        appendRecord(queueFile, entry);
+                    }
+                }
+            }
+
+            for (Map.Entry<String, JSONObject> report : reports.entrySet()) {
+                JSONObject entry = new JSONObject();
+                try {
+                    entry.put(IDENTIFIER_KEY, report.getKey());
+                    entry.put(REPORT_KEY, report.getValue());
+                } catch (JSONException e) {
+                    // Should not happen.
+                    throw new CodePushUnknownException("Unable to queue status report " + report.getValue(), e);
+                }
+
+                appendRecord(queueFile, entry);
+            }
+
+            writeHeader(queueFile);
+            queueFile.getFD().sync();
+        } finally {
+            queueFile.close();
+        }
+    }
+
+    // Removes the queued report with the given identifier, if there is one.
+    public synchronized void remove(String identifier) throws IOException {
+        if (!mFile.exists()) {
+            return;
+        }
+
+        RandomAccessFile queueFile = new RandomAccessFile(mFile, "rw");
+        try {
+            readHeader(queueFile);
+            List<JSONObject> queuedEntries = readEntries(queueFile, mCount);
+            List<JSONObject> remainingEntries = new ArrayList<>();
+            for (JSONObject entry : queuedEntries) {
+                if (!identifier.equals(entry.optString(IDENTIFIER_KEY))) {
+                    remainingEntries.add(entry);
+                }
+            }
+
+            if (remainingEntries.size() == queuedEntries.size()) {
+                return;
+            }
+
+            // Rarely needed, so simply rewrite the queue without the removed entry.
+            resetPositions();
+            for (JSONObject entry : remainingEntries) {
+                appendRecord(queueFile, entry);
+            }
+
+            writeHeader(queueFile);
+            queueFile.getFD().sync();
+        } finally {
+            queueFile.close();
+        }
+    }
+
+    // Removes and returns up to maxReports of the oldest reports.
+    public synchronized List<JSONObject> poll(int maxReports) throws IOException {
+        List<JSONObject> reports = new ArrayList<>();
+        if (maxReports <= 0 || !mFile.exists()) {
+            return reports;
+        }
+
+        RandomAccessFile queueFile = new RandomAccessFile(mFile, "rw");
+        try {
+            readHeader(queueFile);
+            int entryCount = Math.min(maxReports, mCount);
+            for (JSONObject entry : readEntries(queueFile, entryCount)) {
+                JSONObject report = entry.optJSONObject(REPORT_KEY);
+                if (report != null) {
+                    reports.add(report);
+                }
+            }
+
+            // Consuming entries only moves the head, the records themselves are left in place.
+            for (int i = 0; i < entryCount; i++) {
+                removeHead(queueFile);
+            }
+
+            if (mCount == 0) {
+                queueFile.setLength(HEADER_LENGTH);
+            }
+
+            writeHeader(queueFile);
+            queueFile.getFD().sync();
+            return reports;
+        } finally {
+            queueFile.close();
+        }
+    }
+
+    private void appendRecord(RandomAccessFile queueFile, JSONObject entry) throws IOException {
+        byte[] data = entry.toString().getBytes("UTF-8");
+        int recordLength = RECORD_HEADER_LENGTH + data.length;
+        if (recordLength > mCapacity) {
+            CodePushUtils.log("Dropping status report of " + data.length + " bytes, it does not fit into the telemetry queue");
+            return;
+        }
+
+        while (mCount > 0 && (mCount >= mMaxEntries || mUsedBytes + recordLength > mCapacity)) {
+            removeHead(queueFile);
+        }
+
+        int tail = (mHead + mUsedBytes) % mCapacity;
+        ringWrite(queueFile, tail, ByteBuffer.allocate(RECORD_HEADER_LENGTH).putInt(data.length).array());
+        ringWrite(queueFile, (tail + RECORD_HEADER_LENGTH) % mCapacity, data);
+        mUsedBytes += recordLength;
+        mCount++;
+    }
+
+    private void removeHead(RandomAccessFile queueFile) throws IOException {
+        int recordLength = RECORD_HEADER_LENGTH + readRecordDataLength(queueFile, mHead);
+        mHead = (mHead + recordLength) % mCapacity;
+        mUsedBytes -= recordLength;
+        mCount--;
+        if (mCount == 0) {
+            resetPositions();
+        }
+    }
+
+    private List<JSONObject> readEntries(RandomAccessFile queueFile, int maxEntries) throws IOException {
+        List<JSONObject> entries = new ArrayList<>();
+        int position = mHead;
+        for (int i = 0; i < maxEntries; i++) {
+            int dataLength = readRecordDataLength(queueFile, position);
+            byte[] data = new byte[dataLength];
+            ringRead(queueFile, (position + RECORD_HEADER_LENGTH) % mCapacity, data);
+            position = (position + RECORD_HEADER_LENGTH + dataLength) % mCapacity;
+            try {
+                entries.add(new JSONObject(new String(data, "UTF-8")));
+            } catch (JSONException e) {
+                // Keep the slot so positions stay in sync, the report itself is lost.
+                CodePushUtils.log("Unable to parse queued status report, skipping it.");
+                entries.add(new JSONObject());
+            }
+        }
+
+        return entries;
+    }
+
+    private int readRecordDataLength(RandomAccessFile queueFile, int position) throws IOException {
+        byte[] lengthBytes = new byte[RECORD_HEADER_LENGTH];
+        ringRead(queueFile, position, lengthBytes);
+        return ByteBuffer.wrap(lengthBytes).getInt();
+    }
+
+    private void ringWrite(RandomAccessFile queueFile, int position, byte[] data) throws IOException {
+        int firstPartLength = Math.min(data.length, mCapacity - position);
+        queueFile.seek(HEADER_LENGTH + position);
+        queueFile.write(data, 0, firstPartLength);
+        if (firstPartLength < data.length) {
+            queueFile.seek(HEADER_LENGTH);
+            queueFile.write(data, firstPartLength, data.length - firstPartLength);
+        }
+    }
+
+    private void ringRead(RandomAccessFile queueFile, int position, byte[] data) throws IOException {
+        int firstPartLength = Math.min(data.length, mCapacity - position);
+        queueFile.seek(HEADER_LENGTH + position);
+        queueFile.readFully(data, 0, firstPartLength);
+        if (firstPartLength < data.length) {
+            queueFile.seek(HEADER_LENGTH);
+            queueFile.readFully(data, firstPartLength, data.length - firstPartLength);
+        }
+    }
+
+    private void readHeader(RandomAccessFile queueFile) throws IOException {
+        if (queueFile.length() < HEADER_LENGTH) {
+            resetPositions();
+            return;
+        }
+
+        queueFile.seek(0);
+        int magic = queueFile.readInt();
+        int capacity = queueFile.readInt();
+        int head = queueFile.readInt();
+        int usedBytes = queueFile.readInt();
+        int count = queueFile.readInt();
+        if (magic != MAGIC || capacity <= 0 || head < 0 || head >= capacity ||
+                usedBytes < 0 || usedBytes > capacity || count < 0 ||
+                HEADER_LENGTH + (long) Math.min(capacity, head + usedBytes) > queueFile.length()) {
+            // Unrecognized data format, start over with an empty queue.
+            CodePushUtils.log("Telemetry queue file is corrupted, discarding queued status reports.");
+            queueFile.setLength(0);
+            resetPositions();
+            return;
+        }
+
+        // Files written with a different capacity keep using it, so existing records stay readable.
+        mCapacity = capacity;
+        mHead = head;
+        mUsedBytes = usedBytes;
+        mCount = count;
+
+        // Walk the record lengths once (the queue is small), so that reads later on can trust them.
+        int position = mHead;
+        long totalLength = 0;
+        for (int i = 0; i < mCount; i++) {
+            byte[] lengthBytes = new byte[RECORD_HEADER_LENGTH];
+            ringRead(queueFile, position, lengthBytes);
+            int dataLength = ByteBuffer.wrap(lengthBytes).getInt();
+            totalLength += RECORD_HEADER_LENGTH + (long) dataLength;
+            if (dataLength < 0 || totalLength > mUsedBytes) {
+                break;
+            }
+
+            position = (int) ((position + RECORD_HEADER_LENGTH + (long) dataLength) % mCapacity);
+        }
+
+        if (totalLength != mUsedBytes) {
+            CodePushUtils.log("Telemetry queue records are corrupted, discarding queued status reports.");
+            queueFile.setLength(0);
+            resetPositions();
+        }
+    }
+
+    private void writeHeader(RandomAccessFile queueFile) throws IOException {
+        queueFile.seek(0);
+        queueFile.writeInt(MAGIC);
+        queueFile.writeInt(mCapacity);
+        queueFile.writeInt(mHead);
+        queueFile.writeInt(mUsedBytes);
+        queueFile.writeInt(mCount);
+    }
+
+    private void resetPositions() {
+        mHead = 0;
+        mUsedBytes = 0;
+        mCount = 0;
+    }
+}
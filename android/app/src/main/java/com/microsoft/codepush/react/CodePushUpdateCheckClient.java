@@ -0,0 +1,234 @@
+package com.microsoft.codepush.react;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Performs update checks against the CodePush server, keeping the last successful response per
+ * deployment key, app version and package hash. Cached responses are served without touching the
+ * network while they are fresh according to the server's Cache-Control max-age, and revalidated
+ * with If-None-Match/If-Modified-Since afterwards, so an unchanged deployment costs a 304.
+ */
+public class CodePushUpdateCheckClient {
+    private static final String UPDATE_CHECK_CACHE_KEY = "CODE_PUSH_UPDATE_CHECK_CACHE";
+    private static final int MAX_CACHE_ENTRIES = 8;
+
+    private static final String BODY_KEY = "body";
+    private static final String ETAG_KEY = "etag";
+    private static final String EXPIRES_AT_KEY = "expiresAt";
+    private static final String LAST_MODIFIED_KEY = "lastModified";
+    private static final String STORED_AT_KEY = "storedAt";
+    private static final String URL_KEY = "url";
+
+    private SharedPreferences mSettings;
+
+    public CodePushUpdateCheckClient(Context applicationContext, String preferencesName) {
+        mSettings = applicationContext.getSharedPreferences(preferencesName, 0);
+    }
+
+    public UpdateCheckResponse checkForUpdate(String updateCheckUrl, Map<String, String> requestHeaders) throws IOException {
+        String cacheKey = getCacheKey(updateCheckUrl);
+        JSONObject cachedEntry = getCachedEntry(cacheKey);
+        // The query also carries the label and companion flag, only reuse responses to the exact same request.
+        if (cachedEntry != null && !updateCheckUrl.equals(cachedEntry.optString(URL_KEY))) {
+            cachedEntry = null;
+        }
+
+        long now = System.currentTimeMillis();
+        if (cachedEntry != null && cachedEntry.optLong(STORED_AT_KEY) <= now && now < cachedEntry.optLong(EXPIRES_AT_KEY)) {
+            CodePushUtils.log("Using cached update check response.");
+            return new UpdateCheckResponse(HttpURLConnection.HTTP_OK, cachedEntry.optString(BODY_KEY), true);
+        }
+
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) (new URL(updateCheckUrl).openConnection());
+            for (Map.Entry<String, String> requestHeader : requestHeaders.entrySet()) {
+                connection.setRequestProperty(requestHeader.getKey(), requestHeader.getValue());
+            }
+
+            if (cachedEntry != null) {
+                String etag = cachedEntry.optString(ETAG_KEY, null);
+                String lastModified = cachedEntry.optString(LAST_MODIFIED_KEY, null);
+                if (etag != null) {
+                    connection.setRequestProperty("If-None-Match", etag);
+                }
+
+                if (lastModified != null) {
+                    connection.setRequestProperty("If-Modified-Since", lastModified);
+                }
+            }
+
+            int statusCode = connection.getResponseCode();
+            if (statusCode == HttpURLConnection.HTTP_NOT_MODIFIED && cachedEntry != null) {
+                CodePushUtils.log("Update check response has not changed since the last check.");
+                String cachedBody = cachedEntry.optString(BODY_KEY);
+                saveCachedEntry(cacheKey, updateCheckUrl, connection, cachedBody, cachedEntry);
+                return new UpdateCheckResponse(HttpURLConnection.HTTP_OK, cachedBody, true);
+            }
+
+            InputStream responseStream = statusCode < HttpURLConnection.HTTP_BAD_REQUEST ?
+                    connection.getInputStream() : connection.getErrorStream();
+            String body = responseStream == null ? "" : CodePushUtils.getStringFromInputStream(responseStream);
+            if (statusCode == HttpURLConnection.HTTP_OK) {
+                saveCachedEntry(cacheKey, updateCheckUrl, connection, body, null);
+            }
+
+            return new UpdateCheckResponse(statusCode, body, false, getRetryAfterMillis(connection));
+        } catch (MalformedURLException e) {
+            throw new CodePushMalformedDataException(updateCheckUrl, e);
+        } finally {
+            if (connection != null) connection.disconnect();
+        }
+    }
+
+    // Retry-After is either a number of seconds or an HTTP date.
+    private long getRetryAfterMillis(HttpURLConnection connection) {
+        String retryAfter = connection.getHeaderField("Retry-After");
+        if (retryAfter == null) {
+            return 0;
+        }
+
+        try {
+            return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            long retryAfterDate = connection.getHeaderFieldDate("Retry-After", 0);
+            return Math.max(0, retryAfterDate - System.currentTimeMillis());
+        }
+    }
+
+    private String getCacheKey(String updateCheckUrl) {
+        Uri uri = Uri.parse(updateCheckUrl);
+        return getQueryParameter(uri, "deployment_key", "deploymentKey") + "/" +
+                getQueryParameter(uri, "app_version", "appVersion") + "/" +
+                getQueryParameter(uri, "package_hash", "packageHash");
+    }
+
+    // Newer servers use snake_case query parameters, older ones camelCase.
+    private String getQueryParameter(Uri uri, String name, String legacyName) {
+        String value = uri.getQueryParameter(name);
+        return value != null ? value : uri.getQueryParameter(legacyName);
+    }
+
+    private synchronized JSONObject getCachedEntry(String cacheKey) {
+        return getCache().optJSONObject(cacheKey);
+    }
+
+    private synchronized void saveCachedEntry(String cacheKey, String updateCheckUrl, HttpURLConnection connection,
+                                              String body, JSONObject revalidatedEntry) {
+        String cacheControl = connection.getHeaderField("Cache-Control");
+        JSONObject cache = getCache();
+        if (cacheControl != null && cacheControl.toLowerCase().contains("no-store")) {
+            if (cache.remove(cacheKey) != null) {
+                saveCache(cache);
+            }
+
+            return;
+        }
+
+        String etag = connection.getHeaderField("ETag");
+        String lastModified = connection.getHeaderField("Last-Modified");
+        if (revalidatedEntry != null) {
+            // A 304 is allowed to omit validators which did not change.
+            if (etag == null) etag = revalidatedEntry.optString(ETAG_KEY, null);
+            if (lastModified == null) lastModified = revalidatedEntry.optString(LAST_MODIFIED_KEY, null);
+        }
+
+        if (etag == null && lastModified == null && getMaxAgeMillis(cacheControl) == 0) {
+            // Nothing to revalidate with and nothing to serve without revalidating.
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        JSONObject entry = new JSONObject();
+        try {
+            entry.put(URL_KEY, updateCheckUrl);
+            entry.put(BODY_KEY, body);
+            entry.put(ETAG_KEY, etag);
+            entry.put(LAST_MODIFIED_KEY, lastModified);
+            entry.put(STORED_AT_KEY, now);
+            entry.put(EXPIRES_AT_KEY, now + getMaxAgeMillis(cacheControl));
+            cache.put(cacheKey, entry);
+        } catch (JSONException e) {
+            // Should not happen.
+            throw new CodePushUnknownException("Unable to cache update check response for " + cacheKey, e);
+        }
+
+        while (cache.length() > MAX_CACHE_ENTRIES) {
+            cache.remove(getOldestCacheKey(cache));
+        }
+
+        saveCache(cache);
+    }
+
+    private long getMaxAgeMillis(String cacheControl) {
+        if (cacheControl == null) {
+            return 0;
+        }
+
+        for (String directive : cacheControl.split(",")) {
+            directive = directive.trim().toLowerCase();
+            if (directive.equals("no-cache")) {
+                return 0;
+            }
+
+            if (directive.startsWith("max-age=")) {
+                try {
+                    return Math.max(0, Long.parseLong(directive.substring("max-age=".length()).trim())) * 1000;
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+
+        return 0;
+    }
+
+    private String getOldestCacheKey(JSONObject cache) {
+        String oldestCacheKey = null;
+        long oldestStoredAt = Long.MAX_VALUE;
+        Iterator<?> cacheKeys = cache.keys();
+        while (cacheKeys.hasNext()) {
+            String cacheKey = (String) cacheKeys.next();
+            JSONObject entry = cache.optJSONObject(cacheKey);
+            long storedAt = entry == null ? 0 : entry.optLong(STORED_AT_KEY);
+            if (storedAt < oldestStoredAt) {
+                oldestStoredAt = storedAt;
+                oldestCacheKey = cacheKey;
+            }
+        }
+
+        return oldestCacheKey;
+    }
+
+    private JSONObject getCache() {
+        String cacheString = mSettings.getString(UPDATE_CHECK_CACHE_KEY, null);
+        if (cacheString == null) {
+            return new JSONObject();
+        }
+
+        try {
+            return new JSONObject(cacheString);
+        } catch (JSONException e) {
+            // Unrecognized data format, start over with an empty cache.
+            CodePushUtils.log("Unable to parse update check cache stored in SharedPreferences");
+            return new JSONObject();
+        }
+    }
+
+    private void saveCache(JSONObject cache) {
+        mSettings.edit().putString(UPDATE_CHECK_CACHE_KEY, cache.toString()).commit();
+    }
+}
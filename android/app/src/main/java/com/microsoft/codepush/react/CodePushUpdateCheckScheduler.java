@@ -0,0 +1,225 @@
+package com.microsoft.codepush.react;
+
+import android.content.Context;
+import android.provider.Settings;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URLEncoder;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically checks for updates while the app process is alive, and optionally prefetches them.
+ *
+ * Every device checks at a fixed phase within the interval, derived from its client unique ID, so
+ * a fleet spreads its checks evenly over the interval instead of hitting the server in lockstep
+ * whenever a release or a push campaign brings apps to the foreground at once. The check goes
+ * through {@link CodePushUpdateCheckClient}, which honours the server's Retry-After.
+ */
+public class CodePushUpdateCheckScheduler {
+    private static final String UPDATE_CHECK_PATH = "v0.1/public/codepush/update_check";
+    private static final String UPDATE_INFO_KEY = "update_info";
+
+    private final CodePush mCodePush;
+    private final CodePushUpdateManager mUpdateManager;
+    private final CodePushUpdateCheckClient mUpdateCheckClient;
+    private final SettingsManager mSettingsManager;
+    private final CodePushBinaryPackage mBinaryPackage;
+    private final String mBinaryContentsHash;
+    private final String mClientUniqueId;
+    private final long mIntervalMillis;
+    private final boolean mPrefetchUpdates;
+
+    private ScheduledExecutorService mExecutor;
+    private long mNextAllowedCheckTime = 0;
+
+    public CodePushUpdateCheckScheduler(Context applicationContext, CodePush codePush, CodePushUpdateManager updateManager,
+                                        CodePushUpdateCheckClient updateCheckClient, SettingsManager settingsManager,
+                                        CodePushBinaryPackage binaryPackage, long intervalMillis, boolean prefetchUpdates) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Invalid update check interval: " + intervalMillis);
+        }
+
+        mCodePush = codePush;
+        mUpdateManager = updateManager;
+        mUpdateCheckClient = updateCheckClient;
+        mSettingsManager = settingsManager;
+        mBinaryPackage = binaryPackage;
+        mBinaryContentsHash = CodePushBinaryPackage.getHashForBinaryContents(applicationContext, codePush.isDebugMode());
+        mClientUniqueId = Settings.Secure.getString(applicationContext.getContentResolver(), Settings.Secure.ANDROID_ID);
+        mIntervalMillis = intervalMillis;
+        mPrefetchUpdates = prefetchUpdates;
+    }
+
+    public synchronized void start() {
+        if (mExecutor != null) {
+            return;
+        }
+
+        mExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "CodePushUpdateCheck");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+
+        mExecutor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                checkForUpdate();
+            }
+        }, getInitialDelay(System.currentTimeMillis()), mIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (mExecutor != null) {
+            mExecutor.shutdownNow();
+            mExecutor = null;
+        }
+    }
+
+    // Delay until the next wall clock time that falls on this device's phase within the interval.
+    long getInitialDelay(long now) {
+        long phase;
+        if (mClientUniqueId != null) {
+            phase = UUID.nameUUIDFromBytes(mClientUniqueId.getBytes()).getMostSignificantBits() % mIntervalMillis;
+        } else {
+            phase = new Random().nextLong() % mIntervalMillis;
+        }
+
+        if (phase < 0) {
+            phase += mIntervalMillis;
+        }
+
+        long elapsedInInterval = (now - phase) % mIntervalMillis;
+        if (elapsedInInterval < 0) {
+            elapsedInInterval += mIntervalMillis;
+        }
+
+        return mIntervalMillis - elapsedInInterval;
+    }
+
+    private void checkForUpdate() {
+        if (System.currentTimeMillis() < mNextAllowedCheckTime) {
+            CodePushUtils.log("Skipping background update check, the server asked to retry later.");
+            return;
+        }
+
+        // Anything escaping here would cancel all future runs.
+        try {
+            JSONObject currentPackage = mUpdateManager.getCurrentPackage();
+            if (currentPackage != null && !mCodePush.getAppVersion().equals(currentPackage.optString("appVersion", null))) {
+                // The binary was updated since this package was installed, it is not the one running.
+                currentPackage = null;
+            }
+
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Accept", "application/json");
+            headers.put("Content-Type", "application/json");
+            UpdateCheckResponse response = mUpdateCheckClient.checkForUpdate(getUpdateCheckUrl(currentPackage), headers);
+            if (response.getRetryAfterMillis() > 0) {
+                mNextAllowedCheckTime = System.currentTimeMillis() + response.getRetryAfterMillis();
+            }
+
+            if (response.getStatusCode() != HttpURLConnection.HTTP_OK || !mPrefetchUpdates) {
+                return;
+            }
+
+            JSONObject updateInfo = new JSONObject(response.getBody()).optJSONObject(UPDATE_INFO_KEY);
+            String packageHash = updateInfo == null ? null : updateInfo.optString("package_hash", null);
+            if (updateInfo == null || !updateInfo.optBoolean("is_available") || updateInfo.optBoolean("update_app_version") || packageHash == null ||
+                    (currentPackage != null && packageHash.equals(currentPackage.optString(CodePushConstants.PACKAGE_HASH_KEY, null))) ||
+                    mSettingsManager.isFailedHash(packageHash) || mUpdateManager.getPackage(packageHash) != null) {
+                return;
+            }
+
+            CodePushUtils.log("Prefetching update " + updateInfo.optString("label"));
+            mUpdateManager.downloadPackage(getUpdatePackage(updateInfo), mCodePush.getAssetsBundleFileName(), new DownloadProgressCallback() {
+                @Override
+                public void call(DownloadProgress downloadProgress) {
+                }
+            }, mCodePush.getSignatureVerifier());
+        } catch (Exception e) {
+            CodePushUtils.log("Background update check failed: " + e.getMessage());
+        }
+    }
+
+    // Built like the request of the JS SDK. Nothing checks that the two stay identical, so a cached
+    // response isn't relied on to answer checkForUpdate.
+    private String getUpdateCheckUrl(JSONObject currentPackage) throws UnsupportedEncodingException {
+        Map<String, String> query = new LinkedHashMap<>();
+        query.put("deployment_key", mCodePush.getDeploymentKey());
+        query.put("app_version", mCodePush.getAppVersion());
+        if (currentPackage != null) {
+            query.put("package_hash", currentPackage.optString(CodePushConstants.PACKAGE_HASH_KEY, null));
+            query.put("label", currentPackage.optString("label", null));
+        } else if (mBinaryContentsHash != null && mBinaryPackage.isAvailable()) {
+            query.put("package_hash", mBinaryContentsHash);
+        }
+
+        query.put("client_unique_id", mClientUniqueId);
+
+        String serverUrl = mCodePush.getServerUrl();
+        StringBuilder updateCheckUrl = new StringBuilder(serverUrl);
+        if (!serverUrl.endsWith("/")) {
+            updateCheckUrl.append("/");
+        }
+
+        updateCheckUrl.append(UPDATE_CHECK_PATH).append("?");
+        boolean isFirst = true;
+        for (Map.Entry<String, String> parameter : query.entrySet()) {
+            if (parameter.getValue() == null) {
+                continue;
+            }
+
+            if (!isFirst) {
+                updateCheckUrl.append("&");
+            }
+
+            updateCheckUrl.append(parameter.getKey()).append("=").append(encodeURIComponent(parameter.getValue()));
+            isFirst = false;
+        }
+
+        return updateCheckUrl.toString();
+    }
+
+    // Same package fields the JS SDK derives from the update check response.
+    private JSONObject getUpdatePackage(JSONObject updateInfo) throws JSONException {
+        JSONObject updatePackage = new JSONObject();
+        updatePackage.put("appVersion", updateInfo.optString("app_version", null));
+        updatePackage.put("deploymentKey", mCodePush.getDeploymentKey());
+        updatePackage.put("description", updateInfo.optString("description", null));
+        updatePackage.put(CodePushConstants.DOWNLOAD_URL_KEY, updateInfo.optString("download_url", null));
+        updatePackage.put("isMandatory", updateInfo.optBoolean("is_mandatory"));
+        updatePackage.put("label", updateInfo.optString("label", null));
+        updatePackage.put(CodePushConstants.PACKAGE_HASH_KEY, updateInfo.optString("package_hash", null));
+        updatePackage.put("packageSize", updateInfo.optLong("package_size"));
+        updatePackage.put(CodePushConstants.BINARY_MODIFIED_TIME_KEY, "" + mCodePush.getBinaryResourcesModifiedTime());
+        return updatePackage;
+    }
+
+    // Matches JS encodeURIComponent, which leaves a few more characters unescaped than URLEncoder.
+    private static String encodeURIComponent(String value) throws UnsupportedEncodingException {
+        return URLEncoder.encode(value, "UTF-8")
+                .replace("+", "%20")
+                .replace("%21", "!")
+                .replace("%27", "'")
+                .replace("%28", "(")
+                .replace("%29", ")")
+                .replace("%7E", "~");
+    }
+}
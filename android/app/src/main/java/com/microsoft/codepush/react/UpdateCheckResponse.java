@@ -0,0 +1,47 @@
+package com.microsoft.codepush.react;
+
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.WritableNativeMap;
+
+class UpdateCheckResponse {
+    private int mStatusCode;
+    private String mBody;
+    private boolean mIsFromCache;
+    private long mRetryAfterMillis;
+
+    public UpdateCheckResponse(int statusCode, String body, boolean isFromCache) {
+        this(statusCode, body, isFromCache, 0);
+    }
+
+    public UpdateCheckResponse(int statusCode, String body, boolean isFromCache, long retryAfterMillis) {
+        mStatusCode = statusCode;
+        mBody = body;
+        mIsFromCache = isFromCache;
+        mRetryAfterMillis = retryAfterMillis;
+    }
+
+    public int getStatusCode() {
+        return mStatusCode;
+    }
+
+    public String getBody() {
+        return mBody;
+    }
+
+    public boolean isFromCache() {
+        return mIsFromCache;
+    }
+
+    // How long the server asked us to wait before checking again, 0 if it didn't say.
+    public long getRetryAfterMillis() {
+        return mRetryAfterMillis;
+    }
+
+    // Matches the shape the JS SDK expects from the request adapter.
+    public WritableMap createWritableMap() {
+        WritableMap map = new WritableNativeMap();
+        map.putInt("statusCode", mStatusCode);
+        map.putString("body", mBody);
+        return map;
+    }
+}
@@ -0,0 +1,84 @@
+package com.microsoft.codepush.react;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CodePushUpdateUtilsBenchmark {
+    // Diff updates of real apps typically delete a small share of the files.
+    private static final int DELETED_FILE_INTERVAL = 10;
+
+    @Param({"10", "100", "1000"})
+    public int fileCount;
+
+    @Param({SyntheticPackage.UNIFORM_DISTRIBUTION, SyntheticPackage.SKEWED_DISTRIBUTION})
+    public String sizeDistribution;
+
+    private File mRootFolder;
+    private SyntheticPackage mPackage;
+    private String mPackageHash;
+    private File mBundleFile;
+    private File mDiffManifestFile;
+    private String mNewPackagePath;
+
+    @Setup(Level.Trial)
+    public void createPackage() throws IOException {
+        SilentLogger.install();
+        mRootFolder = SyntheticPackage.createTempFolder("CodePushUpdateUtilsBenchmark");
+        mPackage = SyntheticPackage.create(new File(mRootFolder, "package"), fileCount, sizeDistribution, 42);
+        mPackageHash = mPackage.computePackageHash();
+        mBundleFile = new File(mPackage.getFolder(), mPackage.getRelativeFilePaths().get(0));
+        mDiffManifestFile = new File(mRootFolder, CodePushConstants.DIFF_MANIFEST_FILE_NAME);
+        mPackage.writeDiffManifest(mDiffManifestFile, DELETED_FILE_INTERVAL);
+        mNewPackagePath = new File(mRootFolder, "newPackage").getAbsolutePath();
+    }
+
+    @Setup(Level.Invocation)
+    public void clearNewPackage() {
+        FileUtils.deleteDirectoryAtPath(mNewPackagePath);
+    }
+
+    @TearDown(Level.Trial)
+    public void deletePackage() {
+        FileUtils.deleteDirectoryAtPath(mRootFolder.getAbsolutePath());
+    }
+
+    @Benchmark
+    public JSONObject verifyFolderHash() {
+        return CodePushUpdateUtils.verifyFolderHash(mPackage.getFolder().getAbsolutePath(), mPackageHash);
+    }
+
+    // The bundle is the first file of the package, the largest one with the skewed distribution.
+    @Benchmark
+    public String computeHash() throws IOException {
+        return CodePushUpdateUtils.computeHash(new FileInputStream(mBundleFile));
+    }
+
+    @Benchmark
+    public void copyNecessaryFilesFromCurrentPackage() throws IOException {
+        CodePushUpdateUtils.copyNecessaryFilesFromCurrentPackage(mDiffManifestFile.getAbsolutePath(),
+                mPackage.getFolder().getAbsolutePath(), mNewPackagePath);
+    }
+}
@@ -0,0 +1,56 @@
+package com.microsoft.codepush.react;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CodePushUtilsBenchmark {
+    // The package manifest has an entry per file, so its size follows the file count.
+    @Param({"10", "100", "1000"})
+    public int fileCount;
+
+    private File mRootFolder;
+    private String mPackageManifestPath;
+
+    @Setup(Level.Trial)
+    public void createPackageManifest() throws IOException {
+        SilentLogger.install();
+        mRootFolder = SyntheticPackage.createTempFolder("CodePushUtilsBenchmark");
+        SyntheticPackage syntheticPackage = SyntheticPackage.create(new File(mRootFolder, "package"), fileCount, SyntheticPackage.UNIFORM_DISTRIBUTION, 42);
+        String packageFolderPath = syntheticPackage.getFolder().getAbsolutePath();
+        JSONObject fileManifest = CodePushUpdateUtils.verifyFolderHash(packageFolderPath, syntheticPackage.computePackageHash());
+        CodePushUpdateUtils.writeFileManifest(fileManifest, packageFolderPath);
+        mPackageManifestPath = CodePushUtils.appendPathComponent(packageFolderPath, CodePushConstants.PACKAGE_MANIFEST_FILE_NAME);
+    }
+
+    @TearDown(Level.Trial)
+    public void deletePackageManifest() {
+        FileUtils.deleteDirectoryAtPath(mRootFolder.getAbsolutePath());
+    }
+
+    @Benchmark
+    public JSONObject getJsonObjectFromFile() throws IOException {
+        return CodePushUtils.getJsonObjectFromFile(mPackageManifestPath);
+    }
+}
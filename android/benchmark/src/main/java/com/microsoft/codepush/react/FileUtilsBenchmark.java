@@ -0,0 +1,69 @@
+package com.microsoft.codepush.react;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FileUtilsBenchmark {
+    @Param({"10", "100", "1000"})
+    public int fileCount;
+
+    @Param({SyntheticPackage.UNIFORM_DISTRIBUTION, SyntheticPackage.SKEWED_DISTRIBUTION})
+    public String sizeDistribution;
+
+    private File mRootFolder;
+    private SyntheticPackage mPackage;
+    private File mZipFile;
+    private String mDestinationPath;
+
+    @Setup(Level.Trial)
+    public void createPackage() throws IOException {
+        SilentLogger.install();
+        mRootFolder = SyntheticPackage.createTempFolder("FileUtilsBenchmark");
+        mPackage = SyntheticPackage.create(new File(mRootFolder, "package"), fileCount, sizeDistribution, 42);
+        mZipFile = new File(mRootFolder, CodePushConstants.DOWNLOAD_FILE_NAME);
+        mPackage.writeZip(mZipFile);
+        mDestinationPath = new File(mRootFolder, "destination").getAbsolutePath();
+    }
+
+    // Both benchmarks write into a folder which has to start out empty.
+    @Setup(Level.Invocation)
+    public void clearDestination() {
+        FileUtils.deleteDirectoryAtPath(mDestinationPath);
+    }
+
+    @TearDown(Level.Trial)
+    public void deletePackage() {
+        FileUtils.deleteDirectoryAtPath(mRootFolder.getAbsolutePath());
+    }
+
+    @Benchmark
+    public String unzipFile() throws IOException {
+        return FileUtils.unzipFile(mZipFile, mDestinationPath, SyntheticPackage.BUNDLE_FILE_NAME);
+    }
+
+    @Benchmark
+    public void copyDirectoryContents() throws IOException {
+        FileUtils.copyDirectoryContents(mPackage.getFolder().getAbsolutePath(), mDestinationPath);
+    }
+}
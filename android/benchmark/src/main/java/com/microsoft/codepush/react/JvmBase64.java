@@ -0,0 +1,14 @@
+package com.microsoft.codepush.react;
+
+// java.util.Base64 is only on Android from API 26, so the engine leaves decoding to the platform.
+public class JvmBase64 implements CodePushBase64 {
+    public static void install() {
+        CodePushPlatform.setBase64(new JvmBase64());
+    }
+
+    @Override
+    public byte[] decode(String encoded) {
+        // MIME decoding ignores line breaks, which PEM encoded keys usually contain.
+        return java.util.Base64.getMimeDecoder().decode(encoded);
+    }
+}
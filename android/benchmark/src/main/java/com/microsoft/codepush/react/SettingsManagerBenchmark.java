@@ -0,0 +1,94 @@
+package com.microsoft.codepush.react;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the JSON handling around the stored settings. The settings are kept in a map, so the time
+ * Android takes to persist its preferences file is not part of the results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SettingsManagerBenchmark {
+    private static final String PACKAGE_HASH = "2f6bd5a0b9d3d1f2c5f0b6e4d3c2a1f0e9d8c7b6a5f4e3d2c1b0a9f8e7d6c5b4";
+
+    @Param({"0", "10", "100"})
+    public int failedUpdateCount;
+
+    private SettingsManager mSettingsManager;
+
+    @Setup(Level.Trial)
+    public void createSettings() throws JSONException {
+        SilentLogger.install();
+        mSettingsManager = new SettingsManager(new InMemoryStore());
+        for (int i = 0; i < failedUpdateCount; i++) {
+            JSONObject failedPackage = new JSONObject();
+            failedPackage.put(CodePushConstants.PACKAGE_HASH_KEY, "failedPackage" + i);
+            failedPackage.put(CodePushConstants.DOWNLOAD_URL_KEY, "https://codepush.blob.core.windows.net/storagev2/failedPackage" + i);
+            failedPackage.put("label", "v" + i);
+            mSettingsManager.saveFailedUpdate(failedPackage);
+        }
+
+        mSettingsManager.savePendingUpdate(PACKAGE_HASH, false);
+    }
+
+    @Benchmark
+    public JSONObject getPendingUpdate() {
+        return mSettingsManager.getPendingUpdate();
+    }
+
+    // A hash which isn't there, so the whole list is parsed and searched, as on every launch.
+    @Benchmark
+    public boolean isFailedHash() {
+        return mSettingsManager.isFailedHash(PACKAGE_HASH);
+    }
+
+    @Benchmark
+    public void savePendingUpdate() {
+        mSettingsManager.savePendingUpdate(PACKAGE_HASH, false);
+    }
+
+    @Benchmark
+    public void setLatestRollbackInfo() {
+        mSettingsManager.setLatestRollbackInfo(PACKAGE_HASH);
+    }
+
+    private static class InMemoryStore implements CodePushKeyValueStore {
+        private final Map<String, String> mValues = new HashMap<>();
+
+        @Override
+        public String getString(String key) {
+            return mValues.get(key);
+        }
+
+        @Override
+        public void putString(String key, String value) {
+            mValues.put(key, value);
+        }
+
+        @Override
+        public void remove(String key) {
+            mValues.remove(key);
+        }
+    }
+}
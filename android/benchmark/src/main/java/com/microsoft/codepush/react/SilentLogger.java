@@ -0,0 +1,16 @@
+package com.microsoft.codepush.react;
+
+// Drops the engine's log messages, printing them would be part of the measurements.
+public class SilentLogger implements CodePushLogger {
+    public static void install() {
+        CodePushPlatform.setLogger(new SilentLogger());
+    }
+
+    @Override
+    public void log(String message) {
+    }
+
+    @Override
+    public void log(Throwable throwable) {
+    }
+}
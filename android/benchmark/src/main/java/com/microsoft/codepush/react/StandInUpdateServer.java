@@ -0,0 +1,176 @@
+package com.microsoft.codepush.react;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An embedded HTTP server standing in for the update server. It serves archives kept in memory, with
+ * optional latency, bandwidth limit and injected faults, so the update engine can be driven end to
+ * end without a network. Range requests are honoured, like the real storage does.
+ */
+public class StandInUpdateServer {
+    private static final int WRITE_CHUNK_SIZE = 16 * 1024;
+
+    private final HttpServer mServer;
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+    private final Map<String, byte[]> mFiles = new ConcurrentHashMap<>();
+    private final AtomicLong mServedBytes = new AtomicLong();
+    private final AtomicLong mInjectedFaultCount = new AtomicLong();
+    private final Random mFaultRandom;
+
+    private volatile long mLatencyMillis;
+    private volatile long mBytesPerSecond;
+    private volatile double mFaultRate;
+
+    public StandInUpdateServer(long faultSeed) throws IOException {
+        mFaultRandom = new Random(faultSeed);
+        mServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        mServer.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    serve(exchange);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        mServer.setExecutor(mExecutor);
+    }
+
+    public void start() {
+        mServer.start();
+    }
+
+    public void stop() {
+        mServer.stop(0);
+        mExecutor.shutdownNow();
+    }
+
+    // Latency added before every response.
+    public void setLatencyMillis(long latencyMillis) {
+        mLatencyMillis = latencyMillis;
+    }
+
+    // 0 serves as fast as the loopback allows.
+    public void setBytesPerSecond(long bytesPerSecond) {
+        mBytesPerSecond = bytesPerSecond;
+    }
+
+    // Share of requests failed, half with a server error and half with a body cut short.
+    public void setFaultRate(double faultRate) {
+        mFaultRate = faultRate;
+    }
+
+    public String addFile(String path, byte[] contents) {
+        mFiles.put(path, contents);
+        return "http://" + mServer.getAddress().getHostString() + ":" + mServer.getAddress().getPort() + path;
+    }
+
+    public long getServedBytes() {
+        return mServedBytes.get();
+    }
+
+    public long getInjectedFaultCount() {
+        return mInjectedFaultCount.get();
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        sleep(mLatencyMillis);
+
+        byte[] contents = mFiles.get(exchange.getRequestURI().getPath());
+        if (contents == null) {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+
+        int fault = nextFault();
+        if (fault == 1) {
+            exchange.sendResponseHeaders(503, -1);
+            return;
+        }
+
+        int start = 0;
+        int end = contents.length;
+        int status = 200;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (range != null && range.startsWith("bytes=")) {
+            String[] bounds = range.substring("bytes=".length()).split("-", -1);
+            if (bounds[0].isEmpty()) {
+                start = Math.max(0, contents.length - Integer.parseInt(bounds[1]));
+            } else {
+                start = Integer.parseInt(bounds[0]);
+                if (!bounds[1].isEmpty()) {
+                    end = Math.min(contents.length, Integer.parseInt(bounds[1]) + 1);
+                }
+            }
+
+            if (start >= end) {
+                exchange.sendResponseHeaders(416, -1);
+                return;
+            }
+
+            status = 206;
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + contents.length);
+        }
+
+        exchange.sendResponseHeaders(status, end - start);
+        // A cut short body stops halfway, which the client sees as a connection dropped mid transfer.
+        int sendEnd = fault == 2 ? start + (end - start) / 2 : end;
+        OutputStream outputStream = exchange.getResponseBody();
+        long bytesPerSecond = mBytesPerSecond;
+        long transferStartNanos = System.nanoTime();
+        for (int offset = start; offset < sendEnd; offset += WRITE_CHUNK_SIZE) {
+            int length = Math.min(WRITE_CHUNK_SIZE, sendEnd - offset);
+            outputStream.write(contents, offset, length);
+            mServedBytes.addAndGet(length);
+            if (bytesPerSecond > 0) {
+                long dueNanos = transferStartNanos + (offset + length - start) * 1000000000L / bytesPerSecond;
+                sleep((dueNanos - System.nanoTime()) / 1000000);
+            }
+        }
+
+        outputStream.flush();
+    }
+
+    // 0: no fault, 1: server error, 2: body cut short.
+    private int nextFault() {
+        double faultRate = mFaultRate;
+        if (faultRate <= 0) {
+            return 0;
+        }
+
+        synchronized (mFaultRandom) {
+            if (mFaultRandom.nextDouble() >= faultRate) {
+                return 0;
+            }
+
+            mInjectedFaultCount.incrementAndGet();
+            return mFaultRandom.nextBoolean() ? 1 : 2;
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.microsoft.codepush.react;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Generates update packages shaped like real ones: a JS bundle and image assets spread over density
+ * folders. Contents are random but seeded, so every run benchmarks the same package.
+ */
+public class SyntheticPackage {
+    public static final String BUNDLE_FILE_NAME = "index.android.bundle";
+
+    // "uniform": every file about the same size, "skewed": one large bundle and many small assets,
+    // which is what most React Native updates look like.
+    public static final String UNIFORM_DISTRIBUTION = "uniform";
+    public static final String SKEWED_DISTRIBUTION = "skewed";
+
+    private static final String[] ASSET_FOLDERS = {"drawable-mdpi", "drawable-hdpi", "drawable-xhdpi", "drawable-xxhdpi", "raw"};
+    private static final int UNIFORM_FILE_SIZE = 16 * 1024;
+    private static final int SKEWED_BUNDLE_SIZE = 4 * 1024 * 1024;
+    private static final int SKEWED_MAX_ASSET_SIZE = 32 * 1024;
+
+    private final File mFolder;
+    private final List<String> mRelativeFilePaths;
+
+    private SyntheticPackage(File folder, List<String> relativeFilePaths) {
+        mFolder = folder;
+        mRelativeFilePaths = relativeFilePaths;
+    }
+
+    public static SyntheticPackage create(File folder, int fileCount, String sizeDistribution, long seed) throws IOException {
+        if (!UNIFORM_DISTRIBUTION.equals(sizeDistribution) && !SKEWED_DISTRIBUTION.equals(sizeDistribution)) {
+            throw new IllegalArgumentException("Unknown size distribution: " + sizeDistribution);
+        }
+
+        Random random = new Random(seed);
+        List<String> relativeFilePaths = new ArrayList<>();
+        for (int i = 0; i < fileCount; i++) {
+            String relativeFilePath;
+            int size;
+            if (i == 0) {
+                relativeFilePath = CodePushConstants.CODE_PUSH_FOLDER_PREFIX + "/" + BUNDLE_FILE_NAME;
+                size = SKEWED_DISTRIBUTION.equals(sizeDistribution) ? SKEWED_BUNDLE_SIZE : UNIFORM_FILE_SIZE;
+            } else {
+                relativeFilePath = CodePushConstants.CODE_PUSH_FOLDER_PREFIX + "/" + ASSET_FOLDERS[i % ASSET_FOLDERS.length] + "/asset_" + i + ".png";
+                size = SKEWED_DISTRIBUTION.equals(sizeDistribution) ? 1 + random.nextInt(SKEWED_MAX_ASSET_SIZE) : UNIFORM_FILE_SIZE;
+            }
+
+            byte[] contents = new byte[size];
+            random.nextBytes(contents);
+            File file = new File(folder, relativeFilePath);
+            file.getParentFile().mkdirs();
+            OutputStream outputStream = new FileOutputStream(file);
+            try {
+                outputStream.write(contents);
+            } finally {
+                outputStream.close();
+            }
+
+            relativeFilePaths.add(relativeFilePath);
+        }
+
+        return new SyntheticPackage(folder, relativeFilePaths);
+    }
+
+    public File getFolder() {
+        return mFolder;
+    }
+
+    public List<String> getRelativeFilePaths() {
+        return Collections.unmodifiableList(mRelativeFilePaths);
+    }
+
+    // The package hash the server would report for these contents.
+    public String computePackageHash() throws IOException {
+        TreeSet<String> sortedRelativeFilePaths = new TreeSet<>(mRelativeFilePaths);
+        List<String> manifest = new ArrayList<>();
+        for (String relativeFilePath : sortedRelativeFilePaths) {
+            manifest.add(relativeFilePath + ":" + CodePushUpdateUtils.computeHash(new FileInputStream(new File(mFolder, relativeFilePath))));
+        }
+
+        return CodePushUpdateUtils.computeManifestHash(manifest);
+    }
+
+    public void writeZip(File zipFile) throws IOException {
+        ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(zipFile));
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            for (String relativeFilePath : mRelativeFilePaths) {
+                zipOutputStream.putNextEntry(new ZipEntry(relativeFilePath));
+                InputStream inputStream = new FileInputStream(new File(mFolder, relativeFilePath));
+                try {
+                    int numBytesRead;
+                    while ((numBytesRead = inputStream.read(buffer)) != -1) {
+                        zipOutputStream.write(buffer, 0, numBytesRead);
+                    }
+                } finally {
+                    inputStream.close();
+                }
+
+                zipOutputStream.closeEntry();
+            }
+        } finally {
+            zipOutputStream.close();
+        }
+    }
+
+    // A diff manifest deleting every deletedFileInterval-th file, as sent along with diff updates.
+    public void writeDiffManifest(File diffManifestFile, int deletedFileInterval) throws IOException {
+        StringBuilder diffManifest = new StringBuilder("{\"deletedFiles\":[");
+        boolean isFirst = true;
+        for (int i = 1; i < mRelativeFilePaths.size(); i += deletedFileInterval) {
+            diffManifest.append(isFirst ? "" : ",").append('"').append(mRelativeFilePaths.get(i)).append('"');
+            isFirst = false;
+        }
+
+        diffManifest.append("]}");
+        FileUtils.writeStringToFile(diffManifest.toString(), diffManifestFile.getAbsolutePath());
+    }
+
+    public static File createTempFolder(String prefix) throws IOException {
+        File folder = File.createTempFile(prefix, "");
+        if (!folder.delete() || !folder.mkdirs()) {
+            throw new IOException("Unable to create temporary folder " + folder);
+        }
+
+        return folder;
+    }
+}
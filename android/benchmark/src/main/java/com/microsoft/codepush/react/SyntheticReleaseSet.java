@@ -0,0 +1,271 @@
+package com.microsoft.codepush.react;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.RSAPrivateKey;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * A ring of releases built from one {@link SyntheticPackage}: each release rewrites the bundle and a
+ * share of the assets, deletes one asset and adds another. Every release comes as a full archive and
+ * as a diff archive against the release before it, optionally signed like the CLI does.
+ */
+public class SyntheticReleaseSet {
+    public static class Release {
+        private final String mPackageHash;
+        private final byte[] mFullArchive;
+        private final byte[] mDiffArchive;
+
+        private Release(String packageHash, byte[] fullArchive, byte[] diffArchive) {
+            mPackageHash = packageHash;
+            mFullArchive = fullArchive;
+            mDiffArchive = diffArchive;
+        }
+
+        public String getPackageHash() {
+            return mPackageHash;
+        }
+
+        public byte[] getFullArchive() {
+            return mFullArchive;
+        }
+
+        // Applies to the release before this one in the ring.
+        public byte[] getDiffArchive() {
+            return mDiffArchive;
+        }
+    }
+
+    private static final String SIGNATURE_FILE_PATH = CodePushConstants.CODE_PUSH_FOLDER_PREFIX + "/" + CodePushConstants.BUNDLE_JWT_FILE;
+
+    private final List<Release> mReleases;
+    private final String mPublicKey;
+
+    private SyntheticReleaseSet(List<Release> releases, String publicKey) {
+        mReleases = releases;
+        mPublicKey = publicKey;
+    }
+
+    public static SyntheticReleaseSet create(int releaseCount, int fileCount, String sizeDistribution,
+                                             double changedAssetRatio, boolean isSigned, long seed) throws IOException {
+        if (releaseCount < 3) {
+            // The release being downloaded must never be the current or the previous one.
+            throw new IllegalArgumentException("At least 3 releases are needed, got " + releaseCount);
+        }
+
+        RSAPrivateKey privateKey = null;
+        String publicKey = null;
+        if (isSigned) {
+            KeyPair keyPair = generateKeyPair();
+            privateKey = (RSAPrivateKey) keyPair.getPrivate();
+            publicKey = Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded());
+        }
+
+        File workFolder = SyntheticPackage.createTempFolder("codepush-releases");
+        try {
+            File baseFolder = new File(workFolder, "base");
+            SyntheticPackage basePackage = SyntheticPackage.create(baseFolder, fileCount, sizeDistribution, seed);
+
+            List<Map<String, String>> fileHashes = new ArrayList<>();
+            List<String> packageHashes = new ArrayList<>();
+            List<byte[]> fullArchives = new ArrayList<>();
+            for (int i = 0; i < releaseCount; i++) {
+                File releaseFolder = new File(workFolder, "release" + i);
+                FileUtils.copyDirectoryContents(baseFolder.getAbsolutePath(), releaseFolder.getAbsolutePath());
+                applyReleaseChanges(releaseFolder, basePackage.getRelativeFilePaths(), i, changedAssetRatio, new Random(seed + i + 1));
+
+                Map<String, String> releaseFileHashes = computeFileHashes(releaseFolder);
+                String packageHash = computePackageHash(releaseFileHashes);
+                if (isSigned) {
+                    FileUtils.writeStringToFile(sign(packageHash, privateKey), new File(releaseFolder, SIGNATURE_FILE_PATH).getAbsolutePath());
+                }
+
+                fileHashes.add(releaseFileHashes);
+                packageHashes.add(packageHash);
+                fullArchives.add(writeArchive(releaseFolder, releaseFileHashes.keySet(), isSigned, null));
+            }
+
+            List<Release> releases = new ArrayList<>();
+            for (int i = 0; i < releaseCount; i++) {
+                Map<String, String> previousFileHashes = fileHashes.get((i + releaseCount - 1) % releaseCount);
+                Map<String, String> releaseFileHashes = fileHashes.get(i);
+                Set<String> changedFiles = new HashSet<>();
+                for (Map.Entry<String, String> file : releaseFileHashes.entrySet()) {
+                    if (!file.getValue().equals(previousFileHashes.get(file.getKey()))) {
+                        changedFiles.add(file.getKey());
+                    }
+                }
+
+                List<String> deletedFiles = new ArrayList<>();
+                for (String relativeFilePath : previousFileHashes.keySet()) {
+                    if (!releaseFileHashes.containsKey(relativeFilePath)) {
+                        deletedFiles.add(relativeFilePath);
+                    }
+                }
+
+                byte[] diffArchive = writeArchive(new File(workFolder, "release" + i), changedFiles, isSigned, deletedFiles);
+                releases.add(new Release(packageHashes.get(i), fullArchives.get(i), diffArchive));
+            }
+
+            return new SyntheticReleaseSet(releases, publicKey);
+        } finally {
+            FileUtils.deleteDirectoryAtPath(workFolder.getAbsolutePath());
+        }
+    }
+
+    public int size() {
+        return mReleases.size();
+    }
+
+    public Release get(int index) {
+        return mReleases.get(index);
+    }
+
+    // Base64 X.509 public key the releases are signed with, null if they are not signed.
+    public String getPublicKey() {
+        return mPublicKey;
+    }
+
+    private static void applyReleaseChanges(File releaseFolder, List<String> baseFilePaths, int releaseIndex,
+                                            double changedAssetRatio, Random random) throws IOException {
+        // The bundle changes in every release, assets only now and then.
+        for (int i = 0; i < baseFilePaths.size(); i++) {
+            if (i == 0 || random.nextDouble() < changedAssetRatio) {
+                File file = new File(releaseFolder, baseFilePaths.get(i));
+                writeRandomFile(file, (int) file.length(), random);
+            }
+        }
+
+        if (baseFilePaths.size() > 1) {
+            File deletedAsset = new File(releaseFolder, baseFilePaths.get(1 + releaseIndex % (baseFilePaths.size() - 1)));
+            deletedAsset.delete();
+        }
+
+        File addedAsset = new File(releaseFolder, CodePushConstants.CODE_PUSH_FOLDER_PREFIX + "/raw/release_" + releaseIndex + ".png");
+        addedAsset.getParentFile().mkdirs();
+        writeRandomFile(addedAsset, 1 + random.nextInt(8 * 1024), random);
+    }
+
+    private static void writeRandomFile(File file, int size, Random random) throws IOException {
+        byte[] contents = new byte[size];
+        random.nextBytes(contents);
+        OutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write(contents);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    private static Map<String, String> computeFileHashes(File folder) throws IOException {
+        Set<String> relativeFilePaths = new HashSet<>();
+        CodePushUpdateUtils.addRelativeFilePaths(folder.getAbsolutePath(), "", relativeFilePaths);
+        Map<String, String> fileHashes = new TreeMap<>();
+        for (String relativeFilePath : relativeFilePaths) {
+            if (!CodePushUpdateUtils.isHashIgnored(relativeFilePath)) {
+                fileHashes.put(relativeFilePath, CodePushUpdateUtils.computeHash(new FileInputStream(new File(folder, relativeFilePath))));
+            }
+        }
+
+        return fileHashes;
+    }
+
+    private static String computePackageHash(Map<String, String> fileHashes) {
+        List<String> manifest = new ArrayList<>();
+        for (Map.Entry<String, String> file : fileHashes.entrySet()) {
+            manifest.add(file.getKey() + ":" + file.getValue());
+        }
+
+        return CodePushUpdateUtils.computeManifestHash(manifest);
+    }
+
+    private static byte[] writeArchive(File folder, Set<String> relativeFilePaths, boolean isSigned, List<String> deletedFiles) throws IOException {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        ZipOutputStream zipOutputStream = new ZipOutputStream(archive);
+        try {
+            List<String> entries = new ArrayList<>(relativeFilePaths);
+            if (isSigned) {
+                entries.add(SIGNATURE_FILE_PATH);
+            }
+
+            byte[] buffer = new byte[64 * 1024];
+            for (String relativeFilePath : entries) {
+                zipOutputStream.putNextEntry(new ZipEntry(relativeFilePath));
+                InputStream inputStream = new FileInputStream(new File(folder, relativeFilePath));
+                try {
+                    int numBytesRead;
+                    while ((numBytesRead = inputStream.read(buffer)) != -1) {
+                        zipOutputStream.write(buffer, 0, numBytesRead);
+                    }
+                } finally {
+                    inputStream.close();
+                }
+
+                zipOutputStream.closeEntry();
+            }
+
+            if (deletedFiles != null) {
+                StringBuilder diffManifest = new StringBuilder("{\"deletedFiles\":[");
+                for (int i = 0; i < deletedFiles.size(); i++) {
+                    diffManifest.append(i == 0 ? "" : ",").append('"').append(deletedFiles.get(i)).append('"');
+                }
+
+                diffManifest.append("]}");
+                zipOutputStream.putNextEntry(new ZipEntry(CodePushConstants.DIFF_MANIFEST_FILE_NAME));
+                zipOutputStream.write(diffManifest.toString().getBytes("UTF-8"));
+                zipOutputStream.closeEntry();
+            }
+        } finally {
+            zipOutputStream.close();
+        }
+
+        return archive.toByteArray();
+    }
+
+    private static KeyPair generateKeyPair() {
+        try {
+            KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+            keyPairGenerator.initialize(2048);
+            return keyPairGenerator.generateKeyPair();
+        } catch (NoSuchAlgorithmException e) {
+            // Should not happen.
+            throw new CodePushUnknownException("RSA keys are not available.", e);
+        }
+    }
+
+    private static String sign(String packageHash, RSAPrivateKey privateKey) {
+        try {
+            SignedJWT jwt = new SignedJWT(new JWSHeader(JWSAlgorithm.RS256),
+                    new JWTClaimsSet.Builder().claim("contentHash", packageHash).build());
+            jwt.sign(new RSASSASigner(privateKey));
+            return jwt.serialize();
+        } catch (JOSEException e) {
+            // Should not happen.
+            throw new CodePushUnknownException("Unable to sign release " + packageHash, e);
+        }
+    }
+}
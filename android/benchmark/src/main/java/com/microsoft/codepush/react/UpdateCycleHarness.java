@@ -0,0 +1,389 @@
+package com.microsoft.codepush.react;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * End to end soak harness: serves a ring of synthetic releases from a {@link StandInUpdateServer}
+ * and drives {@link CodePushUpdateManager} through download, install and periodic rollback cycles.
+ * Reports throughput, p50/p99 latency of every stage, peak disk use and heap allocation as JSON.
+ *
+ * Options are passed as --name=value, see {@link Options} for the names and defaults.
+ */
+public class UpdateCycleHarness {
+    private static final String BUNDLE_FILE_NAME = SyntheticPackage.BUNDLE_FILE_NAME;
+
+    static class Options {
+        int cycles = 1000;
+        int warmupCycles = 50;
+        int releases = 8;
+        int files = 100;
+        String distribution = SyntheticPackage.SKEWED_DISTRIBUTION;
+        double changedAssets = 0.1;
+        // Share of cycles asking for the diff archive rather than the full one.
+        double diffRatio = 0.8;
+        boolean signed = true;
+        boolean preCheck = false;
+        // Every n-th installed update is rolled back, 0 never rolls back.
+        int rollbackEvery = 10;
+        long latencyMs = 0;
+        long bandwidthKbps = 0;
+        double faultRate = 0;
+        long seed = 1;
+        String output = null;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (String arg : args) {
+                int separatorIndex = arg.indexOf('=');
+                if (!arg.startsWith("--") || separatorIndex < 0) {
+                    throw new IllegalArgumentException("Expected --name=value, got " + arg);
+                }
+
+                String name = arg.substring(2, separatorIndex);
+                String value = arg.substring(separatorIndex + 1);
+                switch (name) {
+                    case "cycles": options.cycles = Integer.parseInt(value); break;
+                    case "warmup-cycles": options.warmupCycles = Integer.parseInt(value); break;
+                    case "releases": options.releases = Integer.parseInt(value); break;
+                    case "files": options.files = Integer.parseInt(value); break;
+                    case "distribution": options.distribution = value; break;
+                    case "changed-assets": options.changedAssets = Double.parseDouble(value); break;
+                    case "diff-ratio": options.diffRatio = Double.parseDouble(value); break;
+                    case "signed": options.signed = Boolean.parseBoolean(value); break;
+                    case "pre-check": options.preCheck = Boolean.parseBoolean(value); break;
+                    case "rollback-every": options.rollbackEvery = Integer.parseInt(value); break;
+                    case "latency-ms": options.latencyMs = Long.parseLong(value); break;
+                    case "bandwidth-kbps": options.bandwidthKbps = Long.parseLong(value); break;
+                    case "fault-rate": options.faultRate = Double.parseDouble(value); break;
+                    case "seed": options.seed = Long.parseLong(value); break;
+                    case "output": options.output = value; break;
+                    default: throw new IllegalArgumentException("Unknown option --" + name);
+                }
+            }
+
+            return options;
+        }
+
+        JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("cycles", cycles);
+            json.put("warmupCycles", warmupCycles);
+            json.put("releases", releases);
+            json.put("files", files);
+            json.put("distribution", distribution);
+            json.put("changedAssets", changedAssets);
+            json.put("diffRatio", diffRatio);
+            json.put("signed", signed);
+            json.put("preCheck", preCheck);
+            json.put("rollbackEvery", rollbackEvery);
+            json.put("latencyMs", latencyMs);
+            json.put("bandwidthKbps", bandwidthKbps);
+            json.put("faultRate", faultRate);
+            json.put("seed", seed);
+            return json;
+        }
+    }
+
+    // Durations of one stage, in nanoseconds.
+    private static class StageTimings {
+        private long[] mDurations = new long[1024];
+        private int mCount;
+
+        void add(long durationNanos) {
+            if (mCount == mDurations.length) {
+                mDurations = Arrays.copyOf(mDurations, mCount * 2);
+            }
+
+            mDurations[mCount++] = durationNanos;
+        }
+
+        JSONObject toJson() throws JSONException {
+            long[] sortedDurations = Arrays.copyOf(mDurations, mCount);
+            Arrays.sort(sortedDurations);
+            JSONObject json = new JSONObject();
+            json.put("count", mCount);
+            json.put("p50Ms", percentile(sortedDurations, 0.50) / 1e6);
+            json.put("p99Ms", percentile(sortedDurations, 0.99) / 1e6);
+            json.put("maxMs", mCount == 0 ? 0 : sortedDurations[mCount - 1] / 1e6);
+            return json;
+        }
+
+        // Nearest rank.
+        private static long percentile(long[] sortedDurations, double fraction) {
+            if (sortedDurations.length == 0) {
+                return 0;
+            }
+
+            int rank = (int) Math.ceil(fraction * sortedDurations.length);
+            return sortedDurations[Math.max(0, rank - 1)];
+        }
+    }
+
+    private final Options mOptions;
+    private final Map<String, StageTimings> mStageTimings = new TreeMap<>();
+    private final Map<String, Integer> mFailures = new TreeMap<>();
+    private long mPeakDiskBytes;
+    private long mPeakTrashBytes;
+    private long mDownloadedBytes;
+    private int mInstalledCount;
+    private int mRolledBackCount;
+
+    private UpdateCycleHarness(Options options) {
+        mOptions = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        SilentLogger.install();
+        JvmBase64.install();
+        Options options = Options.parse(args);
+        JSONObject results = new UpdateCycleHarness(options).run();
+        String resultsString = results.toString(2);
+        System.out.println(resultsString);
+        if (options.output != null) {
+            File outputFile = new File(options.output);
+            if (outputFile.getParentFile() != null) {
+                outputFile.getParentFile().mkdirs();
+            }
+
+            FileUtils.writeStringToFile(resultsString, outputFile.getAbsolutePath());
+        }
+    }
+
+    private JSONObject run() throws IOException, JSONException {
+        SyntheticReleaseSet releases = SyntheticReleaseSet.create(mOptions.releases, mOptions.files, mOptions.distribution,
+                mOptions.changedAssets, mOptions.signed, mOptions.seed);
+
+        StandInUpdateServer server = new StandInUpdateServer(mOptions.seed);
+        server.setLatencyMillis(mOptions.latencyMs);
+        server.setBytesPerSecond(mOptions.bandwidthKbps * 1024 / 8);
+        server.setFaultRate(mOptions.faultRate);
+        server.start();
+
+        File documentsFolder = SyntheticPackage.createTempFolder("codepush-soak");
+        try {
+            String[] fullUrls = new String[releases.size()];
+            String[] diffUrls = new String[releases.size()];
+            Map<String, Integer> releaseIndexes = new HashMap<>();
+            for (int i = 0; i < releases.size(); i++) {
+                fullUrls[i] = server.addFile("/releases/" + i + "/full.zip", releases.get(i).getFullArchive());
+                diffUrls[i] = server.addFile("/releases/" + i + "/diff.zip", releases.get(i).getDiffArchive());
+                releaseIndexes.put(releases.get(i).getPackageHash(), i);
+            }
+
+            CodePushUpdateManager updateManager = new CodePushUpdateManager(documentsFolder.getAbsolutePath());
+            updateManager.setSignaturePreCheckEnabled(mOptions.preCheck);
+            CodePushSignatureVerifier signatureVerifier = releases.getPublicKey() == null ? null : new CodePushSignatureVerifier(releases.getPublicKey());
+            Random cycleRandom = new Random(mOptions.seed);
+
+            for (int cycle = 0; cycle < mOptions.warmupCycles; cycle++) {
+                runCycle(updateManager, releases, releaseIndexes, fullUrls, diffUrls, signatureVerifier, cycleRandom, documentsFolder);
+            }
+
+            resetMeasurements();
+            long servedBytesBefore = server.getServedBytes();
+            long faultsBefore = server.getInjectedFaultCount();
+            long allocatedBytesBefore = getDriverThreadAllocatedBytes();
+            long gcCountBefore = getGcCount();
+            long gcTimeBefore = getGcTimeMillis();
+            for (MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()) {
+                memoryPool.resetPeakUsage();
+            }
+
+            long startNanos = System.nanoTime();
+            for (int cycle = 0; cycle < mOptions.cycles; cycle++) {
+                runCycle(updateManager, releases, releaseIndexes, fullUrls, diffUrls, signatureVerifier, cycleRandom, documentsFolder);
+            }
+
+            double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+
+            JSONObject throughput = new JSONObject();
+            throughput.put("elapsedSeconds", elapsedSeconds);
+            throughput.put("cyclesPerSecond", mOptions.cycles / elapsedSeconds);
+            throughput.put("installsPerSecond", mInstalledCount / elapsedSeconds);
+            throughput.put("downloadedMegabytesPerSecond", mDownloadedBytes / elapsedSeconds / (1024 * 1024));
+
+            JSONObject stages = new JSONObject();
+            for (Map.Entry<String, StageTimings> stage : mStageTimings.entrySet()) {
+                stages.put(stage.getKey(), stage.getValue().toJson());
+            }
+
+            JSONObject memory = new JSONObject();
+            // Extraction workers and the trash thread allocate too, they are not included here.
+            long allocatedBytes = getDriverThreadAllocatedBytes() - allocatedBytesBefore;
+            memory.put("driverThreadAllocatedBytes", allocatedBytes);
+            memory.put("driverThreadAllocatedBytesPerCycle", allocatedBytes / Math.max(1, mOptions.cycles));
+            memory.put("peakHeapUsedBytes", getPeakHeapUsedBytes());
+            memory.put("gcCount", getGcCount() - gcCountBefore);
+            memory.put("gcTimeMs", getGcTimeMillis() - gcTimeBefore);
+
+            JSONObject results = new JSONObject();
+            results.put("options", mOptions.toJson());
+            results.put("installed", mInstalledCount);
+            results.put("rolledBack", mRolledBackCount);
+            results.put("failures", new JSONObject(mFailures));
+            results.put("injectedFaults", server.getInjectedFaultCount() - faultsBefore);
+            results.put("servedBytes", server.getServedBytes() - servedBytesBefore);
+            results.put("throughput", throughput);
+            results.put("stages", stages);
+            results.put("peakDiskBytes", mPeakDiskBytes);
+            results.put("peakTrashBytes", mPeakTrashBytes);
+            results.put("memory", memory);
+            return results;
+        } finally {
+            server.stop();
+            FileUtils.deleteDirectoryAtPath(documentsFolder.getAbsolutePath());
+        }
+    }
+
+    private void runCycle(CodePushUpdateManager updateManager, SyntheticReleaseSet releases, Map<String, Integer> releaseIndexes,
+                          String[] fullUrls, String[] diffUrls, CodePushSignatureVerifier signatureVerifier,
+                          Random cycleRandom, File documentsFolder) throws JSONException {
+        String currentPackageHash = updateManager.getCurrentPackageHash();
+        Integer currentIndex = currentPackageHash == null ? null : releaseIndexes.get(currentPackageHash);
+        int nextIndex = currentIndex == null ? 0 : (currentIndex + 1) % releases.size();
+        // Diff archives apply to the release before theirs, which is the current one.
+        boolean isDiff = currentIndex != null && cycleRandom.nextDouble() < mOptions.diffRatio;
+
+        JSONObject updatePackage = new JSONObject();
+        updatePackage.put(CodePushConstants.PACKAGE_HASH_KEY, releases.get(nextIndex).getPackageHash());
+        updatePackage.put(CodePushConstants.DOWNLOAD_URL_KEY, isDiff ? diffUrls[nextIndex] : fullUrls[nextIndex]);
+        updatePackage.put("label", "v" + nextIndex);
+
+        final long[] transferEndNanos = new long[1];
+        final long[] transferredBytes = new long[1];
+        long downloadStartNanos = System.nanoTime();
+        try {
+            updateManager.downloadPackage(updatePackage, BUNDLE_FILE_NAME, new DownloadProgressCallback() {
+                @Override
+                public void call(DownloadProgress downloadProgress) {
+                    if (downloadProgress.isCompleted()) {
+                        transferEndNanos[0] = System.nanoTime();
+                        transferredBytes[0] = downloadProgress.getReceivedBytes();
+                    }
+                }
+            }, signatureVerifier);
+        } catch (Exception e) {
+            recordFailure("download", e);
+            return;
+        }
+
+        long downloadEndNanos = System.nanoTime();
+        String kind = isDiff ? "Diff" : "Full";
+        stage("transfer" + kind).add(transferEndNanos[0] - downloadStartNanos);
+        stage("process" + kind).add(downloadEndNanos - transferEndNanos[0]);
+        stage("download" + kind).add(downloadEndNanos - downloadStartNanos);
+        mDownloadedBytes += transferredBytes[0];
+        sampleDiskUse(documentsFolder);
+
+        long installStartNanos = System.nanoTime();
+        try {
+            updateManager.installPackage(updatePackage, false);
+        } catch (Exception e) {
+            recordFailure("install", e);
+            return;
+        }
+
+        stage("install").add(System.nanoTime() - installStartNanos);
+        mInstalledCount++;
+        sampleDiskUse(documentsFolder);
+
+        if (mOptions.rollbackEvery > 0 && mInstalledCount % mOptions.rollbackEvery == 0) {
+            long rollbackStartNanos = System.nanoTime();
+            try {
+                updateManager.rollbackPackage();
+            } catch (Exception e) {
+                recordFailure("rollback", e);
+                return;
+            }
+
+            stage("rollback").add(System.nanoTime() - rollbackStartNanos);
+            mRolledBackCount++;
+            sampleDiskUse(documentsFolder);
+        }
+    }
+
+    private StageTimings stage(String name) {
+        StageTimings timings = mStageTimings.get(name);
+        if (timings == null) {
+            timings = new StageTimings();
+            mStageTimings.put(name, timings);
+        }
+
+        return timings;
+    }
+
+    private void recordFailure(String stage, Exception e) {
+        String key = stage + ":" + e.getClass().getSimpleName();
+        Integer count = mFailures.get(key);
+        mFailures.put(key, count == null ? 1 : count + 1);
+    }
+
+    // Includes the trash, whose contents are still on disk until it gets to them. The trash is throttled,
+    // so under sustained load its backlog is worth watching on its own.
+    private void sampleDiskUse(File documentsFolder) {
+        mPeakDiskBytes = Math.max(mPeakDiskBytes, FileUtils.getSize(documentsFolder));
+        mPeakTrashBytes = Math.max(mPeakTrashBytes, FileUtils.getSize(new File(documentsFolder, CodePushConstants.TRASH_FOLDER_NAME)));
+    }
+
+    private void resetMeasurements() {
+        mStageTimings.clear();
+        mFailures.clear();
+        mPeakDiskBytes = 0;
+        mPeakTrashBytes = 0;
+        mDownloadedBytes = 0;
+        mInstalledCount = 0;
+        mRolledBackCount = 0;
+    }
+
+    private static long getDriverThreadAllocatedBytes() {
+        java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        return -1;
+    }
+
+    // Sum of the peaks of every heap pool, an upper bound as the pools don't peak at the same time.
+    private static long getPeakHeapUsedBytes() {
+        long peakBytes = 0;
+        for (MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (memoryPool.getType() == MemoryType.HEAP && memoryPool.getPeakUsage() != null) {
+                peakBytes += memoryPool.getPeakUsage().getUsed();
+            }
+        }
+
+        return peakBytes;
+    }
+
+    private static long getGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+
+        return count;
+    }
+
+    private static long getGcTimeMillis() {
+        long timeMillis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            timeMillis += Math.max(0, collector.getCollectionTime());
+        }
+
+        return timeMillis;
+    }
+}
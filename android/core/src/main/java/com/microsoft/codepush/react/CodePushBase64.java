@@ -0,0 +1,5 @@
+package com.microsoft.codepush.react;
+
+public interface CodePushBase64 {
+    byte[] decode(String encoded);
+}
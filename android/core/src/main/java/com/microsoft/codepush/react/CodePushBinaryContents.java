@@ -0,0 +1,13 @@
+package com.microsoft.codepush.react;
+
+import java.io.IOException;
+import java.util.Map;
+
+// The update contents shipped with the app binary, which diff updates are based on when no update is installed.
+public interface CodePushBinaryContents {
+    // Copies the contents into the folder and returns the hashes of the copied files.
+    Map<String, String> copyContents(String packageFolderPath) throws IOException;
+
+    // The total size of the files copyContents writes.
+    long getSize() throws IOException;
+}
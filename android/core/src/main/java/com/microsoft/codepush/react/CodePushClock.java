@@ -0,0 +1,5 @@
+package com.microsoft.codepush.react;
+
+public interface CodePushClock {
+    long currentTimeMillis();
+}
@@ -3,10 +3,13 @@ package com.microsoft.codepush.react;
 public class CodePushConstants {
     public static final String ASSETS_BUNDLE_PREFIX = "assets://";
     public static final String BINARY_MODIFIED_TIME_KEY = "binaryModifiedTime";
+    public static final String BUNDLE_FINGERPRINT_KEY = "bundleFingerprint";
     public static final String CODE_PUSH_FOLDER_PREFIX = "CodePush";
     public static final String CODE_PUSH_HASH_FILE_NAME = "CodePushHash";
+    public static final String CODE_PUSH_MANIFEST_FILE_NAME = "CodePushManifest";
     public static final String CODE_PUSH_OLD_HASH_FILE_NAME = "CodePushHash.json";
     public static final String CODE_PUSH_PREFERENCES = "CodePush";
+    public static final String CORRUPTED_PACKAGES_KEY = "CODE_PUSH_CORRUPTED_PACKAGES";
     public static final String CURRENT_PACKAGE_KEY = "currentPackage";
     public static final String DEFAULT_JS_BUNDLE_NAME = "index.android.bundle";
     public static final String DIFF_MANIFEST_FILE_NAME = "hotcodepush.json";
@@ -15,15 +18,23 @@ public class CodePushConstants {
     public static final String DOWNLOAD_PROGRESS_EVENT_NAME = "CodePushDownloadProgress";
     public static final String DOWNLOAD_URL_KEY = "downloadUrl";
     public static final String FAILED_UPDATES_KEY = "CODE_PUSH_FAILED_UPDATES";
+    public static final String INSTANCES_FOLDER_NAME = "CodePushInstances";
     public static final String PACKAGE_FILE_NAME = "app.json";
+    public static final String PACKAGE_MANIFEST_FILE_NAME = "manifest.json";
     public static final String PACKAGE_HASH_KEY = "packageHash";
     public static final String PENDING_UPDATE_HASH_KEY = "hash";
     public static final String PENDING_UPDATE_IS_LOADING_KEY = "isLoading";
     public static final String PENDING_UPDATE_KEY = "CODE_PUSH_PENDING_UPDATE";
     public static final String PREVIOUS_PACKAGE_KEY = "previousPackage";
+    public static final String PROCESS_LOCK_FILE_NAME = "CodePush.lock";
     public static final String REACT_NATIVE_LOG_TAG = "ReactNative";
     public static final String RELATIVE_BUNDLE_PATH_KEY = "bundlePath";
+    public static final String RETAINED_PACKAGES_KEY = "retainedPackages";
+    public static final String RETAINED_PACKAGE_LAST_USED_TIME_KEY = "lastUsedTime";
+    public static final int SIGNATURE_PRE_CHECK_TIMEOUT_MILLIS = 10 * 1000;
+    public static final String SIGNATURE_URL_KEY = "signatureUrl";
     public static final String STATUS_FILE = "codepush.json";
+    public static final String TRASH_FOLDER_NAME = "CodePushTrash";
     public static final String UNZIPPED_FOLDER_NAME = "unzipped";
     public static final String CODE_PUSH_APK_BUILD_TIME_KEY = "CODE_PUSH_APK_BUILD_TIME";
     public static final String BUNDLE_JWT_FILE = ".codepushrelease";
@@ -31,4 +42,6 @@ public class CodePushConstants {
     public static final String LATEST_ROLLBACK_PACKAGE_HASH_KEY = "packageHash";
     public static final String LATEST_ROLLBACK_TIME_KEY = "time";
     public static final String LATEST_ROLLBACK_COUNT_KEY = "count";
+    public static final String TELEMETRY_QUEUE_FILE_NAME = "CodePushTelemetryQueue";
+    public static final int STATUS_REPORT_BATCH_SIZE = 10;
 }
@@ -0,0 +1,10 @@
+package com.microsoft.codepush.react;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+public interface CodePushFileAllocator {
+    // Reserves length bytes for the file, so that running out of space fails before anything is
+    // written. Returns false if there isn't enough space, true if there is or it can't be told.
+    boolean preallocate(FileOutputStream outputStream, long length) throws IOException;
+}
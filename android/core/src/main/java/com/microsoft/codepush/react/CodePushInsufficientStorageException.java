@@ -0,0 +1,20 @@
+package com.microsoft.codepush.react;
+
+public class CodePushInsufficientStorageException extends RuntimeException {
+    private final long mRequiredBytes;
+    private final long mAvailableBytes;
+
+    public CodePushInsufficientStorageException(long requiredBytes, long availableBytes) {
+        super("Not enough free space to install the update: " + requiredBytes + " bytes are required, " + availableBytes + " bytes are available.");
+        mRequiredBytes = requiredBytes;
+        mAvailableBytes = availableBytes;
+    }
+
+    public long getRequiredBytes() {
+        return mRequiredBytes;
+    }
+
+    public long getAvailableBytes() {
+        return mAvailableBytes;
+    }
+}
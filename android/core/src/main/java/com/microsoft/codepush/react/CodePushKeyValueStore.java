@@ -0,0 +1,10 @@
+package com.microsoft.codepush.react;
+
+// Persistent string settings. Writes have to be durable once the call returns.
+public interface CodePushKeyValueStore {
+    String getString(String key);
+
+    void putString(String key, String value);
+
+    void remove(String key);
+}
@@ -0,0 +1,7 @@
+package com.microsoft.codepush.react;
+
+public interface CodePushLogger {
+    void log(String message);
+
+    void log(Throwable throwable);
+}
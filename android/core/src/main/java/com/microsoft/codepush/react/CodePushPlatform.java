@@ -0,0 +1,80 @@
+package com.microsoft.codepush.react;
+
+import java.io.FileOutputStream;
+
+/**
+ * The few platform services the update engine needs, so that it runs on a plain JVM as well as on
+ * Android. The defaults only use the Java standard library available on Android, the Android module
+ * installs its own implementations before the engine is used.
+ */
+public final class CodePushPlatform {
+    private static volatile CodePushLogger sLogger = new CodePushLogger() {
+        @Override
+        public void log(String message) {
+            System.out.println("[CodePush] " + message);
+        }
+
+        @Override
+        public void log(Throwable throwable) {
+            System.out.println("[CodePush] Exception");
+            throwable.printStackTrace(System.out);
+        }
+    };
+
+    // The standard library only has a decoder from Java 8 and Android API 26, so one has to be installed.
+    private static volatile CodePushBase64 sBase64 = new CodePushBase64() {
+        @Override
+        public byte[] decode(String encoded) {
+            throw new CodePushUnknownException("No Base64 decoder was installed, see CodePushPlatform.setBase64");
+        }
+    };
+
+    private static volatile CodePushClock sClock = new CodePushClock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    private static volatile CodePushFileAllocator sFileAllocator = new CodePushFileAllocator() {
+        @Override
+        public boolean preallocate(FileOutputStream outputStream, long length) {
+            return true;
+        }
+    };
+
+    private CodePushPlatform() {
+    }
+
+    public static CodePushLogger getLogger() {
+        return sLogger;
+    }
+
+    public static void setLogger(CodePushLogger logger) {
+        sLogger = logger;
+    }
+
+    public static CodePushBase64 getBase64() {
+        return sBase64;
+    }
+
+    public static void setBase64(CodePushBase64 base64) {
+        sBase64 = base64;
+    }
+
+    public static CodePushClock getClock() {
+        return sClock;
+    }
+
+    public static void setClock(CodePushClock clock) {
+        sClock = clock;
+    }
+
+    public static CodePushFileAllocator getFileAllocator() {
+        return sFileAllocator;
+    }
+
+    public static void setFileAllocator(CodePushFileAllocator fileAllocator) {
+        sFileAllocator = fileAllocator;
+    }
+}
@@ -0,0 +1,253 @@
+package com.microsoft.codepush.react;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Advisory locks on a file next to the CodePush folder, so that several processes of the app can use
+ * the update engine at once, e.g. a low priority background process downloading updates for the UI
+ * process. Readers take shared locks and commits take exclusive ones. Each region of the file guards
+ * one part of the storage:
+ *
+ * STATE: the status file and the installed packages, which are moved to the trash under this lock.
+ * STAGING: the download file, the unzip folder and packages which are being downloaded.
+ *
+ * When both are needed, STAGING is taken first. A thread holding a shared lock must not take the
+ * exclusive lock of the same region, it would wait for itself.
+ *
+ * File locks are held on behalf of the whole process, so threads of the same process are kept apart
+ * by a read-write lock as well. Every exclusive lock bumps a change count stored in the file, which
+ * lets a process notice what other processes did, see {@link #hasChangedElsewhere(int)}.
+ *
+ * A channel is closed when a thread using it is interrupted, which would release every lock of the
+ * process. The interrupt status is set aside while the channel is used, and file locks are waited
+ * for by polling rather than in a blocking call.
+ */
+public class CodePushProcessLock {
+    public static final int STATE = 0;
+    public static final int STAGING = 1;
+
+    private static final int REGION_COUNT = 2;
+    // The change counts are stored after the locked bytes, one long per region.
+    private static final int CHANGE_COUNT_OFFSET = 8;
+    private static final long LOCK_POLL_INTERVAL_MILLIS = 10;
+
+    // Locking a file twice from the same process throws, so there is one instance per file.
+    private static final Map<String, CodePushProcessLock> sLocks = new HashMap<>();
+
+    private final String mLockFilePath;
+    private final FileChannel mChannel;
+    private final Region[] mRegions = new Region[REGION_COUNT];
+
+    private static class Region {
+        final ReentrantReadWriteLock threadLock = new ReentrantReadWriteLock();
+        FileLock fileLock;
+        int holdCount;
+        long knownChangeCount;
+    }
+
+    private CodePushProcessLock(String lockFilePath) throws IOException {
+        mLockFilePath = lockFilePath;
+        File lockFile = new File(lockFilePath);
+        lockFile.getParentFile().mkdirs();
+        // Kept open for the lifetime of the process, closing any channel to a file releases all its locks.
+        mChannel = new RandomAccessFile(lockFile, "rw").getChannel();
+        boolean isInterrupted = Thread.interrupted();
+        try {
+            for (int i = 0; i < REGION_COUNT; i++) {
+                mRegions[i] = new Region();
+                // Read without the lock, a count being written at the same time only shows up as one more change.
+                mRegions[i].knownChangeCount = readChangeCount(i);
+            }
+        } finally {
+            restoreInterruptStatus(isInterrupted);
+        }
+    }
+
+    public static CodePushProcessLock forFile(String lockFilePath) {
+        synchronized (sLocks) {
+            String key = new File(lockFilePath).getAbsolutePath();
+            CodePushProcessLock lock = sLocks.get(key);
+            if (lock == null) {
+                try {
+                    lock = new CodePushProcessLock(key);
+                } catch (IOException e) {
+                    throw new CodePushUnknownException("Unable to open the lock file " + key, e);
+                }
+
+                sLocks.put(key, lock);
+            }
+
+            return lock;
+        }
+    }
+
+    public String getLockFilePath() {
+        return mLockFilePath;
+    }
+
+    public void lockShared(int region) {
+        lock(region, true);
+    }
+
+    public void unlockShared(int region) {
+        unlock(region, true);
+    }
+
+    public void lockExclusive(int region) {
+        lock(region, false);
+    }
+
+    public void unlockExclusive(int region) {
+        unlock(region, false);
+    }
+
+    // Whether another process took the exclusive lock of the region since the last call, or since the
+    // lock was opened.
+    public boolean hasChangedElsewhere(int region) {
+        Region lockRegion = mRegions[region];
+        lockShared(region);
+        boolean isInterrupted = Thread.interrupted();
+        try {
+            long changeCount = readChangeCount(region);
+            synchronized (lockRegion) {
+                boolean hasChanged = changeCount != lockRegion.knownChangeCount;
+                lockRegion.knownChangeCount = changeCount;
+                return hasChanged;
+            }
+        } catch (IOException e) {
+            throw new CodePushUnknownException("Unable to read " + mLockFilePath, e);
+        } finally {
+            restoreInterruptStatus(isInterrupted);
+            unlockShared(region);
+        }
+    }
+
+    private void lock(int region, boolean shared) {
+        Region lockRegion = mRegions[region];
+        ReentrantReadWriteLock.ReadLock readLock = lockRegion.threadLock.readLock();
+        ReentrantReadWriteLock.WriteLock writeLock = lockRegion.threadLock.writeLock();
+        if (shared) {
+            readLock.lock();
+        } else {
+            writeLock.lock();
+        }
+
+        synchronized (lockRegion) {
+            if (lockRegion.holdCount == 0) {
+                try {
+                    lockRegion.fileLock = acquireFileLock(region, shared);
+                } catch (IOException e) {
+                    if (shared) {
+                        readLock.unlock();
+                    } else {
+                        writeLock.unlock();
+                    }
+
+                    throw new CodePushUnknownException("Unable to lock " + mLockFilePath, e);
+                }
+            }
+
+            lockRegion.holdCount++;
+        }
+    }
+
+    private void unlock(int region, boolean shared) {
+        Region lockRegion = mRegions[region];
+        synchronized (lockRegion) {
+            lockRegion.holdCount--;
+            if (lockRegion.holdCount == 0) {
+                boolean isInterrupted = Thread.interrupted();
+                try {
+                    if (!lockRegion.fileLock.isShared()) {
+                        long changeCount = readChangeCount(region);
+                        writeChangeCount(region, changeCount + 1);
+                        // Changes of other processes which weren't seen yet still have to be reported.
+                        if (lockRegion.knownChangeCount == changeCount) {
+                            lockRegion.knownChangeCount = changeCount + 1;
+                        }
+                    }
+                } catch (IOException e) {
+                    CodePushUtils.log(e);
+                } finally {
+                    releaseFileLock(lockRegion);
+                    restoreInterruptStatus(isInterrupted);
+                }
+            }
+        }
+
+        if (shared) {
+            lockRegion.threadLock.readLock().unlock();
+        } else {
+            lockRegion.threadLock.writeLock().unlock();
+        }
+    }
+
+    // Waits until the other processes are done with the region.
+    private FileLock acquireFileLock(int region, boolean shared) throws IOException {
+        boolean isInterrupted = Thread.interrupted();
+        try {
+            while (true) {
+                FileLock fileLock = mChannel.tryLock(region, 1, shared);
+                if (fileLock != null) {
+                    return fileLock;
+                }
+
+                try {
+                    Thread.sleep(LOCK_POLL_INTERVAL_MILLIS);
+                } catch (InterruptedException e) {
+                    isInterrupted = true;
+                }
+            }
+        } finally {
+            restoreInterruptStatus(isInterrupted);
+        }
+    }
+
+    private static void restoreInterruptStatus(boolean isInterrupted) {
+        if (isInterrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void releaseFileLock(Region lockRegion) {
+        try {
+            lockRegion.fileLock.release();
+        } catch (IOException e) {
+            CodePushUtils.log(e);
+        } finally {
+            lockRegion.fileLock = null;
+        }
+    }
+
+    private long readChangeCount(int region) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        long position = CHANGE_COUNT_OFFSET + region * 8;
+        while (buffer.hasRemaining()) {
+            if (mChannel.read(buffer, position + buffer.position()) < 0) {
+                // Nothing was written yet.
+                return 0;
+            }
+        }
+
+        buffer.flip();
+        return buffer.getLong();
+    }
+
+    private void writeChangeCount(int region, long changeCount) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        buffer.putLong(changeCount);
+        buffer.flip();
+        long position = CHANGE_COUNT_OFFSET + region * 8;
+        while (buffer.hasRemaining()) {
+            mChannel.write(buffer, position + buffer.position());
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.microsoft.codepush.react;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads single small entries of a ZIP archive on a server with HTTP range requests, using the central
+ * directory at the end of the archive to locate them, so that they can be looked at before the whole
+ * archive is downloaded. Servers which don't honour range requests are detected from the response
+ * status, nothing more than the first buffer of the response is read from them.
+ */
+public class CodePushRemoteArchive {
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int CENTRAL_DIRECTORY_ENTRY_SIGNATURE = 0x02014b50;
+    private static final int CENTRAL_DIRECTORY_ENTRY_SIZE = 46;
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+    private static final int COMPRESSION_METHOD_STORED = 0;
+    private static final int COMPRESSION_METHOD_DEFLATED = 8;
+    // Only meant for small entries, a bigger one is better read from the full download.
+    private static final int MAX_ENTRY_SIZE = 64 * 1024;
+    private static final int MAX_CENTRAL_DIRECTORY_SIZE = 4 * 1024 * 1024;
+
+    private final URL mUrl;
+
+    public CodePushRemoteArchive(String url) throws IOException {
+        mUrl = new URL(url);
+    }
+
+    // Returns the contents of the entry, or null if it isn't in the archive or can't be read this way.
+    public byte[] readEntry(String entryName) throws IOException {
+        RangeResponse tail = fetchRange("bytes=-" + (END_OF_CENTRAL_DIRECTORY_SIZE + MAX_COMMENT_SIZE));
+        if (tail == null) {
+            return null;
+        }
+
+        int endOfCentralDirectoryOffset = findEndOfCentralDirectory(tail.data);
+        if (endOfCentralDirectoryOffset < 0) {
+            return null;
+        }
+
+        ByteBuffer endOfCentralDirectory = littleEndian(tail.data, endOfCentralDirectoryOffset, END_OF_CENTRAL_DIRECTORY_SIZE);
+        int entryCount = endOfCentralDirectory.getShort(10) & 0xFFFF;
+        long centralDirectorySize = endOfCentralDirectory.getInt(12) & 0xFFFFFFFFL;
+        long centralDirectoryOffset = endOfCentralDirectory.getInt(16) & 0xFFFFFFFFL;
+        if (entryCount == 0xFFFF || centralDirectoryOffset == 0xFFFFFFFFL || centralDirectorySize > MAX_CENTRAL_DIRECTORY_SIZE) {
+            // ZIP64 archives, or a central directory too big to be worth fetching up front.
+            return null;
+        }
+
+        ByteBuffer centralDirectory;
+        long centralDirectoryOffsetInTail = centralDirectoryOffset - tail.start;
+        if (centralDirectoryOffsetInTail >= 0 && centralDirectoryOffsetInTail + centralDirectorySize <= tail.data.length) {
+            centralDirectory = littleEndian(tail.data, (int) centralDirectoryOffsetInTail, (int) centralDirectorySize);
+        } else {
+            RangeResponse centralDirectoryRange = fetchRange("bytes=" + centralDirectoryOffset + "-" + (centralDirectoryOffset + centralDirectorySize - 1));
+            if (centralDirectoryRange == null || centralDirectoryRange.data.length < centralDirectorySize) {
+                return null;
+            }
+
+            centralDirectory = littleEndian(centralDirectoryRange.data, 0, (int) centralDirectorySize);
+        }
+
+        byte[] entryNameBytes = entryName.getBytes(Charset.forName("UTF-8"));
+        int position = 0;
+        for (int i = 0; i < entryCount; i++) {
+            if (position + CENTRAL_DIRECTORY_ENTRY_SIZE > centralDirectory.limit() || centralDirectory.getInt(position) != CENTRAL_DIRECTORY_ENTRY_SIGNATURE) {
+                return null;
+            }
+
+            int compressionMethod = centralDirectory.getShort(position + 10) & 0xFFFF;
+            long compressedSize = centralDirectory.getInt(position + 20) & 0xFFFFFFFFL;
+            long uncompressedSize = centralDirectory.getInt(position + 24) & 0xFFFFFFFFL;
+            int nameLength = centralDirectory.getShort(position + 28) & 0xFFFF;
+            int extraLength = centralDirectory.getShort(position + 30) & 0xFFFF;
+            int commentLength = centralDirectory.getShort(position + 32) & 0xFFFF;
+            long localHeaderOffset = centralDirectory.getInt(position + 42) & 0xFFFFFFFFL;
+            if (position + CENTRAL_DIRECTORY_ENTRY_SIZE + nameLength > centralDirectory.limit()) {
+                return null;
+            }
+
+            if (isEntryName(centralDirectory, position + CENTRAL_DIRECTORY_ENTRY_SIZE, nameLength, entryNameBytes)) {
+                if (compressedSize > MAX_ENTRY_SIZE || uncompressedSize > MAX_ENTRY_SIZE) {
+                    return null;
+                }
+
+                return readEntryData(localHeaderOffset, compressionMethod, (int) compressedSize, (int) uncompressedSize);
+            }
+
+            position += CENTRAL_DIRECTORY_ENTRY_SIZE + nameLength + extraLength + commentLength;
+        }
+
+        return null;
+    }
+
+    private byte[] readEntryData(long localHeaderOffset, int compressionMethod, int compressedSize, int uncompressedSize) throws IOException {
+        RangeResponse localHeaderRange = fetchRange("bytes=" + localHeaderOffset + "-" + (localHeaderOffset + LOCAL_HEADER_SIZE - 1));
+        if (localHeaderRange == null || localHeaderRange.data.length < LOCAL_HEADER_SIZE) {
+            return null;
+        }
+
+        ByteBuffer localHeader = littleEndian(localHeaderRange.data, 0, LOCAL_HEADER_SIZE);
+        if (localHeader.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+            return null;
+        }
+
+        // The local header has its own name and extra field lengths, which may differ from the central directory ones.
+        long dataOffset = localHeaderOffset + LOCAL_HEADER_SIZE + (localHeader.getShort(26) & 0xFFFF) + (localHeader.getShort(28) & 0xFFFF);
+        byte[] data;
+        if (compressedSize == 0) {
+            data = new byte[0];
+        } else {
+            RangeResponse dataRange = fetchRange("bytes=" + dataOffset + "-" + (dataOffset + compressedSize - 1));
+            if (dataRange == null || dataRange.data.length < compressedSize) {
+                return null;
+            }
+
+            data = dataRange.data;
+        }
+
+        if (compressionMethod == COMPRESSION_METHOD_STORED) {
+            return data;
+        } else if (compressionMethod != COMPRESSION_METHOD_DEFLATED) {
+            return null;
+        }
+
+        Inflater inflater = new Inflater(/* nowrap */true);
+        try {
+            inflater.setInput(data, 0, compressedSize);
+            byte[] uncompressedData = new byte[uncompressedSize];
+            int inflatedSize = 0;
+            while (inflatedSize < uncompressedSize && !inflater.finished()) {
+                int numBytesInflated = inflater.inflate(uncompressedData, inflatedSize, uncompressedSize - inflatedSize);
+                if (numBytesInflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    return null;
+                }
+
+                inflatedSize += numBytesInflated;
+            }
+
+            return inflatedSize == uncompressedSize ? uncompressedData : null;
+        } catch (DataFormatException e) {
+            return null;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // Returns null if the server doesn't answer with the requested range.
+    private RangeResponse fetchRange(String range) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) mUrl.openConnection();
+        try {
+            // The entries are looked at before the download starts, which shouldn't wait on a stalled server.
+            connection.setConnectTimeout(CodePushConstants.SIGNATURE_PRE_CHECK_TIMEOUT_MILLIS);
+            connection.setReadTimeout(CodePushConstants.SIGNATURE_PRE_CHECK_TIMEOUT_MILLIS);
+            connection.setRequestProperty("Accept-Encoding", "identity");
+            connection.setRequestProperty("Range", range);
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_PARTIAL) {
+                return null;
+            }
+
+            // e.g. "bytes 1024-2047/4096"
+            String contentRange = connection.getHeaderField("Content-Range");
+            if (contentRange == null || !contentRange.startsWith("bytes ") || contentRange.indexOf('-') < 0) {
+                return null;
+            }
+
+            long start;
+            try {
+                start = Long.parseLong(contentRange.substring("bytes ".length(), contentRange.indexOf('-')).trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+
+            InputStream inputStream = connection.getInputStream();
+            try {
+                ByteArrayOutputStream data = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8 * 1024];
+                int numBytesRead;
+                while ((numBytesRead = inputStream.read(buffer)) != -1) {
+                    data.write(buffer, 0, numBytesRead);
+                    if (data.size() > MAX_CENTRAL_DIRECTORY_SIZE) {
+                        return null;
+                    }
+                }
+
+                return new RangeResponse(start, data.toByteArray());
+            } finally {
+                inputStream.close();
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static int findEndOfCentralDirectory(byte[] data) {
+        for (int offset = data.length - END_OF_CENTRAL_DIRECTORY_SIZE; offset >= 0; offset--) {
+            if (littleEndian(data, offset, 4).getInt(0) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                return offset;
+            }
+        }
+
+        return -1;
+    }
+
+    private static boolean isEntryName(ByteBuffer centralDirectory, int nameOffset, int nameLength, byte[] entryNameBytes) {
+        if (nameLength != entryNameBytes.length) {
+            return false;
+        }
+
+        for (int i = 0; i < nameLength; i++) {
+            if (centralDirectory.get(nameOffset + i) != entryNameBytes[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static ByteBuffer littleEndian(byte[] data, int offset, int length) {
+        return ByteBuffer.wrap(data, offset, length).slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static class RangeResponse {
+        final long start;
+        final byte[] data;
+
+        RangeResponse(long start, byte[] data) {
+            this.start = start;
+            this.data = data;
+        }
+    }
+}
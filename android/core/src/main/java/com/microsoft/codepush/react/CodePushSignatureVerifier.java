@@ -0,0 +1,108 @@
+package com.microsoft.codepush.react;
+
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.RSASSAVerifier;
+
+import java.security.PublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Checks update signatures against the configured public key. The key is parsed and the JWS
+ * verifier created once, on first use, rather than for every update.
+ */
+public class CodePushSignatureVerifier {
+    private final String mStringPublicKey;
+    private JWSVerifier mVerifier;
+    private ExecutorService mExecutor;
+
+    public CodePushSignatureVerifier(String stringPublicKey) {
+        mStringPublicKey = stringPublicKey;
+    }
+
+    public String getStringPublicKey() {
+        return mStringPublicKey;
+    }
+
+    public void verify(String signature, String packageHash) throws CodePushInvalidUpdateException {
+        final Map<String, Object> claims = CodePushUpdateUtils.verifyAndDecodeJWT(signature, getVerifier());
+        if (claims == null) {
+            throw new CodePushInvalidUpdateException("The update could not be verified because it was not signed by a trusted party.");
+        }
+
+        final String contentHash = (String)claims.get("contentHash");
+        if (contentHash == null) {
+            throw new CodePushInvalidUpdateException("The update could not be verified because the signature did not specify a content hash.");
+        }
+
+        if (!contentHash.equals(packageHash)) {
+            throw new CodePushInvalidUpdateException("The update contents failed the code signing check.");
+        }
+
+        CodePushUtils.log("The update contents succeeded the code signing check.");
+    }
+
+    // Verifies the signature while the caller goes on hashing the update contents.
+    public Future<Void> verifyInBackground(final String signature, final String packageHash) {
+        return getExecutor().submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                verify(signature, packageHash);
+                return null;
+            }
+        });
+    }
+
+    // Throws if a check started by verifyInBackground has already found the signature invalid, so that
+    // work whose result would be thrown away can stop early.
+    static void throwIfFoundInvalid(Future<?> signatureCheck) {
+        if (signatureCheck == null || !signatureCheck.isDone() || signatureCheck.isCancelled()) {
+            return;
+        }
+
+        try {
+            signatureCheck.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CodePushInvalidUpdateException) {
+                throw (CodePushInvalidUpdateException) e.getCause();
+            }
+        } catch (InterruptedException e) {
+            // Should not happen, the check is done.
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized JWSVerifier getVerifier() {
+        if (mVerifier == null) {
+            final PublicKey publicKey = CodePushUpdateUtils.parsePublicKey(mStringPublicKey);
+            if (publicKey == null) {
+                throw new CodePushInvalidUpdateException("The update could not be verified because no public key was found.");
+            }
+
+            mVerifier = new RSASSAVerifier((RSAPublicKey) publicKey);
+        }
+
+        return mVerifier;
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (mExecutor == null) {
+            mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "CodePushSignatureVerifier");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        return mExecutor;
+    }
+}
@@ -0,0 +1,160 @@
+package com.microsoft.codepush.react;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps track of what is stored in the CodePush folder and removes what is no longer needed: packages
+ * left behind by crashed or abandoned downloads, interrupted unzips, stale download files and test
+ * packages. Packages which aren't the current or previous one, retained ones included, are evicted,
+ * least recently used first, as long as the folder exceeds the quota.
+ */
+public class CodePushStorageManager {
+    // Packages downloaded but never installed are kept for a while, in case they are still going to be.
+    private static final long UNREFERENCED_PACKAGE_MAX_AGE_MILLIS = 7 * 24 * 60 * 60 * 1000L;
+
+    private final CodePushUpdateManager mUpdateManager;
+    private long mQuotaBytes = 0;
+
+    public CodePushStorageManager(CodePushUpdateManager updateManager) {
+        mUpdateManager = updateManager;
+    }
+
+    public long getQuotaBytes() {
+        return mQuotaBytes;
+    }
+
+    // Maximum number of bytes the CodePush folder may take up, 0 for no limit. The current and
+    // previous packages are never evicted, so the folder can still exceed a quota which is too low.
+    public void setQuotaBytes(long quotaBytes) {
+        if (quotaBytes < 0) {
+            throw new IllegalArgumentException("Invalid storage quota: " + quotaBytes);
+        }
+
+        mQuotaBytes = quotaBytes;
+    }
+
+    // Doesn't wait for downloads in progress, the size of the package being staged may still change.
+    public JSONObject getStorageStats() {
+        List<StorageEntry> entries = getStorageEntries();
+        long totalBytes = 0;
+        JSONArray entriesJSONArray = new JSONArray();
+        for (StorageEntry entry : entries) {
+            totalBytes += entry.size;
+            JSONObject entryJSONObject = new JSONObject();
+            CodePushUtils.setJSONValueForKey(entryJSONObject, "name", entry.file.getName());
+            CodePushUtils.setJSONValueForKey(entryJSONObject, "size", entry.size);
+            CodePushUtils.setJSONValueForKey(entryJSONObject, "lastUsedTime", entry.lastUsedTime);
+            CodePushUtils.setJSONValueForKey(entryJSONObject, "isPackage", entry.isPackage);
+            entriesJSONArray.put(entryJSONObject);
+        }
+
+        JSONObject stats = new JSONObject();
+        CodePushUtils.setJSONValueForKey(stats, "totalBytes", totalBytes);
+        CodePushUtils.setJSONValueForKey(stats, "quotaBytes", mQuotaBytes);
+        CodePushUtils.setJSONValueForKey(stats, "currentPackageHash", mUpdateManager.getCurrentPackageHash());
+        CodePushUtils.setJSONValueForKey(stats, "previousPackageHash", mUpdateManager.getPreviousPackageHash());
+        CodePushUtils.setJSONValueForKey(stats, "entries", entriesJSONArray);
+        return stats;
+    }
+
+    // Removes everything which isn't referenced by the current or previous package, or one of the
+    // given packages, and then evicts unreferenced packages until the folder fits the quota.
+    public void collectGarbage(String... retainedPackageHashes) {
+        // Downloads and installs hold the same locks, so nothing is half written while this runs, even
+        // by another process.
+        mUpdateManager.getProcessLock().lockExclusive(CodePushProcessLock.STAGING);
+        mUpdateManager.getProcessLock().lockExclusive(CodePushProcessLock.STATE);
+        try {
+            Set<String> referencedPackageHashes = new HashSet<>(Arrays.asList(retainedPackageHashes));
+            referencedPackageHashes.add(mUpdateManager.getCurrentPackageHash());
+            referencedPackageHashes.add(mUpdateManager.getPreviousPackageHash());
+
+            // Packages kept for rollbackTo don't expire, but give way to the quota like any other.
+            Set<String> rollbackPackageHashes = new HashSet<>(mUpdateManager.getRetainedPackageHashes());
+
+            long now = CodePushPlatform.getClock().currentTimeMillis();
+            long totalBytes = 0;
+            List<StorageEntry> evictableEntries = new ArrayList<>();
+            for (StorageEntry entry : getStorageEntries()) {
+                if (entry.file.getName().equals(CodePushConstants.STATUS_FILE) || referencedPackageHashes.contains(entry.file.getName())) {
+                    totalBytes += entry.size;
+                } else if (!entry.isPackage || (now - entry.lastUsedTime > UNREFERENCED_PACKAGE_MAX_AGE_MILLIS && !rollbackPackageHashes.contains(entry.file.getName()))) {
+                    CodePushUtils.log("Removing unused CodePush data " + entry.file.getName() + " (" + entry.size + " bytes)");
+                    mUpdateManager.getTrash().moveToTrash(entry.file.getAbsolutePath());
+                } else {
+                    totalBytes += entry.size;
+                    evictableEntries.add(entry);
+                }
+            }
+
+            if (mQuotaBytes == 0 || totalBytes <= mQuotaBytes) {
+                return;
+            }
+
+            Collections.sort(evictableEntries, new Comparator<StorageEntry>() {
+                @Override
+                public int compare(StorageEntry entry1, StorageEntry entry2) {
+                    return Long.compare(entry1.lastUsedTime, entry2.lastUsedTime);
+                }
+            });
+
+            for (StorageEntry entry : evictableEntries) {
+                if (totalBytes <= mQuotaBytes) {
+                    break;
+                }
+
+                CodePushUtils.log("Evicting package " + entry.file.getName() + " to stay within the storage quota.");
+                mUpdateManager.getTrash().moveToTrash(entry.file.getAbsolutePath());
+                totalBytes -= entry.size;
+            }
+
+            if (totalBytes > mQuotaBytes) {
+                CodePushUtils.log("The current and previous packages alone take up " + totalBytes + " bytes, more than the storage quota.");
+            }
+        } finally {
+            mUpdateManager.getProcessLock().unlockExclusive(CodePushProcessLock.STATE);
+            mUpdateManager.getProcessLock().unlockExclusive(CodePushProcessLock.STAGING);
+        }
+    }
+
+    private List<StorageEntry> getStorageEntries() {
+        List<StorageEntry> entries = new ArrayList<>();
+        File[] files = new File(mUpdateManager.getCodePushPath()).listFiles();
+        if (files == null) {
+            return entries;
+        }
+
+        for (File file : files) {
+            entries.add(new StorageEntry(file));
+        }
+
+        return entries;
+    }
+
+    private static class StorageEntry {
+        final File file;
+        final long size;
+        final long lastUsedTime;
+        // Only package folders with their metadata written are complete, anything else is left over.
+        final boolean isPackage;
+
+        StorageEntry(File file) {
+            this.file = file;
+            this.size = FileUtils.getSize(file);
+            File packageMetadataFile = new File(file, CodePushConstants.PACKAGE_FILE_NAME);
+            this.isPackage = file.isDirectory() && packageMetadataFile.exists();
+            // The metadata is rewritten whenever a downloaded package gets picked up again.
+            this.lastUsedTime = isPackage ? Math.max(file.lastModified(), packageMetadataFile.lastModified()) : file.lastModified();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.microsoft.codepush.react;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Deletes folders without making the caller wait. A folder is renamed into the trash folder, which
+ * lives on the same file system so the rename takes constant time, and a background thread deletes
+ * the trash contents at a limited rate. Anything still in the trash when the process dies is deleted
+ * in the next session.
+ */
+public class CodePushTrash {
+    // Deleting a package with thousands of assets at full speed would compete with the app for I/O.
+    private static final int DELETIONS_PER_BATCH = 64;
+    private static final long BATCH_INTERVAL_MILLIS = 100;
+
+    private final File mTrashFolder;
+    private final ExecutorService mExecutor;
+    private boolean mIsEmptying = false;
+    private long mTrashedCount = 0;
+
+    public CodePushTrash(String trashFolderPath) {
+        mTrashFolder = new File(trashFolderPath);
+        mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "CodePushTrash");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        // Leftovers of an earlier session.
+        empty();
+    }
+
+    public void moveToTrash(String path) {
+        if (path == null) {
+            CodePushUtils.log("moveToTrash attempted with null path");
+            return;
+        }
+
+        File file = new File(path);
+        if (!file.exists()) {
+            return;
+        }
+
+        mTrashFolder.mkdirs();
+        File trashedFile;
+        synchronized (this) {
+            trashedFile = new File(mTrashFolder, System.currentTimeMillis() + "-" + (mTrashedCount++) + "-" + file.getName());
+        }
+
+        if (!file.renameTo(trashedFile)) {
+            CodePushUtils.log("Unable to move " + path + " to the trash, deleting it right away.");
+            FileUtils.deleteFileOrFolderSilently(file);
+            return;
+        }
+
+        empty();
+    }
+
+    private synchronized void empty() {
+        if (mIsEmptying) {
+            return;
+        }
+
+        mIsEmptying = true;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
+                try {
+                    while (true) {
+                        File[] trashedFiles;
+                        synchronized (CodePushTrash.this) {
+                            trashedFiles = mTrashFolder.listFiles();
+                            if (trashedFiles == null || trashedFiles.length == 0) {
+                                mIsEmptying = false;
+                                return;
+                            }
+                        }
+
+                        int deletionCount = 0;
+                        boolean hasDeletedAny = false;
+                        for (File trashedFile : trashedFiles) {
+                            deletionCount = delete(trashedFile, deletionCount);
+                            hasDeletedAny |= !trashedFile.exists();
+                        }
+
+                        if (!hasDeletedAny) {
+                            // Don't spin on files which can't be deleted, the next session tries again.
+                            synchronized (CodePushTrash.this) {
+                                mIsEmptying = false;
+                                return;
+                            }
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    synchronized (CodePushTrash.this) {
+                        mIsEmptying = false;
+                    }
+
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+    }
+
+    // Deletes the file or folder, pausing after every batch of deletions. Returns the number of
+    // deletions done in the current batch.
+    private int delete(File file, int deletionCount) throws InterruptedException {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    deletionCount = delete(child, deletionCount);
+                }
+            }
+        }
+
+        if (!file.delete()) {
+            CodePushUtils.log("Error deleting file " + file.getName());
+        }
+
+        if (++deletionCount == DELETIONS_PER_BATCH) {
+            Thread.sleep(BATCH_INTERVAL_MILLIS);
+            return 0;
+        }
+
+        return deletionCount;
+    }
+}
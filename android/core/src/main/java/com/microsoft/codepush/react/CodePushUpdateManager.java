@@ -0,0 +1,873 @@
+package com.microsoft.codepush.react;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.ZipFile;
+
+public class CodePushUpdateManager {
+    // The current and previous packages, which is all that was ever kept before retention was configurable.
+    private static final int DEFAULT_RETAINED_PACKAGE_COUNT = 2;
+
+    private static boolean sIsUsingTestConfiguration = false;
+
+    private String mDocumentsDirectory;
+    private CodePushBinaryContents mBinaryContents;
+    private int mRetainedPackageCount = DEFAULT_RETAINED_PACKAGE_COUNT;
+    private CodePushTrash mTrash;
+    private CodePushProcessLock mProcessLock;
+    // Background prefetches and JS initiated downloads share the download and unzip locations. Not the
+    // manager's monitor, which installs and rollbacks shouldn't wait on for the length of a download.
+    private final Object mStagingLock = new Object();
+    private boolean mIsSignaturePreCheckEnabled = false;
+
+    public CodePushUpdateManager(String documentsDirectory) {
+        this(documentsDirectory, null);
+    }
+
+    public CodePushUpdateManager(String documentsDirectory, CodePushBinaryContents binaryContents) {
+        mDocumentsDirectory = documentsDirectory;
+        mBinaryContents = binaryContents;
+        // Next to the CodePush folder, so that clearing updates can move the whole folder into it.
+        mTrash = new CodePushTrash(CodePushUtils.appendPathComponent(documentsDirectory, CodePushConstants.TRASH_FOLDER_NAME));
+        // Also next to the CodePush folder, so that it outlives clearing updates.
+        mProcessLock = CodePushProcessLock.forFile(CodePushUtils.appendPathComponent(documentsDirectory, CodePushConstants.PROCESS_LOCK_FILE_NAME));
+    }
+
+    private String getDownloadFilePath() {
+        return CodePushUtils.appendPathComponent(getCodePushPath(), CodePushConstants.DOWNLOAD_FILE_NAME);
+    }
+
+    private String getUnzippedFolderPath() {
+        return CodePushUtils.appendPathComponent(getCodePushPath(), CodePushConstants.UNZIPPED_FOLDER_NAME);
+    }
+
+    private String getDocumentsDirectory() {
+        return mDocumentsDirectory;
+    }
+
+    // Test packages are kept in a separate folder, see CodePush.setUsingTestConfiguration.
+    static boolean isUsingTestConfiguration() {
+        return sIsUsingTestConfiguration;
+    }
+
+    static void setUsingTestConfiguration(boolean isUsingTestConfiguration) {
+        sIsUsingTestConfiguration = isUsingTestConfiguration;
+    }
+
+    CodePushTrash getTrash() {
+        return mTrash;
+    }
+
+    // Lets other processes of the app use the same CodePush folder, see CodePushProcessLock.
+    public CodePushProcessLock getProcessLock() {
+        return mProcessLock;
+    }
+
+    String getCodePushPath() {
+        String codePushPath = CodePushUtils.appendPathComponent(getDocumentsDirectory(), CodePushConstants.CODE_PUSH_FOLDER_PREFIX);
+        if (sIsUsingTestConfiguration) {
+            codePushPath = CodePushUtils.appendPathComponent(codePushPath, "TestPackages");
+        }
+
+        return codePushPath;
+    }
+
+    private String getStatusFilePath() {
+        return CodePushUtils.appendPathComponent(getCodePushPath(), CodePushConstants.STATUS_FILE);
+    }
+
+    public JSONObject getCurrentPackageInfo() {
+        String statusFilePath = getStatusFilePath();
+        mProcessLock.lockShared(CodePushProcessLock.STATE);
+        try {
+            if (!FileUtils.fileAtPathExists(statusFilePath)) {
+                return new JSONObject();
+            }
+
+            return CodePushUtils.getJsonObjectFromFile(statusFilePath);
+        } catch (IOException e) {
+            // Should not happen.
+            throw new CodePushUnknownException("Error getting current package info", e);
+        } finally {
+            mProcessLock.unlockShared(CodePushProcessLock.STATE);
+        }
+    }
+
+    // Callers reading the info they update have to hold the exclusive STATE lock for both.
+    public void updateCurrentPackageInfo(JSONObject packageInfo) {
+        mProcessLock.lockExclusive(CodePushProcessLock.STATE);
+        try {
+            CodePushUtils.writeJsonToFile(packageInfo, getStatusFilePath());
+        } catch (IOException e) {
+            // Should not happen.
+            throw new CodePushUnknownException("Error updating current package info", e);
+        } finally {
+            mProcessLock.unlockExclusive(CodePushProcessLock.STATE);
+        }
+    }
+
+    public String getCurrentPackageFolderPath() {
+        JSONObject info = getCurrentPackageInfo();
+        String packageHash = info.optString(CodePushConstants.CURRENT_PACKAGE_KEY, null);
+        if (packageHash == null) {
+            return null;
+        }
+
+        return getPackageFolderPath(packageHash);
+    }
+
+    public String getCurrentPackageBundlePath(String bundleFileName) {
+        String packageFolder = getCurrentPackageFolderPath();
+        if (packageFolder == null) {
+            return null;
+        }
+
+        JSONObject currentPackage = getCurrentPackage();
+        if (currentPackage == null) {
+            return null;
+        }
+
+        String relativeBundlePath = currentPackage.optString(CodePushConstants.RELATIVE_BUNDLE_PATH_KEY, null);
+        if (relativeBundlePath == null) {
+            return CodePushUtils.appendPathComponent(packageFolder, bundleFileName);
+        } else {
+            return CodePushUtils.appendPathComponent(packageFolder, relativeBundlePath);
+        }
+    }
+
+    public boolean isSignaturePreCheckEnabled() {
+        return mIsSignaturePreCheckEnabled;
+    }
+
+    // Checks the signature of signed updates before downloading them, from a detached signature if the
+    // update has one, or else from the archive itself with range requests.
+    public void setSignaturePreCheckEnabled(boolean isSignaturePreCheckEnabled) {
+        mIsSignaturePreCheckEnabled = isSignaturePreCheckEnabled;
+    }
+
+    public int getRetainedPackageCount() {
+        return mRetainedPackageCount;
+    }
+
+    // Number of installed packages, the current one included, kept on disk so that rollbackTo can
+    // switch back to them without downloading anything.
+    public synchronized void setRetainedPackageCount(int retainedPackageCount) {
+        if (retainedPackageCount < DEFAULT_RETAINED_PACKAGE_COUNT) {
+            throw new IllegalArgumentException("At least " + DEFAULT_RETAINED_PACKAGE_COUNT + " packages have to be retained, got " + retainedPackageCount);
+        }
+
+        mProcessLock.lockExclusive(CodePushProcessLock.STATE);
+        try {
+            mRetainedPackageCount = retainedPackageCount;
+            JSONObject info = getCurrentPackageInfo();
+            if (pruneRetainedPackages(info)) {
+                updateCurrentPackageInfo(info);
+            }
+        } finally {
+            mProcessLock.unlockExclusive(CodePushProcessLock.STATE);
+        }
+    }
+
+    // Hashes of the retained packages, most recently used first.
+    public List<String> getRetainedPackageHashes() {
+        List<String> retainedPackageHashes = new ArrayList<>();
+        JSONArray retainedPackages = getCurrentPackageInfo().optJSONArray(CodePushConstants.RETAINED_PACKAGES_KEY);
+        if (retainedPackages == null) {
+            return retainedPackageHashes;
+        }
+
+        for (int i = 0; i < retainedPackages.length(); i++) {
+            JSONObject retainedPackage = retainedPackages.optJSONObject(i);
+            if (retainedPackage != null) {
+                retainedPackageHashes.add(retainedPackage.optString(CodePushConstants.PACKAGE_HASH_KEY));
+            }
+        }
+
+        return retainedPackageHashes;
+    }
+
+    // Metadata of the retained packages which are still on disk, most recently used first.
+    public JSONArray getRetainedPackages() {
+        JSONArray retainedPackages = new JSONArray();
+        for (String packageHash : getRetainedPackageHashes()) {
+            JSONObject retainedPackage = getPackage(packageHash);
+            if (retainedPackage != null) {
+                retainedPackages.put(retainedPackage);
+            }
+        }
+
+        return retainedPackages;
+    }
+
+    public String getPackageFolderPath(String packageHash) {
+        return CodePushUtils.appendPathComponent(getCodePushPath(), packageHash);
+    }
+
+    public String getCurrentPackageHash() {
+        JSONObject info = getCurrentPackageInfo();
+        return info.optString(CodePushConstants.CURRENT_PACKAGE_KEY, null);
+    }
+
+    public String getPreviousPackageHash() {
+        JSONObject info = getCurrentPackageInfo();
+        return info.optString(CodePushConstants.PREVIOUS_PACKAGE_KEY, null);
+    }
+
+    public JSONObject getCurrentPackage() {
+        String packageHash = getCurrentPackageHash();
+        if (packageHash == null) {
+            return null;
+        }
+
+        return getPackage(packageHash);
+    }
+
+    public JSONObject getPreviousPackage() {
+        String packageHash = getPreviousPackageHash();
+        if (packageHash == null) {
+            return null;
+        }
+
+        return getPackage(packageHash);
+    }
+
+    public JSONObject getPackage(String packageHash) {
+        String folderPath = getPackageFolderPath(packageHash);
+        String packageFilePath = CodePushUtils.appendPathComponent(folderPath, CodePushConstants.PACKAGE_FILE_NAME);
+        try {
+            return CodePushUtils.getJsonObjectFromFile(packageFilePath);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // Adopts a package that was already downloaded completely, e.g. prefetched in the background,
+    // recording the given metadata for it. Returns false if the package still has to be downloaded.
+    public boolean reuseDownloadedPackage(JSONObject updatePackage) throws IOException {
+        synchronized (mStagingLock) {
+            mProcessLock.lockExclusive(CodePushProcessLock.STAGING);
+            try {
+                String packageHash = updatePackage.optString(CodePushConstants.PACKAGE_HASH_KEY, null);
+                if (packageHash == null || packageHash.equals(getCurrentPackageHash())) {
+                    return false;
+                }
+
+                // The metadata file is written last, so its presence means the download completed.
+                JSONObject downloadedPackage = getPackage(packageHash);
+                if (downloadedPackage == null) {
+                    return false;
+                }
+
+                String relativeBundlePath = downloadedPackage.optString(CodePushConstants.RELATIVE_BUNDLE_PATH_KEY, null);
+                if (relativeBundlePath != null) {
+                    CodePushUtils.setJSONValueForKey(updatePackage, CodePushConstants.RELATIVE_BUNDLE_PATH_KEY, relativeBundlePath);
+                }
+
+                JSONObject bundleFingerprint = downloadedPackage.optJSONObject(CodePushConstants.BUNDLE_FINGERPRINT_KEY);
+                if (bundleFingerprint != null) {
+                    CodePushUtils.setJSONValueForKey(updatePackage, CodePushConstants.BUNDLE_FINGERPRINT_KEY, bundleFingerprint);
+                }
+
+                CodePushUtils.writeJsonToFile(updatePackage, CodePushUtils.appendPathComponent(getPackageFolderPath(packageHash), CodePushConstants.PACKAGE_FILE_NAME));
+                return true;
+            } finally {
+                mProcessLock.unlockExclusive(CodePushProcessLock.STAGING);
+            }
+        }
+    }
+
+    // Rejects a wrongly signed update before its archive is downloaded. Anything which keeps the signature
+    // from being fetched is only logged, the signature is then checked after the download as usual.
+    private void preCheckSignature(JSONObject updatePackage, String downloadUrlString, String packageHash,
+                                   CodePushSignatureVerifier signatureVerifier) throws CodePushInvalidUpdateException {
+        String signature = null;
+        try {
+            String signatureUrlString = updatePackage.optString(CodePushConstants.SIGNATURE_URL_KEY, null);
+            if (signatureUrlString != null) {
+                HttpURLConnection connection = (HttpURLConnection) new URL(signatureUrlString).openConnection();
+                try {
+                    connection.setConnectTimeout(CodePushConstants.SIGNATURE_PRE_CHECK_TIMEOUT_MILLIS);
+                    connection.setReadTimeout(CodePushConstants.SIGNATURE_PRE_CHECK_TIMEOUT_MILLIS);
+                    // Anything but the signature itself would be rejected as an invalid signature.
+                    if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                        throw new IOException("Unexpected response code " + connection.getResponseCode());
+                    }
+
+                    signature = CodePushUtils.getStringFromInputStream(connection.getInputStream());
+                } finally {
+                    connection.disconnect();
+                }
+            } else if (downloadUrlString != null) {
+                byte[] signatureData = new CodePushRemoteArchive(downloadUrlString).readEntry(
+                        CodePushConstants.CODE_PUSH_FOLDER_PREFIX + "/" + CodePushConstants.BUNDLE_JWT_FILE);
+                if (signatureData != null) {
+                    signature = new String(signatureData, "UTF-8").trim();
+                }
+            }
+        } catch (IOException e) {
+            CodePushUtils.log("Unable to fetch the update signature before downloading the update: " + e.getMessage());
+            return;
+        }
+
+        if (signature == null) {
+            CodePushUtils.log("The update signature can't be checked before downloading the update.");
+            return;
+        }
+
+        signatureVerifier.verify(signature, packageHash);
+    }
+
+    // The STAGING lock keeps downloads of other processes out of the download and unzip locations.
+    public void downloadPackage(JSONObject updatePackage, String expectedBundleFileName,
+                                DownloadProgressCallback progressCallback,
+                                CodePushSignatureVerifier signatureVerifier) throws IOException {
+        synchronized (mStagingLock) {
+            mProcessLock.lockExclusive(CodePushProcessLock.STAGING);
+            try {
+                stagePackage(updatePackage, expectedBundleFileName, progressCallback, signatureVerifier);
+            } finally {
+                mProcessLock.unlockExclusive(CodePushProcessLock.STAGING);
+            }
+        }
+    }
+
+    // Downloads, extracts and verifies the package into its folder, with the STAGING lock held.
+    private void stagePackage(JSONObject updatePackage, String expectedBundleFileName,
+                              DownloadProgressCallback progressCallback,
+                              CodePushSignatureVerifier signatureVerifier) throws IOException {
+        String newUpdateHash = updatePackage.optString(CodePushConstants.PACKAGE_HASH_KEY, null);
+        String newUpdateFolderPath = getPackageFolderPath(newUpdateHash);
+        String newUpdateMetadataPath = CodePushUtils.appendPathComponent(newUpdateFolderPath, CodePushConstants.PACKAGE_FILE_NAME);
+        if (FileUtils.fileAtPathExists(newUpdateFolderPath)) {
+            // This removes any stale data in newPackageFolderPath that could have been left
+            // uncleared due to a crash or error during the download or install process.
+            mTrash.moveToTrash(newUpdateFolderPath);
+        }
+
+        String downloadUrlString = updatePackage.optString(CodePushConstants.DOWNLOAD_URL_KEY, null);
+        if (signatureVerifier != null && mIsSignaturePreCheckEnabled) {
+            preCheckSignature(updatePackage, downloadUrlString, newUpdateHash, signatureVerifier);
+        }
+
+        HttpURLConnection connection = null;
+        BufferedInputStream bin = null;
+        FileOutputStream fos = null;
+        BufferedOutputStream bout = null;
+        File downloadFile = null;
+        boolean isZip = false;
+
+        // Download the file while checking if it is a zip and notifying client of progress.
+        try {
+            URL downloadUrl = new URL(downloadUrlString);
+            connection = (HttpURLConnection) (downloadUrl.openConnection());
+            connection.setRequestProperty("Accept-Encoding", "identity");
+            bin = new BufferedInputStream(connection.getInputStream());
+
+            long totalBytes = connection.getContentLength();
+            long receivedBytes = 0;
+
+            File downloadFolder = new File(getCodePushPath());
+            downloadFolder.mkdirs();
+            downloadFile = new File(downloadFolder, CodePushConstants.DOWNLOAD_FILE_NAME);
+            // Fail before downloading anything if the package can't even be stored.
+            ensureAvailableSpace(downloadFolder, totalBytes);
+            fos = new FileOutputStream(downloadFile);
+            if (totalBytes > 0 && !FileUtils.preallocate(fos, totalBytes)) {
+                throw new CodePushInsufficientStorageException(totalBytes, downloadFolder.getUsableSpace());
+            }
+
+            bout = new BufferedOutputStream(fos, CodePushConstants.DOWNLOAD_BUFFER_SIZE);
+            byte[] data = new byte[CodePushConstants.DOWNLOAD_BUFFER_SIZE];
+            byte[] header = new byte[4];
+
+            int numBytesRead = 0;
+            while ((numBytesRead = bin.read(data, 0, CodePushConstants.DOWNLOAD_BUFFER_SIZE)) >= 0) {
+                if (receivedBytes < 4) {
+                    for (int i = 0; i < numBytesRead; i++) {
+                        int headerOffset = (int) (receivedBytes) + i;
+                        if (headerOffset >= 4) {
+                            break;
+                        }
+
+                        header[headerOffset] = data[i];
+                    }
+                }
+
+                receivedBytes += numBytesRead;
+                bout.write(data, 0, numBytesRead);
+                progressCallback.call(new DownloadProgress(totalBytes, receivedBytes));
+            }
+
+            if (totalBytes != receivedBytes) {
+                throw new CodePushUnknownException("Received " + receivedBytes + " bytes, expected " + totalBytes);
+            }
+
+            isZip = ByteBuffer.wrap(header).getInt() == 0x504b0304;
+        } catch (MalformedURLException e) {
+            throw new CodePushMalformedDataException(downloadUrlString, e);
+        } finally {
+            try {
+                if (bout != null) bout.close();
+                if (fos != null) fos.close();
+                if (bin != null) bin.close();
+                if (connection != null) connection.disconnect();
+            } catch (IOException e) {
+                throw new CodePushUnknownException("Error closing IO resources.", e);
+            }
+        }
+
+        JSONObject verifiedFileManifest = null;
+        if (isZip) {
+            try {
+                ensureAvailableSpace(downloadFile.getParentFile(), getRequiredSpaceForInstall(downloadFile));
+            } catch (CodePushInsufficientStorageException e) {
+                FileUtils.deleteFileOrFolderSilently(downloadFile);
+                throw e;
+            }
+
+            // Unzip the downloaded file and then delete the zip
+            String unzippedFolderPath = getUnzippedFolderPath();
+            // The central directory tells where the bundle is, without listing the extracted folders.
+            String relativeBundlePath = FileUtils.unzipFile(downloadFile, unzippedFolderPath, expectedBundleFileName);
+            FileUtils.deleteFileOrFolderSilently(downloadFile);
+
+            // Check the signature shipped in the archive while the contents are merged and hashed, a bad one
+            // stops the hashing early.
+            Future<Void> archivedSignatureCheck = null;
+            if (signatureVerifier != null && FileUtils.fileAtPathExists(CodePushUpdateUtils.getSignatureFilePath(unzippedFolderPath))) {
+                archivedSignatureCheck = signatureVerifier.verifyInBackground(
+                        CodePushUpdateUtils.getSignature(unzippedFolderPath), newUpdateHash);
+            }
+
+            // Merge contents with current update based on the manifest
+            String diffManifestFilePath = CodePushUtils.appendPathComponent(unzippedFolderPath,
+                    CodePushConstants.DIFF_MANIFEST_FILE_NAME);
+            boolean isDiffUpdate = FileUtils.fileAtPathExists(diffManifestFilePath);
+            // Hashes of files carried over unchanged, which were already verified along with their package.
+            Map<String, String> knownFileHashes = null;
+            if (isDiffUpdate) {
+                // Keeps another process from installing a package and trashing the one the diff applies to.
+                mProcessLock.lockShared(CodePushProcessLock.STATE);
+                String carriedOverBundlePath;
+                try {
+                    String currentPackageFolderPath = getCurrentPackageFolderPath();
+                    // An unchanged bundle is not in the diff, it is carried over from the contents the diff applies to.
+                    if (currentPackageFolderPath == null && mBinaryContents != null) {
+                        knownFileHashes = CodePushUpdateUtils.copyNecessaryFilesFromBinary(diffManifestFilePath, mBinaryContents, newUpdateFolderPath);
+                        carriedOverBundlePath = CodePushUtils.appendPathComponent(CodePushConstants.CODE_PUSH_FOLDER_PREFIX, expectedBundleFileName);
+                    } else {
+                        knownFileHashes = CodePushUpdateUtils.getVerifiedFileHashes(currentPackageFolderPath);
+                        CodePushUpdateUtils.copyNecessaryFilesFromCurrentPackage(diffManifestFilePath, currentPackageFolderPath, newUpdateFolderPath);
+                        JSONObject currentPackage = getCurrentPackage();
+                        carriedOverBundlePath = currentPackage == null ? null : currentPackage.optString(CodePushConstants.RELATIVE_BUNDLE_PATH_KEY, null);
+                    }
+                } finally {
+                    mProcessLock.unlockShared(CodePushProcessLock.STATE);
+                }
+
+                if (relativeBundlePath == null) {
+                    relativeBundlePath = carriedOverBundlePath;
+                }
+                File diffManifestFile = new File(diffManifestFilePath);
+                diffManifestFile.delete();
+
+                Set<String> diffFilePaths = new HashSet<>();
+                CodePushUpdateUtils.addRelativeFilePaths(unzippedFolderPath, "", diffFilePaths);
+                knownFileHashes.keySet().removeAll(diffFilePaths);
+            }
+
+            FileUtils.copyDirectoryContents(unzippedFolderPath, newUpdateFolderPath);
+            mTrash.moveToTrash(unzippedFolderPath);
+
+            // For zip updates, we need to find the relative path to the jsBundle and save it in the
+            // metadata so that we can find and run it easily the next time.
+            if (relativeBundlePath == null || !FileUtils.fileAtPathExists(CodePushUtils.appendPathComponent(newUpdateFolderPath, relativeBundlePath))) {
+                // The carried over bundle may have moved, fall back to searching for it.
+                relativeBundlePath = CodePushUpdateUtils.findJSBundleInUpdateContents(newUpdateFolderPath, expectedBundleFileName);
+            }
+
+            if (relativeBundlePath == null) {
+                throw new CodePushInvalidUpdateException("Update is invalid - A JS bundle file named \"" + expectedBundleFileName + "\" could not be found within the downloaded contents. Please check that you are releasing your CodePush updates using the exact same JS bundle file name that was shipped with your app's binary.");
+            } else {
+                if (FileUtils.fileAtPathExists(newUpdateMetadataPath)) {
+                    File metadataFileFromOldUpdate = new File(newUpdateMetadataPath);
+                    metadataFileFromOldUpdate.delete();
+                }
+
+                File fileManifestFromOldUpdate = new File(newUpdateFolderPath, CodePushConstants.PACKAGE_MANIFEST_FILE_NAME);
+                if (fileManifestFromOldUpdate.exists()) {
+                    fileManifestFromOldUpdate.delete();
+                }
+
+                if (isDiffUpdate) {
+                    CodePushUtils.log("Applying diff update.");
+                } else {
+                    CodePushUtils.log("Applying full update.");
+                }
+
+                boolean isSignatureVerificationEnabled = (signatureVerifier != null);
+
+                String signaturePath = CodePushUpdateUtils.getSignatureFilePath(newUpdateFolderPath);
+                boolean isSignatureAppearedInBundle = FileUtils.fileAtPathExists(signaturePath);
+
+                if (isSignatureVerificationEnabled) {
+                    if (isSignatureAppearedInBundle) {
+                        verifiedFileManifest = CodePushUpdateUtils.verifyFolderHash(newUpdateFolderPath, newUpdateHash,
+                                knownFileHashes, archivedSignatureCheck);
+                        if (archivedSignatureCheck != null) {
+                            awaitSignatureCheck(archivedSignatureCheck);
+                        } else {
+                            // The archive had no signature of its own, check the one the package ended up with.
+                            CodePushUpdateUtils.verifyUpdateSignature(newUpdateFolderPath, newUpdateHash, signatureVerifier);
+                        }
+                    } else {
+                        throw new CodePushInvalidUpdateException(
+                                "Error! Public key was provided but there is no JWT signature within app bundle to verify. " +
+                                "Possible reasons, why that might happen: \n" +
+                                "1. You've been released CodePush bundle update using version of CodePush CLI that is not support code signing.\n" +
+                                "2. You've been released CodePush bundle update without providing --privateKeyPath option."
+                        );
+                    }
+                } else {
+                    if (isSignatureAppearedInBundle) {
+                        CodePushUtils.log(
+                                "Warning! JWT signature exists in codepush update but code integrity check couldn't be performed because there is no public key configured. " +
+                                "Please ensure that public key is properly configured within your application."
+                        );
+                        verifiedFileManifest = CodePushUpdateUtils.verifyFolderHash(newUpdateFolderPath, newUpdateHash, knownFileHashes);
+                    } else {
+                        if (isDiffUpdate) {
+                            verifiedFileManifest = CodePushUpdateUtils.verifyFolderHash(newUpdateFolderPath, newUpdateHash, knownFileHashes);
+                        }
+                    }
+                }
+
+                CodePushUtils.setJSONValueForKey(updatePackage, CodePushConstants.RELATIVE_BUNDLE_PATH_KEY, relativeBundlePath);
+            }
+        } else {
+            // File is a jsbundle, move it to a folder with the packageHash as its name
+            FileUtils.moveFile(downloadFile, newUpdateFolderPath, expectedBundleFileName);
+        }
+
+        String relativeBundlePath = updatePackage.optString(CodePushConstants.RELATIVE_BUNDLE_PATH_KEY, expectedBundleFileName);
+        String bundlePath = CodePushUtils.appendPathComponent(newUpdateFolderPath, relativeBundlePath);
+        CodePushUtils.setJSONValueForKey(updatePackage, CodePushConstants.BUNDLE_FINGERPRINT_KEY, CodePushUpdateUtils.computeBundleFingerprint(bundlePath));
+
+        // Save metadata to the folder.
+        CodePushUtils.writeJsonToFile(updatePackage, newUpdateMetadataPath);
+        if (verifiedFileManifest != null) {
+            // Lets diff updates based on this package skip hashing the files they carry over.
+            CodePushUpdateUtils.writeFileManifest(verifiedFileManifest, newUpdateFolderPath);
+        }
+    }
+
+    // Throws if the signature was found to be invalid.
+    private void awaitSignatureCheck(Future<Void> signatureCheck) {
+        try {
+            signatureCheck.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CodePushInvalidUpdateException) {
+                throw (CodePushInvalidUpdateException) e.getCause();
+            }
+
+            throw new CodePushUnknownException("Unable to verify the update signature.", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CodePushUnknownException("Interrupted while verifying the update signature.", e);
+        }
+    }
+
+    // The contents are extracted next to the zip, then copied into the package folder, so at the peak
+    // they are on disk twice. Diff updates also copy the contents they apply to into the new package
+    // first, the current package or, when none is installed, the binary's.
+    private long getRequiredSpaceForInstall(File zipFile) throws IOException {
+        long requiredBytes = 2 * FileUtils.getUncompressedSize(zipFile);
+        boolean isDiffUpdate;
+        ZipFile zip = new ZipFile(zipFile);
+        try {
+            isDiffUpdate = zip.getEntry(CodePushConstants.DIFF_MANIFEST_FILE_NAME) != null;
+        } finally {
+            zip.close();
+        }
+
+        if (isDiffUpdate) {
+            String currentPackageFolderPath = getCurrentPackageFolderPath();
+            if (currentPackageFolderPath != null) {
+                requiredBytes += FileUtils.getSize(new File(currentPackageFolderPath));
+            } else if (mBinaryContents != null) {
+                requiredBytes += mBinaryContents.getSize();
+            }
+        }
+
+        return requiredBytes;
+    }
+
+    private void ensureAvailableSpace(File folder, long requiredBytes) {
+        long availableBytes = folder.getUsableSpace();
+        if (requiredBytes > availableBytes) {
+            throw new CodePushInsufficientStorageException(requiredBytes, availableBytes);
+        }
+    }
+
+    public synchronized void installPackage(JSONObject updatePackage, boolean removePendingUpdate) {
+        mProcessLock.lockExclusive(CodePushProcessLock.STATE);
+        try {
+            String packageHash = updatePackage.optString(CodePushConstants.PACKAGE_HASH_KEY, null);
+            JSONObject info = getCurrentPackageInfo();
+
+            String currentPackageHash = info.optString(CodePushConstants.CURRENT_PACKAGE_KEY, null);
+            if (packageHash != null && packageHash.equals(currentPackageHash)) {
+                // The current package is already the one being installed, so we should no-op.
+                return;
+            }
+
+            if (removePendingUpdate) {
+                String currentPackageFolderPath = getCurrentPackageFolderPath();
+                if (currentPackageFolderPath != null) {
+                    mTrash.moveToTrash(currentPackageFolderPath);
+                    removeRetainedPackage(info, currentPackageHash);
+                }
+            } else {
+                String previousPackageHash = getPreviousPackageHash();
+                if (previousPackageHash != null && !previousPackageHash.equals(packageHash) && !isRetainedPackage(info, previousPackageHash)) {
+                    // Installed before packages were tracked for retention.
+                    mTrash.moveToTrash(getPackageFolderPath(previousPackageHash));
+                }
+
+                CodePushUtils.setJSONValueForKey(info, CodePushConstants.PREVIOUS_PACKAGE_KEY, info.optString(CodePushConstants.CURRENT_PACKAGE_KEY, null));
+                if (currentPackageHash != null) {
+                    recordPackageUse(info, currentPackageHash);
+                }
+            }
+
+            CodePushUtils.setJSONValueForKey(info, CodePushConstants.CURRENT_PACKAGE_KEY, packageHash);
+            recordPackageUse(info, packageHash);
+            pruneRetainedPackages(info);
+            updateCurrentPackageInfo(info);
+        } finally {
+            mProcessLock.unlockExclusive(CodePushProcessLock.STATE);
+        }
+    }
+
+    public synchronized void rollbackPackage() {
+        mProcessLock.lockExclusive(CodePushProcessLock.STATE);
+        try {
+            JSONObject info = getCurrentPackageInfo();
+            String currentPackageFolderPath = getCurrentPackageFolderPath();
+            mTrash.moveToTrash(currentPackageFolderPath);
+            removeRetainedPackage(info, info.optString(CodePushConstants.CURRENT_PACKAGE_KEY, null));
+            CodePushUtils.setJSONValueForKey(info, CodePushConstants.CURRENT_PACKAGE_KEY, info.optString(CodePushConstants.PREVIOUS_PACKAGE_KEY, null));
+            CodePushUtils.setJSONValueForKey(info, CodePushConstants.PREVIOUS_PACKAGE_KEY, null);
+            updateCurrentPackageInfo(info);
+        } finally {
+            mProcessLock.unlockExclusive(CodePushProcessLock.STATE);
+        }
+    }
+
+    // Makes a retained package the current one again. Only the status file changes, the package
+    // being left becomes the previous one, so that it is restored if the target fails to load.
+    public synchronized void rollbackTo(String packageHash) {
+        mProcessLock.lockExclusive(CodePushProcessLock.STATE);
+        try {
+            JSONObject info = getCurrentPackageInfo();
+            String currentPackageHash = info.optString(CodePushConstants.CURRENT_PACKAGE_KEY, null);
+            if (packageHash.equals(currentPackageHash)) {
+                return;
+            }
+
+            if (!isRetainedPackage(info, packageHash) || getPackage(packageHash) == null) {
+                throw new CodePushInvalidUpdateException("Unable to roll back to package " + packageHash + ", it is no longer on the device.");
+            }
+
+            CodePushUtils.setJSONValueForKey(info, CodePushConstants.PREVIOUS_PACKAGE_KEY, currentPackageHash);
+            CodePushUtils.setJSONValueForKey(info, CodePushConstants.CURRENT_PACKAGE_KEY, packageHash);
+            recordPackageUse(info, packageHash);
+            updateCurrentPackageInfo(info);
+        } finally {
+            mProcessLock.unlockExclusive(CodePushProcessLock.STATE);
+        }
+    }
+
+    private boolean isRetainedPackage(JSONObject info, String packageHash) {
+        JSONArray retainedPackages = info.optJSONArray(CodePushConstants.RETAINED_PACKAGES_KEY);
+        if (retainedPackages == null) {
+            return false;
+        }
+
+        for (int i = 0; i < retainedPackages.length(); i++) {
+            JSONObject retainedPackage = retainedPackages.optJSONObject(i);
+            if (retainedPackage != null && packageHash.equals(retainedPackage.optString(CodePushConstants.PACKAGE_HASH_KEY))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // Moves the package to the front of the retained packages.
+    private void recordPackageUse(JSONObject info, String packageHash) {
+        removeRetainedPackage(info, packageHash);
+        JSONArray retainedPackages = info.optJSONArray(CodePushConstants.RETAINED_PACKAGES_KEY);
+        JSONArray updatedRetainedPackages = new JSONArray();
+        JSONObject retainedPackage = new JSONObject();
+        CodePushUtils.setJSONValueForKey(retainedPackage, CodePushConstants.PACKAGE_HASH_KEY, packageHash);
+        CodePushUtils.setJSONValueForKey(retainedPackage, CodePushConstants.RETAINED_PACKAGE_LAST_USED_TIME_KEY, CodePushPlatform.getClock().currentTimeMillis());
+        updatedRetainedPackages.put(retainedPackage);
+        if (retainedPackages != null) {
+            for (int i = 0; i < retainedPackages.length(); i++) {
+                updatedRetainedPackages.put(retainedPackages.opt(i));
+            }
+        }
+
+        CodePushUtils.setJSONValueForKey(info, CodePushConstants.RETAINED_PACKAGES_KEY, updatedRetainedPackages);
+    }
+
+    private void removeRetainedPackage(JSONObject info, String packageHash) {
+        JSONArray retainedPackages = info.optJSONArray(CodePushConstants.RETAINED_PACKAGES_KEY);
+        if (retainedPackages == null || packageHash == null) {
+            return;
+        }
+
+        JSONArray updatedRetainedPackages = new JSONArray();
+        for (int i = 0; i < retainedPackages.length(); i++) {
+            JSONObject retainedPackage = retainedPackages.optJSONObject(i);
+            if (retainedPackage != null && !packageHash.equals(retainedPackage.optString(CodePushConstants.PACKAGE_HASH_KEY))) {
+                updatedRetainedPackages.put(retainedPackage);
+            }
+        }
+
+        CodePushUtils.setJSONValueForKey(info, CodePushConstants.RETAINED_PACKAGES_KEY, updatedRetainedPackages);
+    }
+
+    // Deletes the least recently used packages beyond the retained count, except for the current and
+    // previous ones. Returns whether any were removed.
+    private boolean pruneRetainedPackages(JSONObject info) {
+        JSONArray retainedPackages = info.optJSONArray(CodePushConstants.RETAINED_PACKAGES_KEY);
+        if (retainedPackages == null || retainedPackages.length() <= mRetainedPackageCount) {
+            return false;
+        }
+
+        String currentPackageHash = info.optString(CodePushConstants.CURRENT_PACKAGE_KEY, null);
+        String previousPackageHash = info.optString(CodePushConstants.PREVIOUS_PACKAGE_KEY, null);
+        JSONArray updatedRetainedPackages = new JSONArray();
+        for (int i = 0; i < retainedPackages.length(); i++) {
+            JSONObject retainedPackage = retainedPackages.optJSONObject(i);
+            if (retainedPackage == null) {
+                continue;
+            }
+
+            String packageHash = retainedPackage.optString(CodePushConstants.PACKAGE_HASH_KEY);
+            if (updatedRetainedPackages.length() < mRetainedPackageCount || packageHash.equals(currentPackageHash) || packageHash.equals(previousPackageHash)) {
+                updatedRetainedPackages.put(retainedPackage);
+            } else {
+                mTrash.moveToTrash(getPackageFolderPath(packageHash));
+            }
+        }
+
+        CodePushUtils.setJSONValueForKey(info, CodePushConstants.RETAINED_PACKAGES_KEY, updatedRetainedPackages);
+        return true;
+    }
+
+    public void downloadAndReplaceCurrentBundle(String remoteBundleUrl, String bundleFileName) throws IOException {
+        mProcessLock.lockExclusive(CodePushProcessLock.STATE);
+        try {
+            URL downloadUrl;
+            HttpURLConnection connection = null;
+            BufferedInputStream bin = null;
+            FileOutputStream fos = null;
+            BufferedOutputStream bout = null;
+            try {
+                downloadUrl = new URL(remoteBundleUrl);
+                connection = (HttpURLConnection) (downloadUrl.openConnection());
+                bin = new BufferedInputStream(connection.getInputStream());
+                File downloadFile = new File(getCurrentPackageBundlePath(bundleFileName));
+                downloadFile.delete();
+                fos = new FileOutputStream(downloadFile);
+                bout = new BufferedOutputStream(fos, CodePushConstants.DOWNLOAD_BUFFER_SIZE);
+                byte[] data = new byte[CodePushConstants.DOWNLOAD_BUFFER_SIZE];
+                int numBytesRead = 0;
+                while ((numBytesRead = bin.read(data, 0, CodePushConstants.DOWNLOAD_BUFFER_SIZE)) >= 0) {
+                    bout.write(data, 0, numBytesRead);
+                }
+            } catch (MalformedURLException e) {
+                throw new CodePushMalformedDataException(remoteBundleUrl, e);
+            } finally {
+                try {
+                    if (bout != null) bout.close();
+                    if (fos != null) fos.close();
+                    if (bin != null) bin.close();
+                    if (connection != null) connection.disconnect();
+                } catch (IOException e) {
+                    throw new CodePushUnknownException("Error closing IO resources.", e);
+                }
+            }
+        } finally {
+            mProcessLock.unlockExclusive(CodePushProcessLock.STATE);
+        }
+    }
+
+    // Forgets the previous package, e.g. because its contents are damaged and rolling back to it would crash.
+    public synchronized void discardPreviousPackage() {
+        discardPreviousPackage(null);
+    }
+
+    // Only discards the previous package if it is still the given one, which another process may have
+    // changed since the caller looked. Returns whether it was discarded.
+    public synchronized boolean discardPreviousPackage(String packageHash) {
+        mProcessLock.lockExclusive(CodePushProcessLock.STATE);
+        try {
+            JSONObject info = getCurrentPackageInfo();
+            String previousPackageHash = info.optString(CodePushConstants.PREVIOUS_PACKAGE_KEY, null);
+            if (previousPackageHash == null || (packageHash != null && !packageHash.equals(previousPackageHash))) {
+                return false;
+            }
+
+            mTrash.moveToTrash(getPackageFolderPath(previousPackageHash));
+            removeRetainedPackage(info, previousPackageHash);
+            CodePushUtils.setJSONValueForKey(info, CodePushConstants.PREVIOUS_PACKAGE_KEY, null);
+            updateCurrentPackageInfo(info);
+            return true;
+        } finally {
+            mProcessLock.unlockExclusive(CodePushProcessLock.STATE);
+        }
+    }
+
+    // Called on the main thread at startup, so it doesn't wait for STAGING, which a download holds for
+    // as long as the transfer takes. The download and unzip locations are left to the download in
+    // progress, collectGarbage removes whatever it leaves behind.
+    public void clearUpdates() {
+        mProcessLock.lockExclusive(CodePushProcessLock.STATE);
+        try {
+            File[] files = new File(getCodePushPath()).listFiles();
+            if (files == null) {
+                return;
+            }
+
+            for (File file : files) {
+                String fileName = file.getName();
+                if (!fileName.equals(CodePushConstants.DOWNLOAD_FILE_NAME) && !fileName.equals(CodePushConstants.UNZIPPED_FOLDER_NAME)) {
+                    mTrash.moveToTrash(file.getAbsolutePath());
+                }
+            }
+        } finally {
+            mProcessLock.unlockExclusive(CodePushProcessLock.STATE);
+        }
+    }
+}
@@ -0,0 +1,463 @@
+package com.microsoft.codepush.react;
+
+import java.security.interfaces.*;
+
+import com.nimbusds.jose.*;
+import com.nimbusds.jose.crypto.*;
+import com.nimbusds.jwt.*;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.security.DigestInputStream;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+public class CodePushUpdateUtils {
+
+    public static final String NEW_LINE = System.getProperty("line.separator");
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    // Note: The hashing logic here must mirror the hashing logic in other native SDK's, as well as in the
+    // CLI. Ensure that any changes here are propagated to these other locations.
+    public static boolean isHashIgnored(String relativeFilePath) {
+        final String __MACOSX = "__MACOSX/";
+        final String DS_STORE = ".DS_Store";
+        final String CODEPUSH_METADATA = ".codepushrelease";
+
+        return relativeFilePath.startsWith(__MACOSX)
+                || relativeFilePath.equals(DS_STORE)
+                || relativeFilePath.endsWith("/" + DS_STORE)
+                || relativeFilePath.equals(CODEPUSH_METADATA)
+                || relativeFilePath.endsWith("/" + CODEPUSH_METADATA);
+    }
+
+    private static final String FINGERPRINT_MODIFIED_TIME_KEY = "mtime";
+    private static final String FINGERPRINT_SAMPLE_HASH_KEY = "sampleHash";
+    private static final String FINGERPRINT_SIZE_KEY = "size";
+    private static final int FINGERPRINT_SAMPLE_COUNT = 8;
+    private static final int FINGERPRINT_SAMPLE_SIZE = 4 * 1024;
+
+    private static final String MANIFEST_HASH_KEY = "hash";
+    private static final String MANIFEST_MODIFIED_TIME_KEY = "mtime";
+    private static final String MANIFEST_SIZE_KEY = "size";
+
+    private static void addContentsOfFolderToManifest(String folderPath, String pathPrefix, ArrayList<String> manifest,
+                                                      Map<String, String> knownFileHashes, JSONObject fileManifest,
+                                                      Future<?> pendingSignatureCheck) {
+        File folder = new File(folderPath);
+        File[] folderFiles = folder.listFiles();
+        for (File file : folderFiles) {
+            String fileName = file.getName();
+            String fullFilePath = file.getAbsolutePath();
+            String relativePath = (pathPrefix.isEmpty() ? "" : (pathPrefix + "/")) + fileName;
+
+            if (CodePushUpdateUtils.isHashIgnored(relativePath)) {
+                continue;
+            }
+
+            if (file.isDirectory()) {
+                addContentsOfFolderToManifest(fullFilePath, relativePath, manifest, knownFileHashes, fileManifest, pendingSignatureCheck);
+            } else {
+                String fileHash = knownFileHashes == null ? null : knownFileHashes.get(relativePath);
+                if (fileHash == null) {
+                    CodePushSignatureVerifier.throwIfFoundInvalid(pendingSignatureCheck);
+                    try {
+                        fileHash = computeHash(new FileInputStream(file));
+                    } catch (FileNotFoundException e) {
+                        // Should not happen.
+                        throw new CodePushUnknownException("Unable to compute hash of update contents.", e);
+                    }
+                }
+
+                manifest.add(relativePath + ":" + fileHash);
+                try {
+                    JSONObject fileManifestEntry = new JSONObject();
+                    fileManifestEntry.put(MANIFEST_HASH_KEY, fileHash);
+                    fileManifestEntry.put(MANIFEST_SIZE_KEY, file.length());
+                    fileManifestEntry.put(MANIFEST_MODIFIED_TIME_KEY, file.lastModified());
+                    fileManifest.put(relativePath, fileManifestEntry);
+                } catch (JSONException e) {
+                    // Should not happen.
+                    throw new CodePushUnknownException("Unable to add " + relativePath + " to the package manifest.", e);
+                }
+            }
+        }
+    }
+
+    static String computeHash(InputStream dataStream) {
+        MessageDigest messageDigest = null;
+        DigestInputStream digestInputStream = null;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-256");
+            digestInputStream = new DigestInputStream(dataStream, messageDigest);
+            byte[] byteBuffer = new byte[1024 * 8];
+            while (digestInputStream.read(byteBuffer) != -1) ;
+        } catch (NoSuchAlgorithmException | IOException e) {
+            // Should not happen.
+            throw new CodePushUnknownException("Unable to compute hash of update contents.", e);
+        } finally {
+            try {
+                if (digestInputStream != null) digestInputStream.close();
+                if (dataStream != null) dataStream.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        byte[] hash = messageDigest.digest();
+        return String.format("%064x", new java.math.BigInteger(1, hash));
+    }
+
+    public static void copyNecessaryFilesFromCurrentPackage(String diffManifestFilePath, String currentPackageFolderPath, String newPackageFolderPath) throws IOException {
+        FileUtils.copyDirectoryContents(currentPackageFolderPath, newPackageFolderPath);
+        deleteFilesRemovedByDiffUpdate(diffManifestFilePath, newPackageFolderPath);
+    }
+
+    // Used when the app runs the binary version, the diff is then relative to the contents of the APK.
+    // Returns the hashes of the copied files, they are verified while copying.
+    public static Map<String, String> copyNecessaryFilesFromBinary(String diffManifestFilePath, CodePushBinaryContents binaryContents, String newPackageFolderPath) throws IOException {
+        Map<String, String> copiedFileHashes = binaryContents.copyContents(newPackageFolderPath);
+        deleteFilesRemovedByDiffUpdate(diffManifestFilePath, newPackageFolderPath);
+        return copiedFileHashes;
+    }
+
+    // Returns the stored hashes of the package's files which still have the size and modification
+    // time recorded when the package was verified, so they don't have to be hashed again.
+    public static Map<String, String> getVerifiedFileHashes(String packageFolderPath) {
+        Map<String, String> verifiedFileHashes = new HashMap<>();
+        String fileManifestPath = CodePushUtils.appendPathComponent(packageFolderPath, CodePushConstants.PACKAGE_MANIFEST_FILE_NAME);
+        if (!FileUtils.fileAtPathExists(fileManifestPath)) {
+            return verifiedFileHashes;
+        }
+
+        JSONObject fileManifest;
+        try {
+            fileManifest = CodePushUtils.getJsonObjectFromFile(fileManifestPath);
+        } catch (IOException | CodePushMalformedDataException e) {
+            CodePushUtils.log("Unable to read the package manifest, all files will be hashed: " + e.getMessage());
+            return verifiedFileHashes;
+        }
+
+        Iterator<?> relativePaths = fileManifest.keys();
+        while (relativePaths.hasNext()) {
+            String relativePath = (String) relativePaths.next();
+            JSONObject fileManifestEntry = fileManifest.optJSONObject(relativePath);
+            File file = new File(packageFolderPath, relativePath);
+            if (fileManifestEntry != null && file.isFile() &&
+                    file.length() == fileManifestEntry.optLong(MANIFEST_SIZE_KEY, -1) &&
+                    file.lastModified() == fileManifestEntry.optLong(MANIFEST_MODIFIED_TIME_KEY, -1)) {
+                verifiedFileHashes.put(relativePath, fileManifestEntry.optString(MANIFEST_HASH_KEY));
+            }
+        }
+
+        return verifiedFileHashes;
+    }
+
+    public static void addRelativeFilePaths(String folderPath, String pathPrefix, Set<String> relativeFilePaths) {
+        File[] folderFiles = new File(folderPath).listFiles();
+        if (folderFiles == null) {
+            return;
+        }
+
+        for (File file : folderFiles) {
+            String relativePath = (pathPrefix.isEmpty() ? "" : (pathPrefix + "/")) + file.getName();
+            if (file.isDirectory()) {
+                addRelativeFilePaths(file.getAbsolutePath(), relativePath, relativeFilePaths);
+            } else {
+                relativeFilePaths.add(relativePath);
+            }
+        }
+    }
+
+    public static void writeFileManifest(JSONObject fileManifest, String packageFolderPath) throws IOException {
+        CodePushUtils.writeJsonToFile(fileManifest, CodePushUtils.appendPathComponent(packageFolderPath, CodePushConstants.PACKAGE_MANIFEST_FILE_NAME));
+    }
+
+    private static void deleteFilesRemovedByDiffUpdate(String diffManifestFilePath, String newPackageFolderPath) throws IOException {
+        JSONObject diffManifest = CodePushUtils.getJsonObjectFromFile(diffManifestFilePath);
+        try {
+            JSONArray deletedFiles = diffManifest.getJSONArray("deletedFiles");
+            for (int i = 0; i < deletedFiles.length(); i++) {
+                String fileNameToDelete = deletedFiles.getString(i);
+                File fileToDelete = new File(newPackageFolderPath, fileNameToDelete);
+                if (fileToDelete.exists()) {
+                    fileToDelete.delete();
+                }
+            }
+        } catch (JSONException e) {
+            throw new CodePushUnknownException("Unable to copy files from current package during diff update", e);
+        }
+    }
+
+    // A cheap fingerprint of the bundle, checked before loading it: its size, modification time and
+    // a CRC over a few evenly spaced blocks, which catches truncation and most partial overwrites.
+    public static JSONObject computeBundleFingerprint(String bundlePath) throws IOException {
+        File bundleFile = new File(bundlePath);
+        JSONObject fingerprint = new JSONObject();
+        try {
+            fingerprint.put(FINGERPRINT_SIZE_KEY, bundleFile.length());
+            fingerprint.put(FINGERPRINT_MODIFIED_TIME_KEY, bundleFile.lastModified());
+            fingerprint.put(FINGERPRINT_SAMPLE_HASH_KEY, computeSampleHash(bundleFile));
+        } catch (JSONException e) {
+            // Should not happen.
+            throw new CodePushUnknownException("Unable to compute the fingerprint of " + bundlePath, e);
+        }
+
+        return fingerprint;
+    }
+
+    public static boolean isBundleFingerprintMatching(String bundlePath, JSONObject fingerprint) {
+        File bundleFile = new File(bundlePath);
+        if (bundleFile.length() != fingerprint.optLong(FINGERPRINT_SIZE_KEY, -1)) {
+            CodePushUtils.log("Bundle size " + bundleFile.length() + " does not match the fingerprint taken at install time.");
+            return false;
+        }
+
+        if (bundleFile.lastModified() != fingerprint.optLong(FINGERPRINT_MODIFIED_TIME_KEY, -1)) {
+            // Restoring from a backup changes it as well, so the sampled contents decide.
+            CodePushUtils.log("Bundle modification time changed since install, checking its contents.");
+        }
+
+        try {
+            return computeSampleHash(bundleFile) == fingerprint.optLong(FINGERPRINT_SAMPLE_HASH_KEY, -1);
+        } catch (IOException e) {
+            CodePushUtils.log("Unable to read the bundle: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static long computeSampleHash(File file) throws IOException {
+        CRC32 checksum = new CRC32();
+        byte[] sample = new byte[FINGERPRINT_SAMPLE_SIZE];
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            long length = randomAccessFile.length();
+            long lastSampleOffset = Math.max(0, length - FINGERPRINT_SAMPLE_SIZE);
+            for (int i = 0; i < FINGERPRINT_SAMPLE_COUNT; i++) {
+                randomAccessFile.seek(lastSampleOffset * i / (FINGERPRINT_SAMPLE_COUNT - 1));
+                int sampleLength = (int) Math.min(FINGERPRINT_SAMPLE_SIZE, length);
+                randomAccessFile.readFully(sample, 0, sampleLength);
+                checksum.update(sample, 0, sampleLength);
+            }
+        } finally {
+            randomAccessFile.close();
+        }
+
+        return checksum.getValue();
+    }
+
+    public static String findJSBundleInUpdateContents(String folderPath, String expectedFileName) {
+        File folder = new File(folderPath);
+        File[] folderFiles = folder.listFiles();
+        for (File file : folderFiles) {
+            String fullFilePath = CodePushUtils.appendPathComponent(folderPath, file.getName());
+            if (file.isDirectory()) {
+                String mainBundlePathInSubFolder = findJSBundleInUpdateContents(fullFilePath, expectedFileName);
+                if (mainBundlePathInSubFolder != null) {
+                    return CodePushUtils.appendPathComponent(file.getName(), mainBundlePathInSubFolder);
+                }
+            } else {
+                String fileName = file.getName();
+                if (fileName.equals(expectedFileName)) {
+                    return fileName;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    // Takes entries of format <relativeFilePath>:<sha256FileHash>, see verifyFolderHash.
+    // Hashes the sorted manifest as the CLI does, i.e. the UTF-8 bytes of JSON.stringify(manifest),
+    // feeding the digest one entry at a time instead of building the whole JSON string first.
+    public static String computeManifestHash(List<String> manifest) {
+        //sort manifest strings to make sure, that they are completely equal with manifest strings has been generated in cli!
+        Collections.sort(manifest);
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Should not happen.
+            throw new CodePushUnknownException("Unable to compute hash of update contents.", e);
+        }
+
+        StringBuilder quotedEntry = new StringBuilder();
+        messageDigest.update((byte) '[');
+        for (int i = 0; i < manifest.size(); i++) {
+            if (i > 0) {
+                messageDigest.update((byte) ',');
+            }
+
+            quotedEntry.setLength(0);
+            appendJSONString(quotedEntry, manifest.get(i));
+            messageDigest.update(quotedEntry.toString().getBytes(UTF8));
+        }
+
+        messageDigest.update((byte) ']');
+        CodePushUtils.log("Hashed manifest of " + manifest.size() + " files.");
+        return String.format("%064x", new java.math.BigInteger(1, messageDigest.digest()));
+    }
+
+    // Same escaping as JSON.stringify: unlike org.json, path separators are left as they are.
+    private static void appendJSONString(StringBuilder builder, String value) {
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                case '\\':
+                    builder.append('\\').append(c);
+                    break;
+                case '\b':
+                    builder.append("\\b");
+                    break;
+                case '\f':
+                    builder.append("\\f");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    if (c <= 0x1F) {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+            }
+        }
+
+        builder.append('"');
+    }
+
+    public static JSONObject verifyFolderHash(String folderPath, String expectedHash) {
+        return verifyFolderHash(folderPath, expectedHash, null);
+    }
+
+    // Hashing algorithm:
+    // 1. Recursively generate a sorted array of format <relativeFilePath>: <sha256FileHash>
+    // 2. JSON stringify the array
+    // 3. SHA256-hash the result
+    // Files listed in knownFileHashes are not read again. Returns the per-file manifest of the verified folder.
+    public static JSONObject verifyFolderHash(String folderPath, String expectedHash, Map<String, String> knownFileHashes) {
+        return verifyFolderHash(folderPath, expectedHash, knownFileHashes, null);
+    }
+
+    // Hashes the folder while the signature is checked in the background, and stops as soon as the check
+    // finds the signature invalid.
+    public static JSONObject verifyFolderHash(String folderPath, String expectedHash, Map<String, String> knownFileHashes,
+                                              Future<?> pendingSignatureCheck) {
+        CodePushUtils.log("Verifying hash for folder path: " + folderPath);
+        ArrayList<String> updateContentsManifest = new ArrayList<>();
+        JSONObject fileManifest = new JSONObject();
+        addContentsOfFolderToManifest(folderPath, "", updateContentsManifest, knownFileHashes, fileManifest, pendingSignatureCheck);
+        String updateContentsManifestHash = computeManifestHash(updateContentsManifest);
+
+        CodePushUtils.log("Expected hash: " + expectedHash + ", actual hash: " + updateContentsManifestHash);
+        if (!expectedHash.equals(updateContentsManifestHash)) {
+            throw new CodePushInvalidUpdateException("The update contents failed the data integrity check.");
+        }
+
+        CodePushUtils.log("The update contents succeeded the data integrity check.");
+        return fileManifest;
+    }
+
+    public static Map<String, Object> verifyAndDecodeJWT(String jwt, PublicKey publicKey) {
+        return verifyAndDecodeJWT(jwt, new RSASSAVerifier((RSAPublicKey)publicKey));
+    }
+
+    public static Map<String, Object> verifyAndDecodeJWT(String jwt, JWSVerifier verifier) {
+        try {
+            SignedJWT signedJWT = SignedJWT.parse(jwt);
+            if (signedJWT.verify(verifier)) {
+                Map<String, Object> claims = signedJWT.getJWTClaimsSet().getClaims();
+                CodePushUtils.log("JWT verification succeeded, payload content: " + claims.toString());
+                return claims;
+            }
+            return null;
+        } catch (Exception ex) {
+            CodePushUtils.log(ex.getMessage());
+            CodePushUtils.log(ex.getStackTrace().toString());
+            return null;
+        }
+    }
+
+    public static PublicKey parsePublicKey(String stringPublicKey) {
+        try {
+            //remove unnecessary "begin/end public key" entries from string
+            stringPublicKey = stringPublicKey
+                    .replace("-----BEGIN PUBLIC KEY-----", "")
+                    .replace("-----END PUBLIC KEY-----", "")
+                    .replace(NEW_LINE, "");
+            byte[] byteKey = CodePushPlatform.getBase64().decode(stringPublicKey);
+            X509EncodedKeySpec X509Key = new X509EncodedKeySpec(byteKey);
+            KeyFactory kf = KeyFactory.getInstance("RSA");
+
+            return kf.generatePublic(X509Key);
+        } catch (Exception e) {
+            CodePushUtils.log(e.getMessage());
+            CodePushUtils.log(e.getStackTrace().toString());
+            return null;
+        }
+    }
+
+    public static String getSignatureFilePath(String updateFolderPath){
+        return CodePushUtils.appendPathComponent(
+                CodePushUtils.appendPathComponent(updateFolderPath, CodePushConstants.CODE_PUSH_FOLDER_PREFIX),
+                CodePushConstants.BUNDLE_JWT_FILE
+        );
+    }
+
+    public static String getSignature(String folderPath) {
+        final String signatureFilePath = getSignatureFilePath(folderPath);
+
+        try {
+            return FileUtils.readFileToString(signatureFilePath);
+        } catch (IOException e) {
+            CodePushUtils.log(e.getMessage());
+            CodePushUtils.log(e.getStackTrace().toString());
+            return null;
+        }
+    }
+
+    public static void verifyUpdateSignature(String folderPath, String packageHash, String stringPublicKey) throws CodePushInvalidUpdateException {
+        verifyUpdateSignature(folderPath, packageHash, new CodePushSignatureVerifier(stringPublicKey));
+    }
+
+    public static void verifyUpdateSignature(String folderPath, String packageHash, CodePushSignatureVerifier signatureVerifier) throws CodePushInvalidUpdateException {
+        CodePushUtils.log("Verifying signature for folder path: " + folderPath);
+
+        final String signature = getSignature(folderPath);
+        if (signature == null) {
+            throw new CodePushInvalidUpdateException("The update could not be verified because no signature was found.");
+        }
+
+        signatureVerifier.verify(signature, packageHash);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,71 @@
+package com.microsoft.codepush.react;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+public class CodePushUtils {
+
+    public static String appendPathComponent(String basePath, String appendPathComponent) {
+        return new File(basePath, appendPathComponent).getAbsolutePath();
+    }
+
+    public static String getStringFromInputStream(InputStream inputStream) throws IOException {
+        BufferedReader bufferedReader = null;
+        try {
+            StringBuilder buffer = new StringBuilder();
+            bufferedReader = new BufferedReader(new InputStreamReader(inputStream));
+
+            String line;
+            while ((line = bufferedReader.readLine()) != null) {
+                buffer.append(line);
+                buffer.append("\n");
+            }
+
+            return buffer.toString().trim();
+        } finally {
+            if (bufferedReader != null) bufferedReader.close();
+            if (inputStream != null) inputStream.close();
+        }
+    }
+
+    public static JSONObject getJsonObjectFromFile(String filePath) throws IOException {
+        String content = FileUtils.readFileToString(filePath);
+        try {
+            return new JSONObject(content);
+        } catch (JSONException jsonException) {
+            // Should not happen
+            throw new CodePushMalformedDataException(filePath, jsonException);
+        }
+    }
+
+    public static void log(String message) {
+        CodePushPlatform.getLogger().log(message);
+    }
+
+    public static void log(Throwable tr) {
+        CodePushPlatform.getLogger().log(tr);
+    }
+
+    public static void logBundleUrl(String path) {
+        log("Loading JS bundle from \"" + path + "\"");
+    }
+
+    public static void setJSONValueForKey(JSONObject json, String key, Object value) {
+        try {
+            json.put(key, value);
+        } catch (JSONException e) {
+            throw new CodePushUnknownException("Unable to set value " + value + " for key " + key + " to JSONObject");
+        }
+    }
+
+    public static void writeJsonToFile(JSONObject json, String filePath) throws IOException {
+        String jsonString = json.toString();
+        FileUtils.writeStringToFile(jsonString, filePath);
+    }
+}
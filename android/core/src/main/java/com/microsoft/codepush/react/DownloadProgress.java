@@ -0,0 +1,23 @@
+package com.microsoft.codepush.react;
+
+class DownloadProgress {
+    private long mTotalBytes;
+    private long mReceivedBytes;
+
+    public DownloadProgress (long totalBytes, long receivedBytes){
+        mTotalBytes = totalBytes;
+        mReceivedBytes = receivedBytes;
+    }
+
+    public long getTotalBytes() {
+        return mTotalBytes;
+    }
+
+    public long getReceivedBytes() {
+        return mReceivedBytes;
+    }
+
+    public boolean isCompleted() {
+        return mTotalBytes == mReceivedBytes;
+    }
+}
@@ -0,0 +1,322 @@
+package com.microsoft.codepush.react;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+public class FileUtils {
+
+    private static final int WRITE_BUFFER_SIZE = 1024 * 8;
+    private static final int UNZIP_MAX_THREAD_COUNT = 4;
+    private static final String MACOSX_FOLDER_PREFIX = "__MACOSX/";
+    private static final String DS_STORE_FILE_NAME = ".DS_Store";
+
+    public static void copyDirectoryContents(String sourceDirectoryPath, String destinationDirectoryPath) throws IOException {
+        File sourceDir = new File(sourceDirectoryPath);
+        File destDir = new File(destinationDirectoryPath);
+        if (!destDir.exists()) {
+            destDir.mkdir();
+        }
+
+        for (File sourceFile : sourceDir.listFiles()) {
+            if (sourceFile.isDirectory()) {
+                copyDirectoryContents(
+                        CodePushUtils.appendPathComponent(sourceDirectoryPath, sourceFile.getName()),
+                        CodePushUtils.appendPathComponent(destinationDirectoryPath, sourceFile.getName()));
+            } else {
+                File destFile = new File(destDir, sourceFile.getName());
+                FileInputStream fromFileStream = null;
+                BufferedInputStream fromBufferedStream = null;
+                FileOutputStream destStream = null;
+                byte[] buffer = new byte[WRITE_BUFFER_SIZE];
+                try {
+                    fromFileStream = new FileInputStream(sourceFile);
+                    fromBufferedStream = new BufferedInputStream(fromFileStream);
+                    destStream = new FileOutputStream(destFile);
+                    int bytesRead;
+                    while ((bytesRead = fromBufferedStream.read(buffer)) > 0) {
+                        destStream.write(buffer, 0, bytesRead);
+                    }
+                } finally {
+                    try {
+                        if (fromFileStream != null) fromFileStream.close();
+                        if (fromBufferedStream != null) fromBufferedStream.close();
+                        if (destStream != null) destStream.close();
+                    } catch (IOException e) {
+                        throw new CodePushUnknownException("Error closing IO resources.", e);
+                    }
+                }
+            }
+        }
+    }
+
+    public static void deleteDirectoryAtPath(String directoryPath) {
+        if (directoryPath == null) {
+            CodePushUtils.log("deleteDirectoryAtPath attempted with null directoryPath");
+            return;
+        }
+        File file = new File(directoryPath);
+        if (file.exists()) {
+            deleteFileOrFolderSilently(file);
+        }
+    }
+
+    public static void deleteFileAtPathSilently(String path) {
+        deleteFileOrFolderSilently(new File(path));
+    }
+
+    public static void deleteFileOrFolderSilently(File file) {
+        if (file.isDirectory()) {
+            File[] files = file.listFiles();
+            for (File fileEntry : files) {
+                if (fileEntry.isDirectory()) {
+                    deleteFileOrFolderSilently(fileEntry);
+                } else {
+                    fileEntry.delete();
+                }
+            }
+        }
+
+        if (!file.delete()) {
+            CodePushUtils.log("Error deleting file " + file.getName());
+        }
+    }
+
+    public static long getSize(File file) {
+        if (!file.isDirectory()) {
+            return file.length();
+        }
+
+        long size = 0;
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                size += getSize(child);
+            }
+        }
+
+        return size;
+    }
+
+    // Total size of the extracted contents, as recorded in the central directory.
+    public static long getUncompressedSize(File zipFile) throws IOException {
+        ZipFile zip = new ZipFile(zipFile);
+        try {
+            long uncompressedSize = 0;
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                // Fall back to the compressed size if the entry doesn't say.
+                uncompressedSize += entry.getSize() >= 0 ? entry.getSize() : entry.getCompressedSize();
+            }
+
+            return uncompressedSize;
+        } finally {
+            zip.close();
+        }
+    }
+
+    // Reserves length bytes for the file on disk, so that running out of space is detected before
+    // writing it. Returns false if there isn't enough space; where the file system or the platform
+    // doesn't support preallocation, true is returned without reserving anything.
+    public static boolean preallocate(FileOutputStream outputStream, long length) throws IOException {
+        return CodePushPlatform.getFileAllocator().preallocate(outputStream, length);
+    }
+
+    public static boolean fileAtPathExists(String filePath) {
+        return new File(filePath).exists();
+    }
+
+    public static void moveFile(File fileToMove, String newFolderPath, String newFileName) {
+        File newFolder = new File(newFolderPath);
+        if (!newFolder.exists()) {
+            newFolder.mkdirs();
+        }
+
+        File newFilePath = new File(newFolderPath, newFileName);
+        if (!fileToMove.renameTo(newFilePath)) {
+            throw new CodePushUnknownException("Unable to move file from " +
+                    fileToMove.getAbsolutePath() + " to " + newFilePath.getAbsolutePath() + ".");
+        }
+    }
+
+    public static String readFileToString(String filePath) throws IOException {
+        FileInputStream fin = null;
+        BufferedReader reader = null;
+        try {
+            File fl = new File(filePath);
+            fin = new FileInputStream(fl);
+            reader = new BufferedReader(new InputStreamReader(fin));
+            StringBuilder sb = new StringBuilder();
+            String line = null;
+            while ((line = reader.readLine()) != null) {
+                sb.append(line).append("\n");
+            }
+
+            return sb.toString();
+        } finally {
+            if (reader != null) reader.close();
+            if (fin != null) fin.close();
+        }
+    }
+
+    public static void unzipFile(File zipFile, String destination) throws IOException {
+        unzipFile(zipFile, destination, null);
+    }
+
+    // Extracts the archive with a few threads reading entries from the central directory at once.
+    // Entries named firstFileName are extracted before any other, and Finder metadata is skipped.
+    // Returns the path of the first such entry relative to destination, null if there is none.
+    public static String unzipFile(File zipFile, String destination, final String firstFileName) throws IOException {
+        final ZipFile zip = new ZipFile(zipFile);
+        ExecutorService executor = null;
+        try {
+            final File destinationFolder = new File(destination);
+            if (destinationFolder.exists()) {
+                deleteFileOrFolderSilently(destinationFolder);
+            }
+
+            destinationFolder.mkdirs();
+
+            List<ZipEntry> fileEntries = new ArrayList<>();
+            Set<File> folders = new HashSet<>();
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (isFinderMetadata(entry.getName())) {
+                    continue;
+                }
+
+                File file = new File(destinationFolder, entry.getName());
+                if (entry.isDirectory()) {
+                    folders.add(file);
+                } else {
+                    folders.add(file.getParentFile());
+                    fileEntries.add(entry);
+                }
+            }
+
+            for (File folder : folders) {
+                folder.mkdirs();
+            }
+
+            // Then largest first, so that a big entry doesn't end up alone on one thread at the end.
+            Collections.sort(fileEntries, new Comparator<ZipEntry>() {
+                @Override
+                public int compare(ZipEntry entry1, ZipEntry entry2) {
+                    boolean isFirstFile1 = isFileNamed(entry1, firstFileName);
+                    if (isFirstFile1 != isFileNamed(entry2, firstFileName)) {
+                        return isFirstFile1 ? -1 : 1;
+                    }
+
+                    return Long.compare(entry2.getSize(), entry1.getSize());
+                }
+            });
+
+            int threadCount = Math.max(1, Math.min(fileEntries.size(), Math.min(UNZIP_MAX_THREAD_COUNT, Runtime.getRuntime().availableProcessors())));
+            executor = Executors.newFixedThreadPool(threadCount);
+            List<Future<Void>> results = new ArrayList<>();
+            for (final ZipEntry entry : fileEntries) {
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        extractEntry(zip, entry, new File(destinationFolder, entry.getName()));
+                        return null;
+                    }
+                }));
+            }
+
+            for (Future<Void> result : results) {
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    }
+
+                    throw new CodePushUnknownException("Error extracting " + zipFile.getName(), e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CodePushUnknownException("Interrupted while extracting " + zipFile.getName(), e);
+                }
+            }
+
+            if (!fileEntries.isEmpty() && isFileNamed(fileEntries.get(0), firstFileName)) {
+                return fileEntries.get(0).getName();
+            }
+
+            return null;
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+
+            try {
+                zip.close();
+            } catch (IOException e) {
+                throw new CodePushUnknownException("Error closing IO resources.", e);
+            }
+        }
+    }
+
+    private static void extractEntry(ZipFile zip, ZipEntry entry, File file) throws IOException {
+        InputStream inputStream = zip.getInputStream(entry);
+        FileOutputStream fout = null;
+        try {
+            fout = new FileOutputStream(file);
+            byte[] buffer = new byte[WRITE_BUFFER_SIZE];
+            int numBytesRead;
+            while ((numBytesRead = inputStream.read(buffer)) != -1) {
+                fout.write(buffer, 0, numBytesRead);
+            }
+        } finally {
+            try {
+                inputStream.close();
+                if (fout != null) fout.close();
+            } catch (IOException e) {
+                throw new CodePushUnknownException("Error closing IO resources.", e);
+            }
+        }
+    }
+
+    private static boolean isFileNamed(ZipEntry entry, String fileName) {
+        return fileName != null && (entry.getName().equals(fileName) || entry.getName().endsWith("/" + fileName));
+    }
+
+    // Added by macOS archivers, these are left out of the package hash anyway.
+    private static boolean isFinderMetadata(String entryName) {
+        return entryName.startsWith(MACOSX_FOLDER_PREFIX)
+                || entryName.equals(DS_STORE_FILE_NAME)
+                || entryName.endsWith("/" + DS_STORE_FILE_NAME);
+    }
+
+    public static void writeStringToFile(String content, String filePath) throws IOException {
+        PrintWriter out = null;
+        try {
+            out = new PrintWriter(filePath);
+            out.print(content);
+        } finally {
+            if (out != null) out.close();
+        }
+    }
+}
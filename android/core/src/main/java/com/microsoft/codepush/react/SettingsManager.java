@@ -1,22 +1,22 @@
 package com.microsoft.codepush.react;
 
-import android.content.Context;
-import android.content.SharedPreferences;
-
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.HashSet;
+import java.util.Set;
+
 public class SettingsManager {
 
-    private SharedPreferences mSettings;
+    private CodePushKeyValueStore mSettings;
 
-    public SettingsManager(Context applicationContext) {
-        mSettings = applicationContext.getSharedPreferences(CodePushConstants.CODE_PUSH_PREFERENCES, 0);
+    public SettingsManager(CodePushKeyValueStore settings) {
+        mSettings = settings;
     }
 
     public JSONArray getFailedUpdates() {
-        String failedUpdatesString = mSettings.getString(CodePushConstants.FAILED_UPDATES_KEY, null);
+        String failedUpdatesString = mSettings.getString(CodePushConstants.FAILED_UPDATES_KEY);
         if (failedUpdatesString == null) {
             return new JSONArray();
         }
@@ -26,13 +26,13 @@ public class SettingsManager {
         } catch (JSONException e) {
             // Unrecognized data format, clear and replace with expected format.
             JSONArray emptyArray = new JSONArray();
-            mSettings.edit().putString(CodePushConstants.FAILED_UPDATES_KEY, emptyArray.toString()).commit();
+            mSettings.putString(CodePushConstants.FAILED_UPDATES_KEY, emptyArray.toString());
             return emptyArray;
         }
     }
 
     public JSONObject getPendingUpdate() {
-        String pendingUpdateString = mSettings.getString(CodePushConstants.PENDING_UPDATE_KEY, null);
+        String pendingUpdateString = mSettings.getString(CodePushConstants.PENDING_UPDATE_KEY);
         if (pendingUpdateString == null) {
             return null;
         }
@@ -79,12 +79,51 @@ public class SettingsManager {
         }
     }
 
+    // Packages whose stored contents were found damaged on this device, as opposed to failed updates.
+    public boolean isCorruptedPackage(String packageHash) {
+        return packageHash != null && getCorruptedPackages().contains(packageHash);
+    }
+
+    public void saveCorruptedPackage(String packageHash) {
+        Set<String> corruptedPackages = getCorruptedPackages();
+        if (corruptedPackages.add(packageHash)) {
+            mSettings.putString(CodePushConstants.CORRUPTED_PACKAGES_KEY, new JSONArray(corruptedPackages).toString());
+        }
+    }
+
+    public void removeCorruptedPackage(String packageHash) {
+        Set<String> corruptedPackages = getCorruptedPackages();
+        if (corruptedPackages.remove(packageHash)) {
+            mSettings.putString(CodePushConstants.CORRUPTED_PACKAGES_KEY, new JSONArray(corruptedPackages).toString());
+        }
+    }
+
+    private Set<String> getCorruptedPackages() {
+        Set<String> corruptedPackages = new HashSet<>();
+        String corruptedPackagesString = mSettings.getString(CodePushConstants.CORRUPTED_PACKAGES_KEY);
+        if (corruptedPackagesString == null) {
+            return corruptedPackages;
+        }
+
+        try {
+            JSONArray corruptedPackagesArray = new JSONArray(corruptedPackagesString);
+            for (int i = 0; i < corruptedPackagesArray.length(); i++) {
+                corruptedPackages.add(corruptedPackagesArray.getString(i));
+            }
+        } catch (JSONException e) {
+            // Unrecognized data format, nothing is known to be corrupted then.
+            CodePushUtils.log("Unable to parse corrupted packages " + corruptedPackagesString + " stored in SharedPreferences");
+        }
+
+        return corruptedPackages;
+    }
+
     public void removeFailedUpdates() {
-        mSettings.edit().remove(CodePushConstants.FAILED_UPDATES_KEY).commit();
+        mSettings.remove(CodePushConstants.FAILED_UPDATES_KEY);
     }
 
     public void removePendingUpdate() {
-        mSettings.edit().remove(CodePushConstants.PENDING_UPDATE_KEY).commit();
+        mSettings.remove(CodePushConstants.PENDING_UPDATE_KEY);
     }
 
     public void saveFailedUpdate(JSONObject failedPackage) {
@@ -97,7 +136,7 @@ public class SettingsManager {
             throw new CodePushUnknownException("Unable to read package hash from package.", e);
         }
 
-        String failedUpdatesString = mSettings.getString(CodePushConstants.FAILED_UPDATES_KEY, null);
+        String failedUpdatesString = mSettings.getString(CodePushConstants.FAILED_UPDATES_KEY);
         JSONArray failedUpdates;
         if (failedUpdatesString == null) {
             failedUpdates = new JSONArray();
@@ -112,11 +151,11 @@ public class SettingsManager {
         }
 
         failedUpdates.put(failedPackage);
-        mSettings.edit().putString(CodePushConstants.FAILED_UPDATES_KEY, failedUpdates.toString()).commit();
+        mSettings.putString(CodePushConstants.FAILED_UPDATES_KEY, failedUpdates.toString());
     }
 
     public JSONObject getLatestRollbackInfo() {
-        String latestRollbackInfoString = mSettings.getString(CodePushConstants.LATEST_ROLLBACK_INFO_KEY, null);
+        String latestRollbackInfoString = mSettings.getString(CodePushConstants.LATEST_ROLLBACK_INFO_KEY);
         if (latestRollbackInfoString == null) {
             return null;
         }
@@ -150,9 +189,9 @@ public class SettingsManager {
 
         try {
             latestRollbackInfo.put(CodePushConstants.LATEST_ROLLBACK_PACKAGE_HASH_KEY, packageHash);
-            latestRollbackInfo.put(CodePushConstants.LATEST_ROLLBACK_TIME_KEY, System.currentTimeMillis());
+            latestRollbackInfo.put(CodePushConstants.LATEST_ROLLBACK_TIME_KEY, CodePushPlatform.getClock().currentTimeMillis());
             latestRollbackInfo.put(CodePushConstants.LATEST_ROLLBACK_COUNT_KEY, count + 1);
-            mSettings.edit().putString(CodePushConstants.LATEST_ROLLBACK_INFO_KEY, latestRollbackInfo.toString()).commit();
+            mSettings.putString(CodePushConstants.LATEST_ROLLBACK_INFO_KEY, latestRollbackInfo.toString());
         } catch (JSONException e) {
             throw new CodePushUnknownException("Unable to save latest rollback info.", e);
         }
@@ -163,7 +202,7 @@ public class SettingsManager {
         try {
             pendingUpdate.put(CodePushConstants.PENDING_UPDATE_HASH_KEY, packageHash);
             pendingUpdate.put(CodePushConstants.PENDING_UPDATE_IS_LOADING_KEY, isLoading);
-            mSettings.edit().putString(CodePushConstants.PENDING_UPDATE_KEY, pendingUpdate.toString()).commit();
+            mSettings.putString(CodePushConstants.PENDING_UPDATE_KEY, pendingUpdate.toString());
         } catch (JSONException e) {
             // Should not happen.
             throw new CodePushUnknownException("Unable to save pending update.", e);
@@ -0,0 +1,64 @@
+package com.microsoft.codepush.react;
+
+import org.json.JSONArray;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+// computeManifestHash streams the manifest into the digest, it has to hash the same bytes as the
+// JSONArray based implementation it replaced, which matches the CLI's JSON.stringify.
+public class CodePushUpdateUtilsTest {
+    private static final String FILE_HASH = "a3f1c0ffee";
+
+    @Test
+    public void emptyManifest() throws Exception {
+        assertManifestHashMatchesJSONArray();
+    }
+
+    @Test
+    public void plainPaths() throws Exception {
+        assertManifestHashMatchesJSONArray("index.android.bundle", "assets/img/logo.png", "assets/fonts/Roboto.ttf");
+    }
+
+    @Test
+    public void pathSeparators() throws Exception {
+        assertManifestHashMatchesJSONArray("a/b/c/d.js", "/leading", "trailing/", "back\\slash/mixed", "escaped\\/slash");
+    }
+
+    @Test
+    public void escapedCharacters() throws Exception {
+        assertManifestHashMatchesJSONArray("quote\"d", "back\\slash", "tab\there", "new\nline", "carriage\rreturn",
+                "back\bspace", "form\ffeed", "control\u0001\u001fchars", "delete\u007f");
+    }
+
+    @Test
+    public void nonAsciiCharacters() throws Exception {
+        // Escaped, the sources are compiled with the platform encoding.
+        assertManifestHashMatchesJSONArray("\u00fcmlaut/\u00df.png", "\u65e5\u672c\u8a9e/\u30d5\u30a1\u30a4\u30eb.js",
+                "emoji/\ud83d\ude80.png", "line\u2028separator.js", "accents/e\u0301.json");
+    }
+
+    private static void assertManifestHashMatchesJSONArray(String... paths) throws Exception {
+        List<String> manifest = new ArrayList<>();
+        for (String path : paths) {
+            manifest.add(path + ":" + FILE_HASH);
+        }
+
+        assertEquals(hashWithJSONArray(manifest), CodePushUpdateUtils.computeManifestHash(new ArrayList<>(manifest)));
+    }
+
+    // The implementation computeManifestHash replaced.
+    private static String hashWithJSONArray(List<String> manifest) throws Exception {
+        List<String> sortedManifest = new ArrayList<>(manifest);
+        Collections.sort(sortedManifest);
+        String manifestString = new JSONArray(sortedManifest).toString().replace("\\/", "/");
+        byte[] hash = MessageDigest.getInstance("SHA-256").digest(manifestString.getBytes(StandardCharsets.UTF_8));
+        return String.format("%064x", new java.math.BigInteger(1, hash));
+    }
+}
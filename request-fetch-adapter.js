@@ -1,4 +1,5 @@
 const packageJson = require("./package.json");
+const { NativeModules, Platform } = require("react-native");
 
 module.exports = {
   async request(verb, url, requestBody, callback) {
@@ -20,6 +21,13 @@ module.exports = {
     }
 
     try {
+      if (isUpdateCheckRequest(verb, url)) {
+        // Update checks go through the native client, which caches and revalidates responses.
+        const { statusCode, body } = await NativeModules.CodePush.getUpdateCheckResponse(url, headers);
+        callback(null, { statusCode, body });
+        return;
+      }
+
       const response = await fetch(url, {
         method: getHttpMethodName(verb),
         headers: headers,
@@ -35,6 +43,12 @@ module.exports = {
   }
 };
 
+function isUpdateCheckRequest(verb, url) {
+  return Platform.OS === "android" &&
+    NativeModules.CodePush && NativeModules.CodePush.getUpdateCheckResponse &&
+    getHttpMethodName(verb) === "GET" && /\/(update_check|updateCheck)\?/.test(url);
+}
+
 function getHttpMethodName(verb) {
   // Note: This should stay in sync with the enum definition in
   // https://github.com/Microsoft/code-push/blob/master/sdk/script/acquisition-sdk.ts#L6
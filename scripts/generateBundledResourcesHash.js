@@ -9,6 +9,8 @@
  * out which files were generated by the "react-native bundle" command. It then computes
  * the hash for each file to generate a manifest, and then computes a hash over the entire
  * manifest to generate the final hash, which is saved to the APK's assets directory.
+ * The manifest itself is saved next to it, so that the Android SDK can use the bundled
+ * files as the base for diff updates while the app is running the binary version.
  */
 
 var crypto = require("crypto");
@@ -20,6 +22,7 @@ var getFilesInFolder = require("./getFilesInFolder");
 var CODE_PUSH_FOLDER_PREFIX = "CodePush";
 var CODE_PUSH_HASH_FILE_NAME = "CodePushHash";
 var CODE_PUSH_HASH_OLD_FILE_NAME = "CodePushHash.json";
+var CODE_PUSH_MANIFEST_FILE_NAME = "CodePushManifest";
 var HASH_ALGORITHM = "sha256";
 
 var resourcesDir = process.argv[2];
@@ -79,6 +82,7 @@ function addJsBundleAndMetaToManifest() {
 
             var savedResourcesManifestPath = assetsDir + "/" + CODE_PUSH_HASH_FILE_NAME;
             fs.writeFileSync(savedResourcesManifestPath, finalHash);
+            fs.writeFileSync(assetsDir + "/" + CODE_PUSH_MANIFEST_FILE_NAME, JSON.stringify(manifest));
 
             // "CodePushHash.json" file name breaks flow type checking.
             // To fix the issue we need to delete "CodePushHash.json" file and
@@ -100,6 +100,74 @@ export interface RemotePackage extends Package {
     downloadUrl: string;
 }
 
+export interface ReloadInfo {
+    /**
+     * How the app was restarted: "reload" swaps the bundle in the running React instance,
+     * "doubleBufferedReload" loads it into a second one, and "activityRecreate" is the slow fallback.
+     */
+    path: "reload" | "doubleBufferedReload" | "activityRecreate";
+
+    /**
+     * The milliseconds between the restart being requested and the new bundle being initialized,
+     * null while the new bundle is still being initialized.
+     */
+    durationMs: number | null;
+
+    /**
+     * Why a faster path couldn't be taken, if one was skipped.
+     */
+    fallbackReason?: string;
+}
+
+export interface StorageStats {
+    /**
+     * The number of bytes taken up by the CodePush folder.
+     */
+    totalBytes: number;
+
+    /**
+     * The configured storage quota in bytes, 0 if there is none.
+     */
+    quotaBytes: number;
+
+    /**
+     * The hash of the current package, if any.
+     */
+    currentPackageHash?: string;
+
+    /**
+     * The hash of the previous package, if any.
+     */
+    previousPackageHash?: string;
+
+    /**
+     * The files and folders stored in the CodePush folder.
+     */
+    entries: StorageEntry[];
+}
+
+export interface StorageEntry {
+    /**
+     * The file or folder name, which is the package hash for packages.
+     */
+    name: string;
+
+    /**
+     * The number of bytes taken up by the file or folder.
+     */
+    size: number;
+
+    /**
+     * When the entry was last written or picked up, in milliseconds since the epoch.
+     */
+    lastUsedTime: number;
+
+    /**
+     * Whether the entry is a complete package.
+     */
+    isPackage: boolean;
+}
+
 export interface SyncOptions {
     /**
      * Specifies the deployment key you want to query for an update against. By default, this value is derived from the Info.plist
@@ -255,6 +323,23 @@ declare namespace CodePush {
      */
     function checkForUpdate(deploymentKey?: string, handleBinaryVersionMismatchCallback?: HandleBinaryVersionMismatchCallback): Promise<RemotePackage | null>;
 
+    /**
+     * Retrieves how the last restart done by CodePush went, null if there wasn't one since the app was launched.
+     * Only supported on Android, resolves to null elsewhere.
+     */
+    function getLastReloadInfo(): Promise<ReloadInfo|null>;
+
+    /**
+     * Retrieves the updates kept on the device which rollbackTo can switch to, most recently used first.
+     * Only supported on Android, resolves to an empty array elsewhere.
+     */
+    function getRetainedPackages(): Promise<LocalPackage[]>;
+
+    /**
+     * Retrieves how much space CodePush is using on the device. Only supported on Android, resolves to null elsewhere.
+     */
+    function getStorageStats(): Promise<StorageStats|null>;
+
     /**
      * Retrieves the metadata for an installed update (e.g. description, mandatory).
      *
@@ -292,6 +377,13 @@ declare namespace CodePush {
      */
     function restartApp(onlyIfUpdateIsPending?: boolean): void;
 
+    /**
+     * Switches back to an update kept on the device, on the next restart. Only supported on Android.
+     *
+     * @param packageHash The hash of one of the packages returned by getRetainedPackages.
+     */
+    function rollbackTo(packageHash: string): Promise<void>;
+
     /**
      * Allows checking for an update, downloading it and installing it, all with a single call.
      *
@@ -327,7 +419,14 @@ declare namespace CodePush {
          * but only after it has been in the background for "minimumBackgroundDuration" seconds (0 by default),
          * so that user context isn't lost unless the app suspension is long enough to not matter.
          */
-        ON_NEXT_SUSPEND
+        ON_NEXT_SUSPEND,
+
+        /**
+         * Indicates that you want to install the update and restart the app once it has been idle for a while,
+         * without user input or dropped frames, or else the next time it is resumed. Only supported on Android,
+         * other platforms behave like ON_NEXT_RESUME.
+         */
+        ON_NEXT_IDLE
     }
 
     /**